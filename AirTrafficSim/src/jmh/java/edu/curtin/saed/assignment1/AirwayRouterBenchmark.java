@@ -0,0 +1,75 @@
+package edu.curtin.saed.assignment1;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Cost of finding a route between two airports on a grid with restricted areas: looked up from a
+// warm cache, and searched for with a cache of one route per stripe, which cycling through many
+// pairs always misses. The airports are on opposite sides of the areas, so every search runs A*
+// over the airway graph.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AirwayRouterBenchmark
+{
+    private static final int GRID = 1000;
+    private static final int PAIRS = 1024;
+
+    @Param({"4", "16", "64"})
+    public int areas;
+
+    private AirwayRouter cached;
+    private AirwayRouter uncached;
+    private Airport[] origins;
+    private Airport[] destinations;
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        // A row of walls across the middle of the grid, each with gaps above and below, so flights
+        // from the left edge to the right edge have to weave between them
+        int[] restricted = new int[areas * 4];
+        int spacing = GRID / (areas + 1);
+        for (int a = 0; a < areas; a++) {
+            restricted[a * 4] = spacing * (a + 1);
+            restricted[a * 4 + 1] = a % 2 == 0 ? 0 : GRID / 5;
+            restricted[a * 4 + 2] = 1;
+            restricted[a * 4 + 3] = GRID * 4 / 5;
+        }
+        Scenario scenario = new Scenario(GRID, 42, 10.0, 0.0, 0, new int[0], new int[0], new int[0], restricted);
+        MetricsRegistry metrics = new MetricsRegistry();
+        cached = new AirwayRouter(scenario, PAIRS * 2, metrics);
+        uncached = new AirwayRouter(scenario, 0, metrics);
+
+        Random rand = new Random(42);
+        AirportRegistry airports = new AirportRegistry();
+        origins = new Airport[PAIRS];
+        destinations = new Airport[PAIRS];
+        int edge = spacing - 1;
+        for (int i = 0; i < PAIRS; i++) {
+            origins[i] = airports.add(rand.nextInt(edge), rand.nextInt(GRID));
+            destinations[i] = airports.add(GRID - 1 - rand.nextInt(edge), rand.nextInt(GRID));
+            cached.route(origins[i], destinations[i]);
+        }
+    }
+
+    @Benchmark
+    public Route cacheHit()
+    {
+        next = (next + 1) & (PAIRS - 1);
+        return cached.route(origins[next], destinations[next]);
+    }
+
+    @Benchmark
+    public Route search()
+    {
+        next = (next + 1) & (PAIRS - 1);
+        return uncached.route(origins[next], destinations[next]);
+    }
+}
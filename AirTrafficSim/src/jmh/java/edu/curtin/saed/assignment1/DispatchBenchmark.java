@@ -0,0 +1,95 @@
+package edu.curtin.saed.assignment1;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Finding a plane for a request, and looking airports and planes up by ID, at different fleet
+// sizes. 'entities' is both the number of airports and the number of planes (one per airport).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark
+{
+    private static final int LOOKUPS = 4096; // Power of two, for cheap wrap-around
+
+    @Param({"10", "1000", "100000"})
+    public int entities;
+
+    private AirportRegistry airports;
+    private PlaneRegistry planes;
+    private FleetDispatcher localDispatcher;
+    private FleetDispatcher remoteDispatcher;
+    private final int[] randomIds = new int[LOOKUPS];
+    private final int[] originsWithoutPlanes = new int[LOOKUPS];
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        Random rand = new Random(42);
+        airports = new AirportRegistry();
+        planes = new PlaneRegistry();
+        int gridSize = (int) Math.ceil(Math.sqrt(entities)) * 4;
+        for (int i = 0; i < entities; i++) {
+            planes.add(airports.add(rand.nextInt(gridSize), rand.nextInt(gridSize)));
+        }
+
+        // Every airport has an idle plane, so claims are satisfied locally
+        localDispatcher = new FleetDispatcher(airports.asList(), planes.size());
+        for (Plane plane : planes.asList()) {
+            localDispatcher.release(plane, plane.getAirport());
+        }
+
+        // Only even airports have idle planes, so claims from odd airports search their neighbours
+        remoteDispatcher = new FleetDispatcher(airports.asList(), planes.size());
+        for (Plane plane : planes.asList()) {
+            if (plane.getAirport().getId() % 2 == 0) {
+                remoteDispatcher.release(plane, plane.getAirport());
+            }
+        }
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            randomIds[i] = rand.nextInt(entities);
+            originsWithoutPlanes[i] = entities > 1 ? (rand.nextInt(entities / 2) * 2 + 1) % entities : 0;
+        }
+    }
+
+    private int nextIndex()
+    {
+        next = (next + 1) & (LOOKUPS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public Plane claimLocal()
+    {
+        Plane plane = localDispatcher.claim(randomIds[nextIndex()]);
+        localDispatcher.release(plane, plane.getAirport());
+        return plane;
+    }
+
+    @Benchmark
+    public Plane claimFromNeighbour()
+    {
+        Plane plane = remoteDispatcher.claim(originsWithoutPlanes[nextIndex()]);
+        remoteDispatcher.release(plane, plane.getAirport());
+        return plane;
+    }
+
+    @Benchmark
+    public Airport airportById()
+    {
+        return airports.get(randomIds[nextIndex()]);
+    }
+
+    @Benchmark
+    public Plane planeById()
+    {
+        return planes.get(randomIds[nextIndex()]);
+    }
+}
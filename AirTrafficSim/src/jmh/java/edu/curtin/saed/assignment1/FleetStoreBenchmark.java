@@ -0,0 +1,64 @@
+package edu.curtin.saed.assignment1;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Cost per plane of advancing the whole fleet by one engine tick, on different numbers of threads.
+// Destinations are far enough away that no plane lands during an iteration, so every call moves every
+// plane. Run with -prof gc to confirm that a tick allocates nothing.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FleetStoreBenchmark
+{
+    private static final int PLANES = 100_000;
+    private static final double FAR_AWAY = 1e12;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private FleetStore fleet;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void createPool()
+    {
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    @TearDown
+    public void shutDownPool()
+    {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        Random rand = new Random(42);
+        AirportRegistry airports = new AirportRegistry();
+        PlaneRegistry planes = new PlaneRegistry();
+        fleet = new FleetStore(PLANES);
+        for (int i = 0; i < PLANES; i++) {
+            Airport origin = airports.add(rand.nextInt(1000), rand.nextInt(1000));
+            Airport destination = airports.add(FAR_AWAY * rand.nextDouble(), FAR_AWAY * rand.nextDouble());
+            fleet.add(new PlaneMovement(planes.add(origin), destination, 10.0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PLANES)
+    public FleetStore advance()
+    {
+        fleet.advance(pool);
+        return fleet;
+    }
+}
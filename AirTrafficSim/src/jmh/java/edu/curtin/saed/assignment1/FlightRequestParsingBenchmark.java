@@ -0,0 +1,75 @@
+package edu.curtin.saed.assignment1;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Handling one line of saed_flight_requests output: trimming, parsing and validating it and raising
+// the resulting event. Numeric lines name an airport that doesn't exist, so every request is rejected
+// after validation and the fleet never runs out; dispatch itself is covered by DispatchBenchmark.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlightRequestParsingBenchmark
+{
+    @Param({"12345", "  12345  ", "", "abc"})
+    public String line;
+
+    private AirTrafficSimulation simulation;
+
+    @Setup
+    public void setUp()
+    {
+        SimulationListener discard = new SimulationListener()
+        {
+            @Override
+            public void planesMoved(FleetStore fleet)
+            {
+                // Not started, so never called
+            }
+
+            @Override
+            public void planeArrived(Plane plane, Airport destination)
+            {
+                // Not started, so never called
+            }
+
+            @Override
+            public void separationConflict(Plane first, Plane second, double distance)
+            {
+                // Not started, so never called
+            }
+
+            @Override
+            public void tickCompleted()
+            {
+                // Not started, so never called
+            }
+
+            @Override
+            public void event(SimulationEvent event)
+            {
+                // Creating the event is part of the cost; keeping it isn't
+            }
+
+            @Override
+            public void statsChanged(SimulationStats stats)
+            {
+                // Only called for accepted requests
+            }
+        };
+        simulation = new AirTrafficSimulation(new SimulationConfig(), discard,
+                (airport, plane, output) -> CompletableFuture.completedFuture(null));
+    }
+
+    @Benchmark
+    public AirTrafficSimulation submitLine()
+    {
+        simulation.submitFlightRequest(0, line);
+        return simulation;
+    }
+}
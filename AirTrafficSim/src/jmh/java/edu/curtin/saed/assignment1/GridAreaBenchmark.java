@@ -0,0 +1,89 @@
+package edu.curtin.saed.assignment1;
+
+import javafx.application.Platform;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// One frame of GridArea rendering: every plane icon moves a little, then the area lays out and
+// redraws onto its canvases. The area is never put in a window, so nothing reaches the screen, but
+// canvas drawing still needs the JavaFX toolkit (and so a display, or a headless Glass platform such
+// as Monocle). Each frame runs on the FX thread, so the scores include one runLater() hand-off.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GridAreaBenchmark
+{
+    private static final int GRID_SIZE = 100;
+    private static final int AIRPORTS = 50;
+    private static boolean fxStarted;
+
+    @Param({"100", "1000", "10000"})
+    public int planes;
+
+    @Param({"true", "false"})
+    public boolean incremental;
+
+    private GridArea area;
+    private final List<GridAreaIcon> planeIcons = new ArrayList<>();
+    private double offset;
+
+    @Setup
+    public void setUp()
+    {
+        if (!fxStarted) { // The toolkit can only be started once per JVM, not once per trial
+            Platform.startup(() -> { });
+            fxStarted = true;
+        }
+        onFxThread(this::createArea);
+    }
+
+    private void createArea()
+    {
+        Random rand = new Random(42);
+        area = new GridArea(GRID_SIZE, GRID_SIZE);
+        area.setIncrementalRendering(incremental);
+        for (int i = 0; i < AIRPORTS; i++) {
+            GridAreaIcon airport = new GridAreaIcon(rand.nextInt(GRID_SIZE), rand.nextInt(GRID_SIZE), 0.0, 1.0,
+                    area.getImageAtlas().get("airport.png"), "Airport " + i);
+            airport.setMovable(false);
+            area.getIcons().add(airport);
+        }
+        for (int i = 0; i < planes; i++) {
+            GridAreaIcon plane = new GridAreaIcon(rand.nextInt(GRID_SIZE), rand.nextInt(GRID_SIZE), 0.0, 1.0,
+                    area.getImageAtlas().get("plane.png"), "Plane " + i);
+            area.getIcons().add(plane);
+            planeIcons.add(plane);
+        }
+        area.resize(1200.0, 800.0);
+        area.layoutChildren(); // First pass draws everything and caches the captions
+    }
+
+    @Benchmark
+    public GridArea frame()
+    {
+        onFxThread(this::moveAndRedraw);
+        return area;
+    }
+
+    private void moveAndRedraw()
+    {
+        offset = offset > 0.0 ? -0.05 : 0.05; // Small moves, like a plane's progress between frames
+        for (GridAreaIcon icon : planeIcons) {
+            icon.setPosition(icon.getX() + offset, icon.getY());
+        }
+        area.layoutChildren();
+    }
+
+    private static void onFxThread(Runnable task)
+    {
+        CompletableFuture.runAsync(task, Platform::runLater).join(); // Rethrows whatever the task threw
+    }
+}
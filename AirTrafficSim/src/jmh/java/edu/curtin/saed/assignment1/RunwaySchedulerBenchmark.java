@@ -0,0 +1,72 @@
+package edu.curtin.saed.assignment1;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Cost of landing slots with every airport congested: a tick inside a landing window, which should
+// cost nothing however many planes are holding, and a tick that opens a window, landing two planes at
+// every airport and sending them straight back into the hold.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunwaySchedulerBenchmark
+{
+    private static final int HOLDING_PER_AIRPORT = 8;
+    private static final int LANDINGS_PER_WINDOW = 2;
+    private static final long WINDOW_MILLIS = 1000;
+
+    @Param({"100", "10000"})
+    public int airports;
+
+    private RunwayScheduler runways;
+    private final List<PlaneMovement> landed = new ArrayList<>();
+    private long windowStart;
+
+    @Setup
+    public void setUp()
+    {
+        AirportRegistry registry = new AirportRegistry();
+        PlaneRegistry planes = new PlaneRegistry();
+        int gridSize = (int) Math.ceil(Math.sqrt(airports)) * 4;
+        for (int i = 0; i < airports; i++) {
+            registry.add(i % gridSize, i / gridSize);
+        }
+        runways = new RunwayScheduler(airports, LANDINGS_PER_WINDOW, WINDOW_MILLIS, new AirportWaitStats(airports),
+                new MetricsRegistry());
+
+        // Every airport's slots for the first window are taken, so the rest of its planes hold
+        for (int i = 0; i < airports * HOLDING_PER_AIRPORT; i++) {
+            Airport destination = registry.get(i % airports);
+            Plane plane = planes.add(registry.get((i + 1) % airports));
+            runways.land(new PlaneMovement(plane, destination, 1.0), 0);
+        }
+        runways.landHolding(0, landed);
+        landed.clear();
+    }
+
+    @Benchmark
+    public int tickInWindow()
+    {
+        runways.landHolding(windowStart + SimulationEngine.TICK_MILLIS, landed);
+        return landed.size();
+    }
+
+    @Benchmark
+    public int windowOpens()
+    {
+        windowStart += WINDOW_MILLIS;
+        runways.landHolding(windowStart, landed);
+        int count = landed.size();
+        for (PlaneMovement movement : landed) {
+            runways.land(movement, windowStart);
+        }
+        landed.clear();
+        return count;
+    }
+}
@@ -0,0 +1,50 @@
+package edu.curtin.saed.assignment1;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// One tick's separation check over a fleet spread across a 1000 x 1000 grid. Reported per check, so
+// it can be compared directly with the 25 ms tick budget.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeparationMonitorBenchmark
+{
+    private static final int GRID_SIZE = 1000;
+
+    @Param({"1000", "50000", "100000"})
+    public int planes;
+
+    private FleetStore fleet;
+    private SeparationMonitor monitor;
+
+    @Setup
+    public void setUp()
+    {
+        Random rand = new Random(42);
+        AirportRegistry airports = new AirportRegistry();
+        PlaneRegistry registry = new PlaneRegistry();
+        fleet = new FleetStore(planes);
+        for (int i = 0; i < planes; i++) {
+            Airport origin = airports.add(GRID_SIZE * rand.nextDouble(), GRID_SIZE * rand.nextDouble());
+            Airport destination = airports.add(GRID_SIZE * rand.nextDouble(), GRID_SIZE * rand.nextDouble());
+            fleet.add(new PlaneMovement(registry.add(origin), destination, 10.0));
+        }
+        for (int tick = 0; tick < 5; tick++) {
+            fleet.advance(null); // Clear of their airports, so every plane is checked
+        }
+        monitor = new SeparationMonitor(0.25);
+    }
+
+    @Benchmark
+    public int check()
+    {
+        monitor.check(fleet);
+        return monitor.getActiveConflicts();
+    }
+}
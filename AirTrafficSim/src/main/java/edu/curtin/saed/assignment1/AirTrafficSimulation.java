@@ -0,0 +1,847 @@
+package edu.curtin.saed.assignment1;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// The airport/plane simulation itself, with no JavaFX dependency. Front ends observe it through a
+// SimulationListener and feed it flight requests through submitFlightRequest().
+public class AirTrafficSimulation implements Simulation
+{
+    private static final Logger LOGGER = Logger.getLogger(AirTrafficSimulation.class.getName());
+    private final SimulationConfig config;
+    private final Scenario scenario;
+    private final SimulationListener listener;
+    private final PlaneServiceProvider serviceProvider;
+    private final SimulationEngine engine;
+    private final AirportRegistry airports = new AirportRegistry();
+    private final PlaneRegistry planes = new PlaneRegistry();
+    private final FleetDispatcher dispatcher;
+    private final AirwayRouter router;
+    private final PendingRequestQueue pendingRequests;
+    private final RunwayScheduler runways; // Null when landings aren't limited
+    private final GatePool gates; // Null when servicing isn't limited
+    private final AirportWaitStats holdingWaits;
+    private final AirportWaitStats gateWaits;
+    private final Set<CompletableFuture<Void>> activeServicing = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger planesServicing = new AtomicInteger();
+    private final AtomicInteger planesServiced = new AtomicInteger();
+    private final AtomicInteger totalCompletedTrips = new AtomicInteger();
+    private final AtomicInteger planesInFlight = new AtomicInteger();
+    private final MetricsRegistry metrics;
+    private final LongAdder flightRequests;
+    private final LongAdder rejectedRequests;
+    private final LongAdder flightsDispatched;
+    private final LongAdder flightsArrived;
+    private final LongAdder servicesCompleted;
+    private final LongAdder servicesFailed;
+    private final LatencyHistogram dispatchLatency;
+    private final LatencyHistogram flightDuration;
+    private final LatencyHistogram serviceDuration;
+    private final LatencyHistogram queueWait;
+    private final LatencyHistogram snapshotCapture;
+    private final long[] requestNanos; // Indexed by plane ID; when its queued request was accepted
+    private final long[] turnaroundDue; // Indexed by plane ID; simulated millis its last turnaround ends
+    private final AtomicLongArray servicingSince; // Indexed by plane ID; simulated millis, or NOT_SERVICING
+    private final PlaneMovement[] resumedFlights; // Indexed by plane ID; flights restored mid-air, until flown
+    private final boolean replaying; // Planes are dispatched and requests turned away only as a run log says
+    private final AtomicIntegerArray replayedQueued; // Indexed by airport; replayed requests the log hasn't settled yet
+    private final AtomicInteger replayedQueuedTotal = new AtomicInteger();
+    private final Airport[] owedFlights; // Indexed by plane ID; replayed dispatches waiting for the plane. Guarded by itself.
+    private final int[] owedOrigins; // Indexed by plane ID; guarded by owedFlights
+    private int owedCount; // Guarded by owedFlights
+    private final Map<String, Random> randomStreams = new LinkedHashMap<>();
+    private SimulationSnapshot restored; // Applied by the next start()
+    private Thread fleetThread; // Owns the plane threads for as long as the simulation runs
+    private volatile boolean isRunning;
+    private volatile int runNumber; // Counts start() calls, so callbacks left over from a stop can tell
+    private RunRecorder recorder; // Null unless recording
+
+    // Places airports at random, as the config describes
+    public AirTrafficSimulation(SimulationConfig config, SimulationListener listener, PlaneServiceProvider serviceProvider)
+    {
+        this(config, Scenario.random(config, new Random().nextLong()), new SimulationClock(config.getTimeScale()),
+                new MetricsRegistry(), listener, serviceProvider);
+    }
+
+    // The clock should be the one any in-process service provider waits on. The simulation records its
+    // counters and latencies in 'metrics', alongside anything else the front end records there.
+    public AirTrafficSimulation(SimulationConfig config, Scenario scenario, SimulationClock clock, MetricsRegistry metrics,
+                                SimulationListener listener, PlaneServiceProvider serviceProvider)
+    {
+        this.config = config;
+        this.scenario = scenario;
+        this.listener = listener;
+        this.serviceProvider = serviceProvider;
+        this.metrics = metrics;
+        flightRequests = metrics.counter("requests.submitted");
+        rejectedRequests = metrics.counter("requests.rejected");
+        flightsDispatched = metrics.counter("flights.dispatched");
+        flightsArrived = metrics.counter("flights.arrived");
+        servicesCompleted = metrics.counter("service.completed");
+        servicesFailed = metrics.counter("service.failed");
+        dispatchLatency = metrics.histogram("dispatch.latency"); // Request accepted to plane taking off
+        flightDuration = metrics.histogram("flight.duration"); // Wall-clock, so it shrinks as the time scale grows
+        serviceDuration = metrics.histogram("service.duration"); // Servicing start to complete
+        setupAirportsAndPlanes(scenario);
+        requestNanos = new long[planes.size()];
+        turnaroundDue = new long[planes.size()];
+        servicingSince = new AtomicLongArray(planes.size());
+        for (int i = 0; i < planes.size(); i++) {
+            servicingSince.set(i, SimulationSnapshot.NOT_SERVICING);
+        }
+        resumedFlights = new PlaneMovement[planes.size()];
+        replaying = config.isReplaying();
+        replayedQueued = new AtomicIntegerArray(airports.size());
+        owedFlights = new Airport[planes.size()];
+        owedOrigins = new int[planes.size()];
+        this.engine = new SimulationEngine(listener, clock, planes.size(), config.getTickThreads());
+        engine.setMinimumSeparation(config.getMinimumSeparation());
+        this.dispatcher = new FleetDispatcher(airports.asList(), planes.size());
+        this.router = new AirwayRouter(scenario, config.getRouteCacheSize(), metrics);
+        this.pendingRequests = new PendingRequestQueue(airports.size(), config.getPendingRequestsPerAirport(),
+                config.getOverflowPolicy(), this::requestDropped);
+        holdingWaits = new AirportWaitStats(airports.size());
+        gateWaits = new AirportWaitStats(airports.size());
+        runways = config.getLandingsPerWindow() > 0 ? new RunwayScheduler(airports.size(), config.getLandingsPerWindow(),
+                config.getLandingWindowMillis(), holdingWaits, metrics) : null;
+        engine.setRunways(runways);
+        if (config.getShards() > 0) {
+            engine.setShards(new ShardCoordinator(config.getShards(), config.getGridSize(), airports.asList(),
+                    planes.size(), Math.max(1, config.getTickThreads() / config.getShards())),
+                    config.isShardPositionsEveryTick());
+        }
+        gates = config.getGatesPerAirport() > 0
+                ? new GatePool(airports.size(), planes.size(), config.getGatesPerAirport(), gateWaits, metrics) : null;
+        queueWait = metrics.histogram("requests.queue-wait"); // Queued to taken by a freed plane
+        snapshotCapture = metrics.histogram("snapshot.capture"); // Time the engine waits for a snapshot
+        metrics.gauge("requests.queued", this::getQueuedRequests);
+        metrics.gauge("planes.in-flight", planesInFlight::get);
+        metrics.gauge("planes.servicing", planesServicing::get);
+        metrics.gauge("engine.ticks", engine::getTicks);
+    }
+
+    private void setupAirportsAndPlanes(Scenario scenario)
+    {
+        for (int airportIndex = 0; airportIndex < scenario.getAirportCount(); airportIndex++) {
+            Airport airport = airports.add(scenario.getAirportX(airportIndex), scenario.getAirportY(airportIndex));
+
+            // Each plane starts at its airport, so plane IDs run airport by airport
+            for (int planeIndex = 0; planeIndex < scenario.getPlanes(airportIndex); planeIndex++) {
+                planes.add(airport);
+            }
+        }
+    }
+
+    @Override
+    public List<Airport> getAirports()
+    {
+        return airports.asList();
+    }
+
+    @Override
+    public List<Plane> getPlanes()
+    {
+        return planes.asList();
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return isRunning;
+    }
+
+    @Override
+    public SimulationClock getClock()
+    {
+        return engine.getClock();
+    }
+
+    // Records every request, dispatch, arrival and servicing outcome from the next start() on. Set
+    // before starting; the caller closes the recorder once the simulation has stopped.
+    public void setRecorder(RunRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    // A random number stream the simulation's requests or servicing draw from, whose state snapshots
+    // should keep under 'name'. Add before starting.
+    public void addRandomStream(String name, Random random)
+    {
+        randomStreams.put(name, random);
+    }
+
+    // Copies the simulation's state between two ticks, on the engine thread, and completes with it.
+    // The engine only waits for the copy; write the snapshot out from another thread. Fails with
+    // IllegalStateException if the simulation isn't running.
+    public CompletableFuture<SimulationSnapshot> snapshot()
+    {
+        if (!isRunning) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Only a running simulation can be snapshotted"));
+        }
+        // The engine runs the capture, and supplyAsync() passes on anything it throws
+        return CompletableFuture.supplyAsync(() -> {
+            long startNanos = System.nanoTime();
+            SimulationSnapshot snapshot = capture();
+            snapshotCapture.recordSince(startNanos);
+            return snapshot;
+        }, engine::runBetweenTicks);
+    }
+
+    // Carries on from a snapshot of a simulation of the same scenario, instead of starting with every
+    // plane idle. Simulated time, tick counts and counters are restored straight away, so call this
+    // before anything is scheduled on the clock; everything else is restored by the next start().
+    // Latency histograms start afresh, as they measure wall-clock time, and so do the route cache and
+    // its counters.
+    public void restore(SimulationSnapshot snapshot)
+    {
+        if (snapshot.getScenario().getPlaneCount() != planes.size()
+                || snapshot.getScenario().getAirportCount() != airports.size()) {
+            throw new IllegalArgumentException("The snapshot is of a different scenario");
+        }
+        engine.getClock().restore(snapshot.getClockMillis());
+        engine.restore(snapshot.getTicks(), snapshot.getSeparationConflicts());
+        snapshot.getCounters().forEach((name, value) -> metrics.counter(name).add(value));
+        planesServiced.set(snapshot.getPlanesServiced());
+        totalCompletedTrips.set(snapshot.getCompletedTrips());
+        restored = snapshot;
+    }
+
+    @Override
+    public MetricsRegistry getMetrics()
+    {
+        return metrics;
+    }
+
+    public long getTicks()
+    {
+        return engine.getTicks();
+    }
+
+    // Stops the simulation moving on once it has run this many ticks in all (see SimulationEngine).
+    // Call before start().
+    public void setTickLimit(long ticks)
+    {
+        engine.setTickLimit(ticks);
+    }
+
+    public boolean isAtTickLimit()
+    {
+        return engine.isAtTickLimit();
+    }
+
+    @Override
+    public SimulationStats getStats()
+    {
+        return new SimulationStats(planesServicing.get(), planesServiced.get(), totalCompletedTrips.get(),
+                planesInFlight.get(), flightRequests.sum(), rejectedRequests.sum(), engine.getTicks(),
+                engine.getSeparationConflicts(), engine.getActiveConflicts(), getQueuedRequests());
+    }
+
+    private int getQueuedRequests()
+    {
+        return replaying ? replayedQueuedTotal.get() : pendingRequests.size();
+    }
+
+    // Requests waiting for a plane at one airport
+    public int getQueuedRequests(int airport)
+    {
+        return replaying ? replayedQueued.get(airport) : pendingRequests.size(airport);
+    }
+
+    // How long planes have held for a landing slot at each airport
+    public AirportWaitStats getHoldingWaits()
+    {
+        return holdingWaits;
+    }
+
+    // How long planes that have landed have waited for a gate at each airport
+    public AirportWaitStats getGateWaits()
+    {
+        return gateWaits;
+    }
+
+    @Override
+    public void start()
+    {
+        if (isRunning) {
+            return;
+        }
+        isRunning = true;
+        runNumber++;
+
+        // Every plane starts idle at the airport it is parked at, whatever it was doing before a stop,
+        // and requests left waiting by a stop are forgotten, unless carrying on from a snapshot
+        pendingRequests.clear();
+        clearReplayedRequests();
+        dispatcher.reset();
+        if (gates != null) {
+            gates.reset();
+        }
+        for (Plane plane : planes.asList()) {
+            planes.getRequests(plane).clear();
+            if (restored == null) {
+                dispatcher.release(plane, plane.getAirport());
+            }
+        }
+        if (restored != null) {
+            applySnapshot(restored);
+            restored = null;
+        }
+        fleetThread = Thread.ofPlatform().name("fleet").daemon().start(this::runFleet);
+        engine.start(); // Last, so requests made after the first tick find the planes ready
+    }
+
+    // Runs between ticks, when every plane thread is waiting: for a request, for its flight to end,
+    // or for nothing, as its servicing and turnaround are in the clock's and provider's hands
+    private SimulationSnapshot capture()
+    {
+        SimulationClock clock = engine.getClock();
+        long now = clock.millis();
+        SimulationSnapshot snapshot = new SimulationSnapshot(scenario, config);
+        snapshot.setTime(now, engine.getTicks(), engine.getSeparationConflicts());
+        snapshot.setCounts(planesServiced.get(), totalCompletedTrips.get(), dispatcher.getScanStart(),
+                pendingRequests.getScanStart());
+        metrics.readCounters(snapshot.getCounters());
+        // The route cache isn't kept, so a restored run starts it empty and counts its own hits and misses
+        snapshot.getCounters().keySet().removeIf(name -> name.startsWith("routes."));
+        randomStreams.forEach(snapshot::addRandom);
+
+        boolean[] flying = new boolean[planes.size()];
+        engine.forEachFlight((movement, x, y, segment, segmentLeft, routeLeft) -> {
+            int id = movement.getPlane().getId();
+            flying[id] = true;
+            snapshot.addFlight(id, movement.getDestination().getId(), x, y, segment, segmentLeft, routeLeft);
+        });
+        if (runways != null) {
+            runways.forEachHolding((movement, since) -> {
+                int id = movement.getPlane().getId();
+                flying[id] = true;
+                snapshot.addHolding(id, movement.getDestination().getId(), since);
+            });
+            snapshot.setLastLandingWindow(runways.getLastWindow());
+            for (int airport = 0; airport < airports.size(); airport++) {
+                int landings = runways.getLandings(airport, now);
+                if (landings > 0) {
+                    snapshot.addLandings(airport, landings);
+                }
+            }
+        }
+        for (Plane plane : planes.asList()) {
+            int id = plane.getId();
+            snapshot.setPlaneAirport(id, plane.getAirport().getId());
+            if (flying[id] || dispatcher.isIdle(id)) {
+                continue;
+            }
+            Airport next = planes.getRequests(plane).peek();
+            if (next != null) {
+                // Dispatched, but its thread was too slow to take off before the engine gave up waiting
+                snapshot.addFlight(id, next.getId(), plane.getX(), plane.getY(), -1, 0.0, 0.0);
+            } else {
+                long since = servicingSince.get(id);
+                long left = since == SimulationSnapshot.NOT_SERVICING ? -1 : serviceProvider.getRemainingMillis(plane);
+                snapshot.addGrounded(id, turnaroundDue[id] - now, since, left);
+            }
+        }
+        if (gates != null) {
+            gates.forEachWaiting((airport, plane, since) -> snapshot.addGateWaiting(plane, since));
+        }
+        dispatcher.forEachIdle(plane -> snapshot.addIdle(plane.getId()));
+        pendingRequests.forEach(request -> snapshot.addWaiting(request.getOrigin(), request.getDestination()));
+        return snapshot;
+    }
+
+    // Puts every plane back as the snapshot had it, before the engine and plane threads start. Timers
+    // are scheduled plane by plane, servicing before turnaround, as the planes first scheduled them.
+    // Planes waiting for a gate join the queue for one once the planes being serviced have their gates.
+    private void applySnapshot(SimulationSnapshot snapshot)
+    {
+        for (Plane plane : planes.asList()) {
+            Airport airport = airports.get(snapshot.getPlaneAirport(plane.getId()));
+            plane.setAirport(airport);
+            plane.setPosition(airport.getX(), airport.getY());
+        }
+
+        for (int i = 0; i < snapshot.getFlightCount(); i++) {
+            Plane plane = planes.get(snapshot.getFlightPlane(i));
+            Airport destination = airports.get(snapshot.getFlightDestination(i));
+            Route route = router.route(plane.getAirport(), destination);
+            PlaneMovement movement;
+            if (snapshot.getFlightSegment(i) < 0) {
+                movement = engine.launch(plane, destination, config.getSpeed(), route); // Takes off on the first tick
+            } else {
+                movement = new PlaneMovement(plane, destination, config.getSpeed(), route);
+                engine.resume(movement, snapshot.getFlightX(i), snapshot.getFlightY(i), snapshot.getFlightSegment(i),
+                        snapshot.getFlightSegmentLeft(i), snapshot.getFlightRouteLeft(i));
+            }
+            resumedFlights[plane.getId()] = movement;
+            planesInFlight.incrementAndGet();
+        }
+        if (runways != null) {
+            for (int i = 0; i < snapshot.getHoldingCount(); i++) {
+                Plane plane = planes.get(snapshot.getHoldingPlane(i));
+                Airport destination = airports.get(snapshot.getHoldingDestination(i));
+                PlaneMovement movement = new PlaneMovement(plane, destination, config.getSpeed(),
+                        router.route(plane.getAirport(), destination));
+                movement.arrive();
+                plane.setPosition(destination.getX(), destination.getY());
+                runways.restoreHolding(movement, snapshot.getHoldingSince(i));
+                resumedFlights[plane.getId()] = movement;
+                planesInFlight.incrementAndGet();
+            }
+            for (int i = 0; i < snapshot.getLandingAirportCount(); i++) {
+                runways.restoreLandings(snapshot.getLandingAirport(i), snapshot.getClockMillis(), snapshot.getLandings(i));
+            }
+            runways.setLastWindow(snapshot.getLastLandingWindow());
+        }
+
+        Map<Integer, CompletableFuture<Void>> calledToGate = new HashMap<>();
+        for (int i = 0; i < snapshot.getGateWaitingCount(); i++) {
+            calledToGate.put(snapshot.getGateWaitingPlane(i), new CompletableFuture<>());
+        }
+        for (int i = 0; i < snapshot.getGroundedCount(); i++) {
+            Plane plane = planes.get(snapshot.getGroundedPlane(i));
+            Airport airport = plane.getAirport();
+            CompletableFuture<Void> servicing = calledToGate.getOrDefault(plane.getId(),
+                    CompletableFuture.completedFuture(null));
+            long since = snapshot.getServicingStart(i);
+            if (since != SimulationSnapshot.NOT_SERVICING) {
+                if (gates != null) {
+                    gates.occupy(airport.getId());
+                }
+                servicing = serviceHoldingGate(airport, plane, since, snapshot.getServicingLeft(i));
+            }
+            long turnaroundLeft = snapshot.getTurnaroundLeft(i);
+            CompletableFuture<Void> turnaround = turnaroundLeft > 0 ? startTurnaround(plane, turnaroundLeft)
+                    : CompletableFuture.completedFuture(null);
+            releaseAfter(plane, airport, servicing, turnaround);
+        }
+        for (int i = 0; i < snapshot.getGateWaitingCount(); i++) {
+            Plane plane = planes.get(snapshot.getGateWaitingPlane(i));
+            CompletableFuture<Void> called = calledToGate.get(plane.getId());
+            serviceAtGate(plane.getAirport(), plane, snapshot.getGateWaitingSince(i)).thenRun(() -> called.complete(null));
+        }
+
+        for (int i = 0; i < snapshot.getIdleCount(); i++) {
+            Plane plane = planes.get(snapshot.getIdlePlane(i));
+            dispatcher.release(plane, plane.getAirport());
+        }
+        dispatcher.setScanStart(snapshot.getDispatcherScanStart());
+        long acceptedNanos = System.nanoTime();
+        for (int i = 0; i < snapshot.getWaitingCount(); i++) {
+            pendingRequests.offer(snapshot.getWaitingOrigin(i), snapshot.getWaitingDestination(i), acceptedNanos, false);
+        }
+        pendingRequests.setScanStart(snapshot.getRequestScanStart());
+    }
+
+    // Runs every plane on its own thread and returns once they have all finished. Interrupting this
+    // thread cancels the lot: closing the executor after an interrupt interrupts each plane thread
+    // and still waits for them, so no plane thread outlives the simulation run.
+    private void runFleet()
+    {
+        try (ExecutorService planeThreads = config.isVirtualPlaneThreads()
+                ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newCachedThreadPool()) {
+            for (Plane plane : planes.asList()) {
+                planeThreads.submit(() -> servicePlane(plane));
+            }
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        if (!isRunning) {
+            return;
+        }
+        isRunning = false;
+
+        // Stopping the engine first releases planes waiting to land and leaves the CPU to the planes
+        // winding down; any plane launched after that is woken by the interrupt
+        engine.stop();
+        fleetThread.interrupt();
+        try {
+            if (!fleetThread.join(Duration.ofSeconds(5))) {
+                LOGGER.warning("Plane threads still running 5 seconds after stop");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Abandon servicing still in progress, destroying any service processes. Forgetting the planes
+        // waiting for gates first means none of them is started on a gate freed by this.
+        if (gates != null) {
+            gates.reset();
+        }
+        for (CompletableFuture<Void> servicing : activeServicing) {
+            servicing.cancel(true);
+        }
+        activeServicing.clear();
+    }
+
+    @Override
+    public void submitFlightRequest(int originAirport, String requestLine)
+    {
+        String request = requestLine.trim();
+        if (request.isEmpty()) {
+            return; // Skip empty lines
+        }
+        try {
+            submitFlightRequest(originAirport, Integer.parseInt(request));
+        } catch (NumberFormatException e) {
+            listener.event(new SimulationEvent(SimulationEvent.Type.INVALID_REQUEST, SimulationEvent.NONE, originAirport,
+                    SimulationEvent.NONE, request));
+        }
+    }
+
+    @Override
+    public void submitFlightRequest(int originAirport, int destinationAirport)
+    {
+        flightRequests.increment();
+        if (recorder != null) {
+            recorder.request(originAirport, destinationAirport);
+        }
+
+        // Validate airport IDs
+        Airport destination = airports.get(destinationAirport);
+        if (destination == null) {
+            rejectedRequests.increment();
+            listener.event(new SimulationEvent(SimulationEvent.Type.INVALID_DESTINATION, SimulationEvent.NONE, originAirport,
+                    destinationAirport, null));
+            return;
+        }
+        if (airports.get(originAirport) == null) {
+            rejectedRequests.increment();
+            listener.event(new SimulationEvent(SimulationEvent.Type.UNKNOWN_ORIGIN, SimulationEvent.NONE, originAirport,
+                    destinationAirport, null));
+            return;
+        }
+
+        if (replaying) {
+            replayedQueued.incrementAndGet(originAirport); // Until the log dispatches or rejects it
+            replayedQueuedTotal.incrementAndGet();
+            return;
+        }
+
+        long acceptedNanos = System.nanoTime();
+        Plane availablePlane = dispatcher.claim(originAirport);
+        if (availablePlane != null) {
+            dispatch(availablePlane, originAirport, destination, acceptedNanos);
+            return;
+        }
+
+        // Every plane is busy, so wait for one, unless the queue is full. The engine thread frees the
+        // planes, so it is never made to wait.
+        if (!pendingRequests.offer(originAirport, destinationAirport, acceptedNanos, !engine.isEngineThread())) {
+            if (recorder != null) {
+                recorder.rejected(originAirport, destinationAirport, false);
+            }
+            rejectedRequests.increment();
+            listener.event(new SimulationEvent(SimulationEvent.Type.NO_PLANE_AVAILABLE, SimulationEvent.NONE, originAirport,
+                    destinationAirport, null));
+            return;
+        }
+        listener.event(new SimulationEvent(SimulationEvent.Type.REQUEST_QUEUED, SimulationEvent.NONE, originAirport,
+                destinationAirport, null));
+        listener.statsChanged(getStats());
+
+        // A plane freed since the claim may have missed the request being queued, so look again
+        Plane freed = dispatcher.claim(originAirport);
+        if (freed != null) {
+            releasePlane(freed, freed.getAirport());
+        }
+    }
+
+    // Sends the plane on a flight a run log dispatched it on, now if it is free, or else as soon as it
+    // is. Returns false in that case. Only while replaying.
+    public boolean dispatchReplayed(int planeId, int originAirport, int destinationAirport)
+    {
+        settleReplayedRequest(originAirport);
+        Plane plane = planes.get(planeId);
+        Airport destination = airports.get(destinationAirport);
+        synchronized (owedFlights) {
+            if (dispatcher.claim(plane)) {
+                dispatch(plane, originAirport, destination, System.nanoTime());
+                return true;
+            }
+            if (owedFlights[planeId] == null) {
+                owedCount++;
+            }
+            owedFlights[planeId] = destination;
+            owedOrigins[planeId] = originAirport;
+            return false;
+        }
+    }
+
+    // Turns away a request as a run log did, for want of a plane. Only while replaying.
+    public void rejectReplayed(int originAirport, int destinationAirport, boolean dropped)
+    {
+        settleReplayedRequest(originAirport);
+        if (dropped) {
+            requestDropped(new FlightRequest(originAirport, destinationAirport));
+        } else {
+            if (recorder != null) {
+                recorder.rejected(originAirport, destinationAirport, false);
+            }
+            rejectedRequests.increment();
+            listener.event(new SimulationEvent(SimulationEvent.Type.NO_PLANE_AVAILABLE, SimulationEvent.NONE, originAirport,
+                    destinationAirport, null));
+        }
+        listener.statsChanged(getStats());
+    }
+
+    // Planes a run log has dispatched that haven't been free to go yet
+    public int getOwedDispatches()
+    {
+        synchronized (owedFlights) {
+            return owedCount;
+        }
+    }
+
+    private void settleReplayedRequest(int originAirport)
+    {
+        if (replayedQueued.getAndUpdate(originAirport, queued -> Math.max(0, queued - 1)) > 0) {
+            replayedQueuedTotal.decrementAndGet();
+        }
+    }
+
+    private void clearReplayedRequests()
+    {
+        for (int i = 0; i < replayedQueued.length(); i++) {
+            replayedQueued.set(i, 0);
+        }
+        replayedQueuedTotal.set(0);
+        synchronized (owedFlights) {
+            Arrays.fill(owedFlights, null);
+            owedCount = 0;
+        }
+    }
+
+    // Gives a free plane the nearest waiting request, or else puts it back in its airport's idle pool.
+    // Either this or a request being queued sees the other, so a request never waits while a plane
+    // sits idle. When replaying, the plane goes on the flight the log has been waiting to send it on,
+    // if any, and otherwise waits for the log to dispatch it.
+    private void releasePlane(Plane plane, Airport airport)
+    {
+        if (replaying) {
+            synchronized (owedFlights) {
+                Airport destination = owedFlights[plane.getId()];
+                if (destination != null) {
+                    owedFlights[plane.getId()] = null;
+                    owedCount--;
+                    dispatch(plane, owedOrigins[plane.getId()], destination, System.nanoTime());
+                } else {
+                    dispatcher.release(plane, airport);
+                }
+            }
+            return;
+        }
+        Plane free = plane;
+        Airport at = airport;
+        while (true) {
+            PendingRequestQueue.Waiting request = pendingRequests.poll(at.getId(), dispatcher.getNearestAirports(at.getId()));
+            if (request != null) {
+                queueWait.recordSince(request.getAcceptedNanos());
+                dispatch(free, request.getOrigin(), airports.get(request.getDestination()), request.getAcceptedNanos());
+                return;
+            }
+            dispatcher.release(free, at);
+            if (pendingRequests.size() == 0) {
+                return;
+            }
+            free = dispatcher.claim(at.getId()); // A request was queued meanwhile; take a plane back for it
+            if (free == null) {
+                return; // Someone else did
+            }
+            at = free.getAirport();
+        }
+    }
+
+    private void requestDropped(FlightRequest request)
+    {
+        if (recorder != null) {
+            recorder.rejected(request.getOrigin(), request.getDestination(), true);
+        }
+        rejectedRequests.increment();
+        listener.event(new SimulationEvent(SimulationEvent.Type.REQUEST_DROPPED, SimulationEvent.NONE, request.getOrigin(),
+                request.getDestination(), null));
+    }
+
+    private void dispatch(Plane plane, int originAirport, Airport destination, long acceptedNanos)
+    {
+        listener.event(new SimulationEvent(SimulationEvent.Type.FLIGHT_DISPATCHED, plane.getId(), originAirport,
+                destination.getId(), null));
+        planesInFlight.incrementAndGet(); // Increment in-flight planes
+        listener.statsChanged(getStats());
+        flightsDispatched.increment();
+        if (recorder != null) {
+            recorder.dispatch(plane.getId(), originAirport, destination.getId());
+        }
+        engine.getClock().hold(); // Until the plane has handed its flight to the engine
+        requestNanos[plane.getId()] = acceptedNanos; // Published to the plane thread by the queue
+        planes.getRequests(plane).add(destination);
+    }
+
+    // Each time something wakes this plane, the clock is held until the plane has done what it was
+    // woken for, so however fast the engine ticks, planes take off and land on the tick they should.
+    // A plane only becomes available for requests once both its servicing and its turnaround are
+    // over, from whichever finishes last: for clock-timed servicing that is the engine thread, so
+    // planes come free on the same ticks from run to run. Which plane takes which request can still
+    // vary with thread timing within a tick, which is why replays dispatch as their log says.
+    private void servicePlane(Plane plane)
+    {
+        SimulationClock clock = engine.getClock();
+        PlaneMovement movement = resumedFlights[plane.getId()]; // Set before this thread started
+        resumedFlights[plane.getId()] = null;
+        long launchNanos = System.nanoTime();
+        while (isRunning && !Thread.currentThread().isInterrupted())
+        {
+            if (movement == null) {
+                Airport destination;
+                try {
+                    destination = planes.getRequests(plane).take(); // Use take to retrieve from the BlockingQueue
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                Route route = router.route(plane.getAirport(), destination);
+                movement = engine.launch(plane, destination, config.getSpeed(), route);
+                launchNanos = System.nanoTime();
+                dispatchLatency.record(launchNanos - requestNanos[plane.getId()]);
+                clock.release();
+            }
+            Airport destination = movement.getDestination();
+            try {
+                movement.awaitArrival(); // Wait until the engine lands the plane at its destination
+            } catch (InterruptedException e) {
+                movement.stop();
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (isRunning && movement.hasArrived()) { // Check if the simulation is still running before servicing
+                flightDuration.recordSince(launchNanos);
+                flightsArrived.increment();
+                if (recorder != null) {
+                    recorder.arrival(plane.getId(), destination.getId());
+                }
+                plane.setAirport(destination);
+                planesInFlight.decrementAndGet(); // Decrement in-flight planes count when landing
+                listener.statsChanged(getStats());
+
+                CompletableFuture<Void> servicing = serviceAtGate(destination, plane, clock.millis());
+                releaseAfter(plane, destination, servicing, startTurnaround(plane, config.getTurnaroundMillis()));
+            }
+            clock.release();
+            movement = null;
+        }
+    }
+
+    // Completes once 'millis' of simulated time have passed
+    private CompletableFuture<Void> startTurnaround(Plane plane, long millis)
+    {
+        SimulationClock clock = engine.getClock();
+        CompletableFuture<Void> turnaround = new CompletableFuture<>();
+        turnaroundDue[plane.getId()] = clock.millis() + millis;
+        clock.schedule(millis, plane.getId(), () -> turnaround.complete(null));
+        return turnaround;
+    }
+
+    // Puts the plane back to waiting for requests once its servicing and turnaround are both over
+    private void releaseAfter(Plane plane, Airport airport, CompletableFuture<Void> servicing,
+                              CompletableFuture<Void> turnaround)
+    {
+        int run = runNumber;
+        turnaround.runAfterBoth(servicing, () -> {
+            if (isRunning && runNumber == run) { // Not after a stop, nor once restarted
+                releasePlane(plane, airport);
+            }
+        });
+    }
+
+    // Services the plane at one of the airport's gates, once it has one, having landed at 'sinceMillis'
+    // of simulated time; a free gate is handed out before the next tick. Completes once servicing is
+    // over, however it went.
+    private CompletableFuture<Void> serviceAtGate(Airport airport, Plane plane, long sinceMillis)
+    {
+        if (gates == null) {
+            return serviceHoldingGate(airport, plane, sinceMillis, -1);
+        }
+        CompletableFuture<Void> serviced = new CompletableFuture<>();
+        int run = runNumber;
+        boolean gateFree = gates.acquire(airport.getId(), plane.getId(), sinceMillis, () -> {
+            if (isRunning && runNumber == run) { // Not after a stop; the next start() frees the gate
+                serviceHoldingGate(airport, plane, engine.getClock().millis(), -1).thenRun(() -> serviced.complete(null));
+            }
+        });
+        if (gateFree) {
+            engine.runBetweenTicks(() -> gates.grant(engine.getClock().millis()));
+        }
+        return serviced;
+    }
+
+    // Services the plane at the gate it has, if gates are limited, and hands the gate on once done
+    private CompletableFuture<Void> serviceHoldingGate(Airport airport, Plane plane, long startMillis, long remainingMillis)
+    {
+        CompletableFuture<Void> servicing = startPlaneServicing(airport, plane, startMillis, remainingMillis)
+                .exceptionally(error -> null);
+        if (gates == null) {
+            return servicing;
+        }
+        return servicing.thenRun(() -> gates.release(airport.getId(), engine.getClock().millis()));
+    }
+
+    // Starts servicing that began at 'startMillis' of simulated time, with 'remainingMillis' to go,
+    // or afresh if that's -1
+    private CompletableFuture<Void> startPlaneServicing(Airport airport, Plane plane, long startMillis, long remainingMillis)
+    {
+        planesServicing.incrementAndGet();
+        listener.statsChanged(getStats());
+
+        long startNanos = System.nanoTime();
+        Consumer<String> output = line -> listener.event(
+                new SimulationEvent(SimulationEvent.Type.SERVICE_OUTPUT, plane.getId(), airport.getId(), SimulationEvent.NONE, line));
+        servicingSince.set(plane.getId(), startMillis);
+        CompletableFuture<Void> servicing = remainingMillis < 0 ? serviceProvider.service(airport, plane, output)
+                : serviceProvider.resume(airport, plane, remainingMillis, output);
+        activeServicing.add(servicing);
+        return servicing.whenComplete((result, error) -> {
+            servicingSince.set(plane.getId(), SimulationSnapshot.NOT_SERVICING);
+            activeServicing.remove(servicing);
+            if (!isRunning) {
+                return; // Check if the simulation is still running before updating the counts
+            }
+            planesServicing.decrementAndGet();
+            if (recorder != null) {
+                recorder.serviced(plane.getId(), airport.getId(), engine.getClock().millis() - startMillis, error == null);
+            }
+            if (error == null) {
+                serviceDuration.recordSince(startNanos);
+                servicesCompleted.increment();
+                planesServiced.incrementAndGet();
+                totalCompletedTrips.incrementAndGet();
+                listener.event(new SimulationEvent(SimulationEvent.Type.SERVICE_COMPLETED, plane.getId(), airport.getId(),
+                        SimulationEvent.NONE, null));
+            } else {
+                servicesFailed.increment();
+                LOGGER.log(Level.SEVERE, "Error during plane servicing", error);
+                listener.event(new SimulationEvent(SimulationEvent.Type.SERVICE_FAILED, plane.getId(), airport.getId(),
+                        SimulationEvent.NONE, null));
+            }
+            listener.statsChanged(getStats());
+        });
+    }
+}
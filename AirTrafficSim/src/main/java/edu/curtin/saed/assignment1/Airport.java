@@ -0,0 +1,31 @@
+package edu.curtin.saed.assignment1;
+
+// An airport in the simulated airspace. Airports never move, so this is immutable.
+public class Airport
+{
+    private final int id;
+    private final double x;
+    private final double y;
+
+    public Airport(int id, double x, double y)
+    {
+        this.id = id;
+        this.x = x;
+        this.y = y;
+    }
+
+    public int getId() { return id; }
+    public double getX() { return x; }
+    public double getY() { return y; }
+
+    public String getName()
+    {
+        return "Airport " + id;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName();
+    }
+}
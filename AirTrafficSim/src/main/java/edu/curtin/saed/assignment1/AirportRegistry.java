@@ -0,0 +1,37 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// All airports, stored by ID so that lookups are a bounds check and an array index. IDs are
+// allocated densely from 0 in the order airports are added.
+public class AirportRegistry
+{
+    private final List<Airport> airports = new ArrayList<>();
+    private final List<Airport> view = Collections.unmodifiableList(airports);
+
+    public Airport add(double x, double y)
+    {
+        Airport airport = new Airport(airports.size(), x, y);
+        airports.add(airport);
+        return airport;
+    }
+
+    // Returns the airport with the given ID, or null if there isn't one
+    public Airport get(int id)
+    {
+        return id >= 0 && id < airports.size() ? airports.get(id) : null;
+    }
+
+    public int size()
+    {
+        return airports.size();
+    }
+
+    // Read-only view, in ID order
+    public List<Airport> asList()
+    {
+        return view;
+    }
+}
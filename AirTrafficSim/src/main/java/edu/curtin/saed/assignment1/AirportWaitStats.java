@@ -0,0 +1,73 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// How long planes had to wait for something at each airport, in simulated millis, so that the
+// congested airports of a large scenario can be picked out. Only planes that actually waited are
+// counted. record() is safe from any thread and never allocates.
+public class AirportWaitStats
+{
+    private final AtomicLongArray counts;
+    private final AtomicLongArray totalMillis;
+    private final AtomicLongArray maxMillis;
+
+    public AirportWaitStats(int airportCount)
+    {
+        counts = new AtomicLongArray(airportCount);
+        totalMillis = new AtomicLongArray(airportCount);
+        maxMillis = new AtomicLongArray(airportCount);
+    }
+
+    public void record(int airport, long millis)
+    {
+        if (millis <= 0) {
+            return;
+        }
+        counts.incrementAndGet(airport);
+        totalMillis.addAndGet(airport, millis);
+        maxMillis.accumulateAndGet(airport, millis, Math::max);
+    }
+
+    public long getCount(int airport) { return counts.get(airport); }
+    public long getTotalMillis(int airport) { return totalMillis.get(airport); }
+    public long getMaxMillis(int airport) { return maxMillis.get(airport); }
+
+    public double getMeanMillis(int airport)
+    {
+        long count = counts.get(airport);
+        return count == 0 ? 0.0 : (double) totalMillis.get(airport) / count;
+    }
+
+    // The (up to) 'limit' airports where planes waited longest in total across all of 'stats', longest
+    // first, leaving out airports nobody waited at. One pass over the airports, keeping the best so far
+    // in order, so it suits a limit of a few dozen.
+    public static int[] busiest(int limit, AirportWaitStats... stats)
+    {
+        int airportCount = stats[0].counts.length();
+        int[] best = new int[limit];
+        long[] bestTotal = new long[limit];
+        int found = 0;
+        for (int airport = 0; airport < airportCount; airport++) {
+            long total = 0;
+            for (AirportWaitStats s : stats) {
+                total += s.totalMillis.get(airport);
+            }
+            if (total == 0 || (found == limit && total <= bestTotal[limit - 1])) {
+                continue;
+            }
+            if (found < limit) {
+                found++;
+            }
+            int i = found - 1; // Takes a new place, or else the last one
+            while (i > 0 && bestTotal[i - 1] < total) {
+                best[i] = best[i - 1];
+                bestTotal[i] = bestTotal[i - 1];
+                i--;
+            }
+            best[i] = airport;
+            bestTotal[i] = total;
+        }
+        return Arrays.copyOf(best, found);
+    }
+}
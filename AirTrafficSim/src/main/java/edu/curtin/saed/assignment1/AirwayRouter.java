@@ -0,0 +1,317 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.atomic.LongAdder;
+
+// Finds the shortest route between two airports that keeps out of the scenario's restricted areas.
+//
+// The airway graph's waypoints are the corners of the restricted areas, pushed out by CLEARANCE, with
+// an airway between every two waypoints that can see each other past the areas. Shortest paths around
+// rectangles only ever turn at their corners, so A* over this graph finds the same routes as a search
+// over every grid cell would, but the graph's size depends on the number of areas, not on the grid
+// or the number of airports. Airports join the graph only for the search that needs them.
+//
+// A route that needn't turn, which is every route when there are no restricted areas, is built
+// without a search. Every route is kept in a bounded LRU cache keyed by (origin, destination), split
+// into stripes with a lock each, so plane threads looking up routes at once seldom wait on each other.
+public class AirwayRouter
+{
+    private static final double CLEARANCE = 0.25; // Grid squares kept between a route and a restricted area
+    private static final int CACHE_STRIPES = 16;
+
+    private final int areaCount;
+    private final double[] areaLeft; // Edges of each area in grid coordinates, so a cell's centre is inside
+    private final double[] areaTop;
+    private final double[] areaRight;
+    private final double[] areaBottom;
+    private final int waypointCount;
+    private final double[] waypointX;
+    private final double[] waypointY;
+    private final int[] airwayStart; // Waypoint w's airways are airwayTo[airwayStart[w]..airwayStart[w + 1]]
+    private final int[] airwayTo;
+    private final List<Map<Long, Route>> stripes = new ArrayList<>(CACHE_STRIPES); // Each a RouteCache
+    private final LongAdder cacheHits;
+    private final LongAdder cacheMisses;
+    private final LongAdder unroutable;
+    private final LatencyHistogram searchTime;
+
+    // Caches up to 'cacheSize' routes, and records its lookups and searches in 'metrics'
+    public AirwayRouter(Scenario scenario, int cacheSize, MetricsRegistry metrics)
+    {
+        areaCount = scenario.getRestrictedAreaCount();
+        areaLeft = new double[areaCount];
+        areaTop = new double[areaCount];
+        areaRight = new double[areaCount];
+        areaBottom = new double[areaCount];
+        for (int a = 0; a < areaCount; a++) {
+            areaLeft[a] = scenario.getRestrictedX(a) - 0.5;
+            areaTop[a] = scenario.getRestrictedY(a) - 0.5;
+            areaRight[a] = areaLeft[a] + scenario.getRestrictedWidth(a);
+            areaBottom[a] = areaTop[a] + scenario.getRestrictedHeight(a);
+        }
+
+        // Corners that fall inside another area or off the grid can't be flown through
+        double[] x = new double[areaCount * 4];
+        double[] y = new double[areaCount * 4];
+        double gridEdge = scenario.getGridSize() - 0.5;
+        int count = 0;
+        for (int a = 0; a < areaCount; a++) {
+            for (int corner = 0; corner < 4; corner++) {
+                double cx = (corner & 1) == 0 ? areaLeft[a] - CLEARANCE : areaRight[a] + CLEARANCE;
+                double cy = (corner & 2) == 0 ? areaTop[a] - CLEARANCE : areaBottom[a] + CLEARANCE;
+                if (cx >= -0.5 && cy >= -0.5 && cx <= gridEdge && cy <= gridEdge && !isRestricted(cx, cy)) {
+                    x[count] = cx;
+                    y[count] = cy;
+                    count++;
+                }
+            }
+        }
+        waypointCount = count;
+        waypointX = Arrays.copyOf(x, count);
+        waypointY = Arrays.copyOf(y, count);
+
+        // Airways in compressed rows; found once, in O(waypoints^2 x areas)
+        airwayStart = new int[count + 1];
+        int[] to = new int[16];
+        int airways = 0;
+        for (int w = 0; w < count; w++) {
+            for (int v = 0; v < count; v++) {
+                if (v != w && isClear(waypointX[w], waypointY[w], waypointX[v], waypointY[v])) {
+                    if (airways == to.length) {
+                        to = Arrays.copyOf(to, airways * 2);
+                    }
+                    to[airways++] = v;
+                }
+            }
+            airwayStart[w + 1] = airways;
+        }
+        airwayTo = Arrays.copyOf(to, airways);
+
+        int stripeSize = Math.max(1, cacheSize / CACHE_STRIPES);
+        for (int i = 0; i < CACHE_STRIPES; i++) {
+            stripes.add(new RouteCache(stripeSize));
+        }
+        cacheHits = metrics.counter("routes.cache-hits");
+        cacheMisses = metrics.counter("routes.cache-misses");
+        unroutable = metrics.counter("routes.unroutable");
+        searchTime = metrics.histogram("routes.search");
+    }
+
+    public int getWaypointCount()
+    {
+        return waypointCount;
+    }
+
+    // The route between two airports, from the cache if it's there. If the areas leave no way
+    // through, the flight goes straight there regardless. Safe to call from any thread.
+    public Route route(Airport origin, Airport destination)
+    {
+        long key = ((long) origin.getId() << 32) | (destination.getId() & 0xFFFF_FFFFL);
+        Map<Long, Route> stripe = stripes.get(Long.hashCode(key * 0x9E37_79B9_7F4A_7C15L) & (CACHE_STRIPES - 1));
+        Route route;
+        synchronized (stripe) {
+            route = stripe.get(key);
+        }
+        if (route != null) {
+            cacheHits.increment();
+            return route;
+        }
+
+        // Searched outside the lock. Two threads may both search for a route, which costs less than
+        // making one wait on the other.
+        cacheMisses.increment();
+        long startNanos = System.nanoTime();
+        route = findRoute(origin.getX(), origin.getY(), destination.getX(), destination.getY());
+        searchTime.recordSince(startNanos);
+        synchronized (stripe) {
+            stripe.put(key, route);
+        }
+        return route;
+    }
+
+    private Route findRoute(double fromX, double fromY, double toX, double toY)
+    {
+        if (isClear(fromX, fromY, toX, toY)) {
+            return Route.direct(fromX, fromY, toX, toY);
+        }
+
+        // A* over the waypoints, with the origin as node waypointCount and the destination as node
+        // waypointCount + 1. Straight-line distance to the destination never overestimates, so the
+        // first time the destination is taken from the queue, its route is the shortest.
+        int start = waypointCount;
+        int goal = waypointCount + 1;
+        double[] nodeX = Arrays.copyOf(waypointX, waypointCount + 2);
+        double[] nodeY = Arrays.copyOf(waypointY, waypointCount + 2);
+        nodeX[start] = fromX;
+        nodeY[start] = fromY;
+        nodeX[goal] = toX;
+        nodeY[goal] = toY;
+        boolean[] seesGoal = new boolean[waypointCount];
+        for (int w = 0; w < waypointCount; w++) {
+            seesGoal[w] = isClear(waypointX[w], waypointY[w], toX, toY);
+        }
+        double[] distance = new double[waypointCount + 2];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        int[] previous = new int[waypointCount + 2];
+        boolean[] done = new boolean[waypointCount + 2];
+        Queue<Open> open = new PriorityQueue<>();
+        distance[start] = 0.0;
+        open.add(new Open(start, Math.hypot(toX - fromX, toY - fromY)));
+
+        while (!open.isEmpty()) {
+            int node = open.poll().node;
+            if (done[node]) {
+                continue;
+            }
+            done[node] = true;
+            if (node == goal) {
+                return buildRoute(nodeX, nodeY, previous, start, goal);
+            }
+            if (node == start) {
+                for (int w = 0; w < waypointCount; w++) {
+                    if (isClear(fromX, fromY, waypointX[w], waypointY[w])) {
+                        relax(open, distance, previous, done, nodeX, nodeY, node, w, goal);
+                    }
+                }
+            } else {
+                for (int i = airwayStart[node]; i < airwayStart[node + 1]; i++) {
+                    relax(open, distance, previous, done, nodeX, nodeY, node, airwayTo[i], goal);
+                }
+                if (seesGoal[node]) {
+                    relax(open, distance, previous, done, nodeX, nodeY, node, goal, goal);
+                }
+            }
+        }
+        unroutable.increment();
+        return Route.direct(fromX, fromY, toX, toY);
+    }
+
+    private static void relax(Queue<Open> open, double[] distance, int[] previous, boolean[] done,
+                              double[] nodeX, double[] nodeY, int from, int to, int goal)
+    {
+        if (done[to]) {
+            return;
+        }
+        double via = distance[from] + Math.hypot(nodeX[to] - nodeX[from], nodeY[to] - nodeY[from]);
+        if (via < distance[to]) {
+            distance[to] = via;
+            previous[to] = from;
+            open.add(new Open(to, via + Math.hypot(nodeX[goal] - nodeX[to], nodeY[goal] - nodeY[to])));
+        }
+    }
+
+    private static Route buildRoute(double[] nodeX, double[] nodeY, int[] previous, int start, int goal)
+    {
+        int points = 1;
+        for (int node = goal; node != start; node = previous[node]) {
+            points++;
+        }
+        double[] x = new double[points];
+        double[] y = new double[points];
+        int node = goal;
+        for (int i = points - 1; i >= 0; i--) {
+            x[i] = nodeX[node];
+            y[i] = nodeY[node];
+            node = previous[node];
+        }
+        return new Route(x, y);
+    }
+
+    private boolean isRestricted(double x, double y)
+    {
+        for (int a = 0; a < areaCount; a++) {
+            if (x > areaLeft[a] && x < areaRight[a] && y > areaTop[a] && y < areaBottom[a]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // True if the segment doesn't pass through the inside of any area; running along an edge or
+    // touching a corner is fine
+    private boolean isClear(double x0, double y0, double x1, double y1)
+    {
+        double minX = Math.min(x0, x1);
+        double maxX = Math.max(x0, x1);
+        double minY = Math.min(y0, y1);
+        double maxY = Math.max(y0, y1);
+        for (int a = 0; a < areaCount; a++) {
+            if (maxX > areaLeft[a] && minX < areaRight[a] && maxY > areaTop[a] && minY < areaBottom[a]
+                    && crosses(a, x0, y0, x1 - x0, y1 - y0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Liang-Barsky clipping of the segment against the area: does any stretch of it lie inside?
+    private boolean crosses(int area, double x0, double y0, double dx, double dy)
+    {
+        double enter = 0.0;
+        double leave = 1.0;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x0 - areaLeft[area], areaRight[area] - x0, y0 - areaTop[area], areaBottom[area] - y0};
+        for (int edge = 0; edge < 4; edge++) {
+            if (p[edge] == 0.0) {
+                if (q[edge] <= 0.0) {
+                    return false; // Parallel to this edge, and outside it or on it
+                }
+            } else {
+                double t = q[edge] / p[edge];
+                if (p[edge] < 0.0) {
+                    enter = Math.max(enter, t);
+                } else {
+                    leave = Math.min(leave, t);
+                }
+                if (enter >= leave) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // A node waiting in the A* queue, by its distance so far plus the straight-line distance left
+    private static final class Open implements Comparable<Open>
+    {
+        private final int node;
+        private final double estimate;
+
+        private Open(int node, double estimate)
+        {
+            this.node = node;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public int compareTo(Open other)
+        {
+            return Double.compare(estimate, other.estimate);
+        }
+    }
+
+    // One stripe of the route cache: a LinkedHashMap in access order, dropping the least recently
+    // used route once full. Guarded by its own lock.
+    private static final class RouteCache extends LinkedHashMap<Long, Route>
+    {
+        private final int capacity;
+
+        private RouteCache(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Route> eldest)
+        {
+            return size() > capacity;
+        }
+    }
+}
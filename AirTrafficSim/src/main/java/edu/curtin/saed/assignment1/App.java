@@ -1,5 +1,6 @@
 package edu.curtin.saed.assignment1;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.scene.Scene;
@@ -7,42 +8,69 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class App extends Application
 {
-    private static final Logger LOGGER = Logger.getLogger(App.class.getName()); // Use Logger in accordance to PMD ruleset
-    private static final double SPEED = 10.0; // Speed of planes
-    private static final int GRID_SIZE = 10; // Grid size
+    private static final Logger LOGGER = Logger.getLogger(App.class.getName());
+    private static final int PROCESS_READER_THREADS = 2; // Enough to keep up with hundreds of comms processes
+    private static final String COMMS_JAR = "comms/lib/comms.jar";
+    private static final int EVENT_LOG_CAPACITY = 4096; // Most recent events kept and shown
+    private static final long EVENT_LOG_FILE_BYTES = 16L * 1024 * 1024;
+    private static final int EVENT_LOG_FILES = 5;
+    private static final double EVENT_CELL_HEIGHT = 24.0; // Fixed height lets the list skip measuring cells
+    private final SimulationConfig config = new SimulationConfig();
+    private Simulation simulation;
+    private final EventLog eventLog = new EventLog(EVENT_LOG_CAPACITY);
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private MetricsReporter metricsReporter;
+    private RunRecorder recorder;
+    private boolean replaying;
+    private RollingFileEventSink eventSink;
+    private UiUpdateBuffer updates;
+    private FlightRequestSource flightRequests;
+    private ProcessOutputMultiplexer processOutput;
+    private PooledProcessPlaneServiceProvider pooledService; // Only for --servicing=pooled
     private GridArea area;
-    private ExecutorService threadPool;
-    private volatile boolean isRunning;
-    private TextArea textArea;
+    private ListView<SimulationEvent> eventList;
     private Label planesServicingLabel;
     private Label planesServicedLabel;
     private Label completedTripsLabel;
     private Label planesInFlightLabel;
-    private int planesServicing = 0;
-    private int planesServiced = 0;
-    private int totalCompletedTrips = 0;
-    private int planesInFlight = 0;
-    private final ConcurrentMap<GridAreaIcon, BlockingQueue<GridAreaIcon>> planeRequests = new ConcurrentHashMap<>();
+    private Label conflictsLabel;
+    private Label queuedRequestsLabel;
+    private Label simulatedTimeLabel;
+    private final List<GridAreaIcon> planeIcons = new ArrayList<>(); // Indexed by plane ID
 
     public static void main(String[] args)
     {
-        launch();
+        launch(args);
     }
 
     @Override
     public void start(Stage stage)
     {
-        area = new GridArea(GRID_SIZE, GRID_SIZE);
+        try {
+            setUpSimulation(getParameters().getNamed());
+        } catch (IllegalArgumentException e) {
+            // As HeadlessRunner does for bad options, but where a GUI user will see it
+            LOGGER.log(Level.SEVERE, "Invalid option", e);
+            Alert alert = new Alert(Alert.AlertType.ERROR, e.getMessage());
+            alert.setHeaderText("Invalid option");
+            alert.showAndWait();
+            Platform.exit();
+            return;
+        }
+        area = new GridArea(config.getGridSize(), config.getGridSize());
         area.setStyle("-fx-background-color: #006000;");
         setupAirportsAndPlanes();
 
@@ -54,16 +82,21 @@ public class App extends Application
         planesServicedLabel = new Label("Planes Finished Servicing: 0");
         completedTripsLabel = new Label("Total Completed Plane Trips: 0"); // New label
         planesInFlightLabel = new Label("Planes In-Flight: 0"); // New label for in-flight planes
+        conflictsLabel = new Label("Separation Conflicts: 0");
+        queuedRequestsLabel = new Label("Queued Requests: 0");
+        simulatedTimeLabel = new Label(formatSimulatedTime(0));
+        ChoiceBox<String> timeScaleBox = createTimeScaleBox(simulation.getClock());
 
-        textArea = new TextArea();
-        textArea.setEditable(false);
-        textArea.appendText("Simulation Initialized.\n");
+        // ListView only creates cells for the rows on screen, however many events it holds
+        eventList = new ListView<>();
+        eventList.setFixedCellSize(EVENT_CELL_HEIGHT);
+        eventLog.append(SimulationEvent.info("Simulation Initialized."));
 
         startBtn.setOnAction(event -> startSimulation());
         endBtn.setOnAction(event -> endSimulation());
 
-        var toolbar = new ToolBar(startBtn, endBtn, new Separator(), statusText, planesServicingLabel, planesServicedLabel, completedTripsLabel, planesInFlightLabel);
-        var splitPane = new SplitPane(area, textArea);
+        var toolbar = new ToolBar(startBtn, endBtn, timeScaleBox, new Separator(), statusText, simulatedTimeLabel, planesServicingLabel, planesServicedLabel, completedTripsLabel, planesInFlightLabel, queuedRequestsLabel, conflictsLabel);
+        var splitPane = new SplitPane(area, eventList);
         splitPane.setDividerPositions(0.75);
 
         stage.setTitle("Air Traffic Simulator");
@@ -74,316 +107,394 @@ public class App extends Application
         var scene = new Scene(contentPane, 1200, 800);
         stage.setScene(scene);
         stage.show();
-    }
 
-    private void setupAirportsAndPlanes() {
-        Random rand = new Random();
-
-        // Define the number of airports and planes per airport
-        int totalAirports = 10;
-        int planesPerAirport = 10;
-
-        // Create airports and planes, placing each airport at a unique random position
-        for (int airportIndex = 0; airportIndex < totalAirports; airportIndex++) {
-            // Generate unique coordinates for the airport
-            int airportX = rand.nextInt(GRID_SIZE);
-            int airportY = rand.nextInt(GRID_SIZE);
-
-            // Create the airport icon
-            GridAreaIcon airportIcon = new GridAreaIcon(airportX, airportY, 0.0, 1.0,
-                    App.class.getClassLoader().getResourceAsStream("airport.png"),
-                    String.format("Airport %d", airportIndex));
-            area.getIcons().add(airportIcon);
+        new FrameUpdater().start();
+    }
 
-            // Generate planes for the current airport and add them to the grid
-            createPlanesForAirport(airportIndex, airportX, airportY, planesPerAirport);
+    // Opens the files and builds the simulation the options ask for. Throws IllegalArgumentException
+    // for an option that can't be used.
+    private void setUpSimulation(Map<String, String> options)
+    {
+        if (options.containsKey("event-log")) {
+            openEventLogFile(Path.of(options.get("event-log")));
+        }
+        if (options.containsKey("metrics")) {
+            openMetricsFile(Path.of(options.get("metrics")), longOption(options, "metrics-interval", 5, 1) * 1000);
+        }
+        RunReplay replay = options.containsKey("replay") ? loadReplay(Path.of(options.get("replay"))) : null;
+        Scenario scenario = replay != null ? replay.getScenario() : loadScenario(options.get("scenario"));
+        scenario.applyTo(config);
+        config.setVirtualPlaneThreads(usesVirtualPlaneThreads(options));
+        configurePendingRequests(options);
+        configureAirportCapacity(options);
+        config.setMinimumSeparation(doubleOption(options, "separation", 0.0)); // --separation=MIN
+        config.setShards(intOption(options, "shards", 0, 0)); // --shards=N worker JVMs step the flights
+        if (replay != null) {
+            replay.applyTo(config);
+        }
+        config.setTimeScale(SimulationClock.parseTimeScale(options.getOrDefault("time-scale", "1")));
+        var clock = new SimulationClock(config.getTimeScale());
+        updates = new UiUpdateBuffer(scenario.getPlaneCount(), eventLog, metrics.histogram("ui.frame-lag"));
+        processOutput = new ProcessOutputMultiplexer(PROCESS_READER_THREADS, "process-output");
+        var airTraffic = new AirTrafficSimulation(config, scenario, clock, metrics, updates,
+                replay != null ? replay.createServiceProvider(clock) : createServiceProvider(options, processOutput, clock));
+        simulation = airTraffic;
+        replaying = replay != null;
+        if (replaying) {
+            flightRequests = replay.createRequestSource(airTraffic);
+        } else if ("in-process".equals(options.getOrDefault("requests", "process"))) {
+            flightRequests = createSimulatedRequests(scenario);
+        } else {
+            flightRequests = new FlightRequestProcesses(simulation, processOutput, eventLog::append);
+        }
+        if (options.containsKey("record")) {
+            openRunLog(Path.of(options.get("record")), scenario, airTraffic);
         }
     }
 
-    private void createPlanesForAirport(int airportIndex, int airportX, int airportY, int planesPerAirport) {
-        for (int planeIndex = 0; planeIndex < planesPerAirport; planeIndex++) {
-            // Construct unique ID for each plane based on airport and plane index
-            String planeId = String.format("Plane %d", (airportIndex * planesPerAirport) + planeIndex);
-
-            // Create the plane icon at the airport's position
-            GridAreaIcon planeIcon = new GridAreaIcon(airportX, airportY, 0.0, 1.0,
-                    App.class.getClassLoader().getResourceAsStream("plane.png"),
-                    planeId);
+    @Override
+    public void stop()
+    {
+        if (eventSink != null) {
+            eventSink.close(); // Writes out any events still queued
+        }
+        if (metricsReporter != null) {
+            metricsReporter.close();
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+        // Last, as a run could still be using them until the window closes
+        if (pooledService != null) {
+            pooledService.shutdown();
+        }
+        if (processOutput != null) {
+            processOutput.shutdown();
+        }
+    }
 
-            // Add the plane to the grid and set up its request queue
-            area.getIcons().add(planeIcon);
-            planeRequests.put(planeIcon, new LinkedBlockingQueue<>()); // Initialize with a BlockingQueue
+    // --event-log=FILE also writes every event to FILE, rolling it over as it grows
+    private void openEventLogFile(Path path)
+    {
+        try {
+            eventSink = new RollingFileEventSink(path, EVENT_LOG_FILE_BYTES, EVENT_LOG_FILES);
+            eventLog.setSink(eventSink);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e, () -> "Error opening event log " + path);
+            eventLog.append(SimulationEvent.error("Could not open event log file " + path + "."));
         }
     }
 
-    private void startSimulation()
+    // --metrics=FILE dumps the simulation's counters and latency histograms to FILE every
+    // --metrics-interval=SECONDS (default 5), as CSV if FILE ends in .csv
+    private void openMetricsFile(Path path, long intervalMillis)
     {
-        if (isRunning) {
-            textArea.appendText("Simulation is already running.\n");
-            return;
+        try {
+            metricsReporter = new MetricsReporter(metrics, path, intervalMillis);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e, () -> "Error opening metrics file " + path);
+            eventLog.append(SimulationEvent.error("Could not open metrics file " + path + "."));
         }
+    }
 
-        threadPool = Executors.newCachedThreadPool();
-        isRunning = true; // Indicate that the simulation is running
-        textArea.appendText("Simulation Started.\n");
+    // --record=FILE logs the run from Start to End for replaying; a second Start isn't recorded
+    private void openRunLog(Path path, Scenario scenario, AirTrafficSimulation airTraffic)
+    {
+        try {
+            recorder = new RunRecorder(path, scenario, config, airTraffic::getTicks);
+            airTraffic.setRecorder(recorder);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e, () -> "Error opening run log " + path);
+            eventLog.append(SimulationEvent.error("Could not open run log file " + path + "."));
+        }
+    }
 
-        // Launch a flight request process for each airport
-        for (int originAirport = 0; originAirport < 10; originAirport++) {
-            final int finalOriginAirport = originAirport; // Create a final variable
+    // --replay=FILE takes the scenario, settings, flight requests, dispatches and servicing times from a run log,
+    // in place of --scenario, --requests and --servicing. A log that can't be loaded is reported and
+    // the simulation runs as if it hadn't been given.
+    private RunReplay loadReplay(Path path)
+    {
+        try {
+            RunReplay replay = RunReplay.load(path);
+            replay.describe(line -> eventLog.append(SimulationEvent.info("Replaying " + line)));
+            return replay;
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, e, () -> "Error loading run log " + path);
+            eventLog.append(SimulationEvent.error("Could not load run log: " + e.getMessage()));
+            return null;
+        }
+    }
 
+    // --scenario=FILE loads the airports and fleet from FILE; otherwise airports are placed at random.
+    // A scenario that can't be loaded is reported and the random layout used instead.
+    private Scenario loadScenario(String file)
+    {
+        if (file != null) {
             try {
-                int nAirports = 10; // Number of airports
-                Process flightRequestProcess = new ProcessBuilder("saed_flight_requests.bat", String.valueOf(nAirports), String.valueOf(finalOriginAirport))
-                        .redirectErrorStream(true)
-                        .start();
-
-                // Start a thread to handle flight requests for this airport
-                threadPool.submit(() -> {
-                    // Use try-with-resources inside the thread to ensure BufferedReader is closed properly
-                    try (BufferedReader flightRequestReader = new BufferedReader(new InputStreamReader(flightRequestProcess.getInputStream()))) {
-                        handleFlightRequests(flightRequestReader, flightRequestProcess, finalOriginAirport);
-                    } catch (IOException e) {
-                        if (LOGGER.isLoggable(Level.SEVERE)) {
-                            LOGGER.log(Level.SEVERE, "Error closing flight request reader for Airport " + finalOriginAirport, e);
-                        }
-                    }
-                });
-
-            } catch (IOException e) {
-                if (LOGGER.isLoggable(Level.SEVERE)) {
-                    LOGGER.log(Level.SEVERE, "Error starting flight request process for Airport " + finalOriginAirport, e);
-                }
-                textArea.appendText("Error starting flight request process for Airport " + finalOriginAirport + ".\n");
+                return ScenarioLoader.load(Path.of(file));
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.log(Level.SEVERE, e, () -> "Error loading scenario " + file);
+                eventLog.append(SimulationEvent.error("Could not load scenario: " + e.getMessage()));
             }
         }
+        return Scenario.random(config, new Random().nextLong());
+    }
 
-        // Start servicing planes
-        for (GridAreaIcon plane : planeRequests.keySet()) {
-            threadPool.submit(() -> servicePlane(plane));
+    // In-process requests follow the scenario's request rate if it has one, with waits uniformly
+    // spread around the mean; otherwise they match saed_flight_requests
+    private FlightRequestSource createSimulatedRequests(Scenario scenario)
+    {
+        if (scenario.getRequestRate() > 0.0) {
+            long meanWaitMillis = Math.round(1000.0 / scenario.getRequestRate());
+            return new SimulatedFlightRequests(simulation, 0, 2 * meanWaitMillis, new Random(scenario.getSeed()));
         }
+        return new SimulatedFlightRequests(simulation);
     }
 
-    private void endSimulation()
+    // --plane-threads=platform|virtual (default platform) chooses what kind of thread runs each plane
+    private static boolean usesVirtualPlaneThreads(Map<String, String> options)
     {
-        if (!isRunning) {
-            textArea.appendText("Simulation is not running.\n");
-            return;
+        String planeThreads = options.getOrDefault("plane-threads", "platform");
+        switch (planeThreads) {
+            case "virtual":
+                return true;
+            case "platform":
+                return false;
+            default:
+                throw new IllegalArgumentException("Unknown plane thread kind '" + planeThreads + "'");
         }
+    }
 
-        isRunning = false; // Indicate that the simulation is stopping
+    // --pending-requests=N (default 16) requests can wait at each airport for a plane to free up, and
+    // --overflow=block|drop-oldest|reject (default reject) says what happens to requests beyond that
+    private void configurePendingRequests(Map<String, String> options)
+    {
+        if (options.containsKey("pending-requests")) {
+            config.setPendingRequestsPerAirport(intOption(options, "pending-requests", 0, 0));
+        }
+        if (options.containsKey("overflow")) {
+            config.setOverflowPolicy(PendingRequestQueue.OverflowPolicy.parse(options.get("overflow")));
+        }
+    }
 
-        if (threadPool != null && !threadPool.isShutdown()) {
-            threadPool.shutdownNow();
-            try {
-                if (!threadPool.awaitTermination(5, TimeUnit.SECONDS)) {
-                    threadPool.shutdownNow(); // Force shutdown if not done within 5 seconds
-                }
-            } catch (InterruptedException e) {
-                threadPool.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
+    // --landings=N lets each airport land N planes per --landing-window=MILLIS (default 1000) of
+    // simulated time, and --gates=N lets it service N planes at once, so a busy airport never runs more
+    // than N service processes; both default to no limit
+    private void configureAirportCapacity(Map<String, String> options)
+    {
+        if (options.containsKey("landings")) {
+            config.setLandingsPerWindow(intOption(options, "landings", 0, 0));
+        }
+        if (options.containsKey("landing-window")) {
+            config.setLandingWindowMillis(longOption(options, "landing-window", 0, 1));
+        }
+        if (options.containsKey("gates")) {
+            config.setGatesPerAirport(intOption(options, "gates", 0, 0));
+        }
+    }
+
+    // Chooses how planes are serviced from --servicing=process|pooled|in-process (default process),
+    // with --service-workers=N for the pooled workers and --service-time=SPEC for in-process servicing
+    private PlaneServiceProvider createServiceProvider(Map<String, String> options, ProcessOutputMultiplexer processOutput,
+                                                       SimulationClock clock)
+    {
+        String servicing = options.getOrDefault("servicing", "process");
+        switch (servicing) {
+            case "in-process":
+                return new SimulatedPlaneService(clock,
+                        ServiceTimeDistribution.parse(options.getOrDefault("service-time", "uniform:1000:5000")));
+            case "pooled":
+                int workers = intOption(options, "service-workers", 8, 1);
+                pooledService = new PooledProcessPlaneServiceProvider(PooledProcessPlaneServiceProvider.workerCommand(COMMS_JAR),
+                        workers, processOutput);
+                return pooledService;
+            case "process":
+                return new ProcessPlaneServiceProvider(processOutput);
+            default:
+                throw new IllegalArgumentException("Unknown servicing mode '" + servicing + "'");
         }
+    }
 
-        textArea.appendText("Simulation Ended.\n");
+    // The named option as a whole number of at least 'min', or 'fallback' if it isn't given
+    private static long longOption(Map<String, String> options, String name, long fallback, long min)
+    {
+        String value = options.get(name);
+        if (value == null) {
+            return fallback;
+        }
+        long parsed;
+        try {
+            parsed = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value '" + value + "' for --" + name, e);
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException("--" + name + " must be at least " + min);
+        }
+        return parsed;
     }
 
-    private void handleFlightRequests(BufferedReader flightRequestReader, Process flightRequestProcess, int originAirport)
+    private static int intOption(Map<String, String> options, String name, int fallback, int min)
     {
+        long parsed = longOption(options, name, fallback, min);
+        if (parsed > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("--" + name + " must be at most " + Integer.MAX_VALUE);
+        }
+        return (int) parsed;
+    }
+
+    // The named option as a number of at least zero, or 'fallback' if it isn't given
+    private static double doubleOption(Map<String, String> options, String name, double fallback)
+    {
+        String value = options.get(name);
+        if (value == null) {
+            return fallback;
+        }
+        double parsed;
         try {
-            String line;
-            while (isRunning && (line = flightRequestReader.readLine()) != null) {
-                final String lineCopy = line.trim();
-                if (lineCopy.isEmpty()) {
-                    continue; // Skip empty lines
-                }
+            parsed = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value '" + value + "' for --" + name, e);
+        }
+        if (!(parsed >= 0.0) || Double.isInfinite(parsed)) { // Also catches NaN
+            throw new IllegalArgumentException("--" + name + " must be a number of at least 0");
+        }
+        return parsed;
+    }
 
-                Platform.runLater(() -> {
-                    try {
-                        int destinationAirport = Integer.parseInt(lineCopy);
-
-                        // Validate airport ID
-                        if (destinationAirport < 0 || destinationAirport >= 10) {
-                            textArea.appendText("Error: Invalid destination airport " + destinationAirport + " from Airport " + originAirport + ".\n");
-                            return;
-                        }
-
-                        GridAreaIcon destination = getAirportById(destinationAirport);
-                        if (destination != null) {
-                            GridAreaIcon availablePlane = getAvailablePlane();
-                            if (availablePlane != null) {
-                                textArea.appendText("Flight request: Plane " + availablePlane.getCaption().split(" ")[1] +
-                                        " to Airport " + destinationAirport + ".\n");
-
-                                planesInFlight++; // Increment in-flight planes
-                                planesInFlightLabel.setText("Planes In-Flight: " + planesInFlight); // Update in-flight label
-
-                                try {
-                                    planeRequests.get(availablePlane).put(destination); // Use put to add to the BlockingQueue
-                                } catch (InterruptedException e) {
-                                    Thread.currentThread().interrupt();
-                                }
-                            } else {
-                                textArea.appendText("No available planes to handle request from Airport " + originAirport + " to Airport " + destinationAirport + ".\n");
-                            }
-                        } else {
-                            textArea.appendText("Error: Destination airport " + destinationAirport + " not found.\n");
-                        }
-                    } catch (NumberFormatException e) {
-                        textArea.appendText("Error: Invalid flight request '" + lineCopy + "' from Airport " + originAirport + ".\n");
-                    }
-                });
-            }
-        } catch (IOException e) {
-            if (LOGGER.isLoggable(Level.SEVERE)) {
-                LOGGER.log(Level.SEVERE, "Error reading flight requests from Airport " + originAirport, e);
-            }
-            Platform.runLater(() -> textArea.appendText("Error reading flight requests from Airport " + originAirport + ".\n"));
-        } finally {
-            // Ensure the process is terminated when the simulation ends
-            if (flightRequestProcess.isAlive()) {
-                flightRequestProcess.destroy();
-            }
+    // Lets the time scale change while the simulation runs. --time-scale=N|max sets the starting
+    // scale, which is added to the choices if it isn't one of them.
+    private static ChoiceBox<String> createTimeScaleBox(SimulationClock clock)
+    {
+        ChoiceBox<String> box = new ChoiceBox<>();
+        box.getItems().addAll("1x", "10x", "100x", "1000x", "Max");
+        String current = formatTimeScale(clock.getTimeScale());
+        if (!box.getItems().contains(current)) {
+            box.getItems().add(0, current);
         }
+        box.setValue(current);
+        box.setOnAction(event -> {
+            String choice = box.getValue();
+            clock.setTimeScale("Max".equals(choice) ? SimulationClock.AS_FAST_AS_POSSIBLE
+                    : Double.parseDouble(choice.substring(0, choice.length() - 1)));
+        });
+        return box;
     }
 
-    private GridAreaIcon getAvailablePlane()
+    private static String formatTimeScale(double timeScale)
     {
-        synchronized (planeRequests) { // Avoid method-level synchronized
-            for (GridAreaIcon plane : planeRequests.keySet()) {
-                if (planeRequests.get(plane).isEmpty()) {
-                    return plane;
-                }
-            }
+        if (timeScale == SimulationClock.AS_FAST_AS_POSSIBLE) {
+            return "Max";
         }
-        return null;
+        return (timeScale == Math.rint(timeScale) ? String.valueOf((long) timeScale) : String.valueOf(timeScale)) + "x";
     }
 
-    private GridAreaIcon getAirportById(int id)
+    private static String formatSimulatedTime(long millis)
     {
-        synchronized (area.getIcons()) { // Avoid method-level synchronized
-            for (GridAreaIcon icon : area.getIcons()) {
-                if (icon.getCaption().equals("Airport " + id)) {
-                    return icon;
-                }
-            }
+        long seconds = millis / 1000;
+        return String.format("Simulated Time: %dd %02d:%02d:%02d", seconds / 86_400, seconds / 3600 % 24,
+                seconds / 60 % 60, seconds % 60);
+    }
+
+    // Creates an icon for each airport and plane the simulation has placed
+    private void setupAirportsAndPlanes() {
+        for (Airport airport : simulation.getAirports()) {
+            GridAreaIcon airportIcon = new GridAreaIcon(airport.getX(), airport.getY(), 0.0, 1.0,
+                    area.getImageAtlas().get("airport.png"),
+                    airport.getName());
+            airportIcon.setMovable(false);
+            area.getIcons().add(airportIcon);
+        }
+
+        for (Plane plane : simulation.getPlanes()) {
+            GridAreaIcon planeIcon = new GridAreaIcon(plane.getX(), plane.getY(), 0.0, 1.0,
+                    area.getImageAtlas().get("plane.png"),
+                    plane.getName());
+            area.getIcons().add(planeIcon);
+            planeIcons.add(planeIcon);
+            updates.setPosition(plane.getId(), plane.getX(), plane.getY());
         }
-        return null;
     }
 
-    private void servicePlane(GridAreaIcon plane)
+    private void startSimulation()
     {
-        while (isRunning && !Thread.currentThread().isInterrupted())
-        {
-            GridAreaIcon destination;
+        if (simulation.isRunning()) {
+            eventLog.append(SimulationEvent.info("Simulation is already running."));
+            return;
+        }
 
-            try {
-                destination = planeRequests.get(plane).take(); // Use take to retrieve from the BlockingQueue
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            }
+        if (replaying) {
+            flightRequests.start(); // First, so the log's requests line up with the simulation's ticks
+            simulation.start();
+        } else {
+            simulation.start();
+            flightRequests.start();
+        }
+        eventLog.append(SimulationEvent.info("Simulation Started."));
+    }
 
-            if (destination != null) {
-                final GridAreaIcon finalDestination = destination; // Make the variable effectively final
-                PlaneMovement movement = new PlaneMovement(plane, finalDestination, area, SPEED, textArea);
-                Thread planeThread = new Thread(movement);
-                planeThread.start();
-
-                try {
-                    planeThread.join(); // Wait until the plane reaches its destination
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
+    private void endSimulation()
+    {
+        if (!simulation.isRunning()) {
+            eventLog.append(SimulationEvent.info("Simulation is not running."));
+            return;
+        }
 
-                if (isRunning) { // Check if the simulation is still running before servicing
-                    Platform.runLater(() -> {
-                        // After landing, ensure the plane is set to the correct position
-                        plane.setPosition(finalDestination.getX(), finalDestination.getY());
-                        area.requestLayout();
+        flightRequests.stop();
+        simulation.stop();
+        if (recorder != null) {
+            recorder.close();
+        }
 
-                        // Re-add the plane to the grid area if it was somehow removed
-                        if (!area.getIcons().contains(plane)) {
-                            area.getIcons().add(plane);
-                        }
+        eventLog.append(SimulationEvent.info("Simulation Ended."));
+    }
 
-                        // Decrement in-flight planes count when landing
-                        planesInFlight--;
-                        planesInFlightLabel.setText("Planes In-Flight: " + planesInFlight); // Update in-flight label
+    // Once per rendered frame, pulls the latest plane positions, counters and events out of the
+    // update buffer and event log, so the FX thread does a bounded amount of work however busy the
+    // simulation is. The list keeps no more events than the log itself, dropping the oldest.
+    private class FrameUpdater extends AnimationTimer
+    {
+        private final List<SimulationEvent> newEvents = new ArrayList<>();
+        private final Consumer<SimulationEvent> collector = newEvents::add;
+        private final IntConsumer moveIcon =
+                planeId -> planeIcons.get(planeId).setPosition(updates.getX(planeId), updates.getY(planeId));
+        private long nextEvent;
+        private long shownSeconds;
+
+        @Override
+        public void handle(long now)
+        {
+            long simulatedMillis = simulation.getClock().millis();
+            if (simulatedMillis / 1000 != shownSeconds) {
+                shownSeconds = simulatedMillis / 1000;
+                simulatedTimeLabel.setText(formatSimulatedTime(simulatedMillis));
+            }
 
-                        // Start the plane servicing process
-                        startPlaneServicing(finalDestination, plane);
-                    });
-                }
+            if (updates.takePositionsDirty()) {
+                updates.forEachMovedPlane(moveIcon); // Only the icons that moved
+                area.requestLayout();
             }
 
-            try {
-                Thread.sleep(500); // Small delay to avoid overloading the system
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+            if (updates.takeStatsDirty()) {
+                SimulationStats stats = simulation.getStats();
+                planesServicingLabel.setText("Planes Undergoing Servicing: " + stats.getPlanesServicing());
+                planesServicedLabel.setText("Planes Finished Servicing: " + stats.getPlanesServiced());
+                completedTripsLabel.setText("Total Completed Plane Trips: " + stats.getTotalCompletedTrips());
+                planesInFlightLabel.setText("Planes In-Flight: " + stats.getPlanesInFlight());
+                conflictsLabel.setText("Separation Conflicts: " + stats.getSeparationConflicts());
+                queuedRequestsLabel.setText("Queued Requests: " + stats.getQueuedRequests());
             }
-        }
-    }
 
-    private void startPlaneServicing(GridAreaIcon airport, GridAreaIcon plane) {
-        // Check if the thread pool is not shut down before submitting a task
-        if (threadPool != null && !threadPool.isShutdown()) {
-            threadPool.submit(() -> {
-                Process serviceProcess = null;
-                try {
-                    serviceProcess = new ProcessBuilder(
-                            "saed_plane_service.bat",
-                            airport.getCaption().split(" ")[1],
-                            plane.getCaption().split(" ")[1])
-                            .redirectErrorStream(true)
-                            .start();
-
-                    // Update the servicing count
-                    Platform.runLater(() -> {
-                        planesServicing++;
-                        planesServicingLabel.setText("Planes Undergoing Servicing: " + planesServicing);
-                    });
-
-                    try (BufferedReader serviceReader = new BufferedReader(new InputStreamReader(serviceProcess.getInputStream()))) {
-                        String output;
-                        while ((output = serviceReader.readLine()) != null) {
-                            final String finalOutput = output;
-                            Platform.runLater(() -> textArea.appendText(finalOutput + "\n"));
-                        }
-                    }
-
-                    serviceProcess.waitFor(); // Wait for the process to finish
-
-                    if (isRunning) { // Check if the simulation is still running before updating the UI
-                        // Update the counts after servicing
-                        Platform.runLater(() -> {
-                            planesServicing--;
-                            planesServiced++;
-                            planesServicingLabel.setText("Planes Undergoing Servicing: " + planesServicing);
-                            planesServicedLabel.setText("Planes Finished Servicing: " + planesServiced);
-
-                            totalCompletedTrips++; // Increment total completed trips
-                            completedTripsLabel.setText("Total Completed Plane Trips: " + totalCompletedTrips); // Update completed trips label
-
-                            textArea.appendText("Plane " + plane.getCaption().split(" ")[1] + " has completed servicing at " + airport.getCaption() + ".\n");
-                        });
-                    }
-
-                } catch (IOException e) {
-                    LOGGER.log(Level.SEVERE, "Error during plane servicing", e); // Replacing printStackTrace
-                } catch (InterruptedException e) {
-                    if (serviceProcess != null) {
-                        serviceProcess.destroy();
-                    }
-                    Thread.currentThread().interrupt();  // Restore the interrupted status
-                    Platform.runLater(() -> textArea.appendText("Servicing interrupted for Plane " + plane.getCaption().split(" ")[1] + ".\n"));
-                } finally {
-                    if (serviceProcess != null && serviceProcess.isAlive()) {
-                        serviceProcess.destroy();  // Ensure the process is destroyed
-                    }
+            nextEvent = eventLog.readFrom(nextEvent, collector);
+            if (!newEvents.isEmpty()) {
+                var items = eventList.getItems();
+                items.addAll(newEvents);
+                newEvents.clear();
+                if (items.size() > EVENT_LOG_CAPACITY) {
+                    items.remove(0, items.size() - EVENT_LOG_CAPACITY);
                 }
-            });
+                eventList.scrollTo(items.size() - 1);
+            }
         }
     }
 }
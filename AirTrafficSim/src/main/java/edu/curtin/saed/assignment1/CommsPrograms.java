@@ -0,0 +1,21 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.Locale;
+
+// Names of the external comms programs in comms/bin, which have a .bat wrapper on Windows only
+public final class CommsPrograms
+{
+    public static final String FLIGHT_REQUESTS = "saed_flight_requests";
+    public static final String PLANE_SERVICE = "saed_plane_service";
+    private static final boolean WINDOWS = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+
+    private CommsPrograms()
+    {
+    }
+
+    // The command to run the named program on this platform
+    public static String command(String program)
+    {
+        return WINDOWS ? program + ".bat" : program;
+    }
+}
@@ -0,0 +1,69 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// Fixed-capacity ring buffer of the most recent simulation events. Any thread can append without
+// locking; once the buffer is full each new event overwrites the oldest, so memory use is constant
+// however long the simulation runs. Readers follow along by sequence number and simply miss events
+// that were overwritten before they got to them.
+public class EventLog
+{
+    private final AtomicReferenceArray<SimulationEvent> slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private volatile Consumer<SimulationEvent> sink;
+
+    // The capacity is rounded up to a power of two
+    public EventLog(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    public int getCapacity()
+    {
+        return slots.length();
+    }
+
+    // Also passes every appended event to the given sink, on the appending thread, so sinks must be
+    // quick and non-blocking. Null removes the sink.
+    public void setSink(Consumer<SimulationEvent> sink)
+    {
+        this.sink = sink;
+    }
+
+    public void append(SimulationEvent event)
+    {
+        long sequence = nextSequence.getAndIncrement();
+        event.setSequence(sequence);
+        slots.set((int) (sequence & mask), event); // Publishes the event and its sequence number
+
+        Consumer<SimulationEvent> currentSink = sink;
+        if (currentSink != null) {
+            currentSink.accept(event);
+        }
+    }
+
+    // Passes the events from sequence number 'from' onwards to the consumer in order, skipping any
+    // already overwritten, and returns the sequence number to read from next time
+    public long readFrom(long from, Consumer<SimulationEvent> consumer)
+    {
+        long end = nextSequence.get();
+        long sequence = Math.max(from, end - slots.length());
+        while (sequence < end) {
+            SimulationEvent event = slots.get((int) (sequence & mask));
+            if (event == null || event.getSequence() < sequence) {
+                // Claimed but not yet stored by its appender; pick it up on the next read
+                return sequence;
+            }
+            if (event.getSequence() == sequence) {
+                consumer.accept(event);
+            }
+            sequence++; // A later sequence number means this one was already overwritten
+        }
+        return end;
+    }
+}
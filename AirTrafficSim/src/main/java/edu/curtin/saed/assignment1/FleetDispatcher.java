@@ -0,0 +1,276 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+// Keeps a lock-free pool of idle planes at each airport. claim() takes a plane out of a pool, so each
+// plane is handed to exactly one request; release() puts it back once it is free again. Planes at the
+// requesting airport are preferred, then planes at its nearest neighbours, then any idle plane.
+public class FleetDispatcher
+{
+    private static final int NEAREST_AIRPORTS = 8; // Neighbours tried before falling back to a full scan
+    private static final int IDLE = 0;
+    private static final int BUSY = 1;
+
+    private final List<Queue<Plane>> idlePlanes = new ArrayList<>();
+    private final int[][] nearest;
+    private final AtomicIntegerArray planeStates;
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger nextScanStart = new AtomicInteger();
+
+    public FleetDispatcher(List<Airport> airports, int planeCount)
+    {
+        int airportCount = airports.size();
+        for (int i = 0; i < airportCount; i++) {
+            idlePlanes.add(new ConcurrentLinkedQueue<>());
+        }
+        nearest = findNearestAirports(airports);
+        planeStates = new AtomicIntegerArray(planeCount);
+        for (int i = 0; i < planeCount; i++) {
+            planeStates.set(i, BUSY); // Nothing is idle until it's been released
+        }
+    }
+
+    // Empties every pool and marks all planes busy, ready for them to be released afresh
+    public void reset()
+    {
+        for (Queue<Plane> pool : idlePlanes) {
+            pool.clear();
+        }
+        for (int i = 0; i < planeStates.length(); i++) {
+            planeStates.set(i, BUSY);
+        }
+        idleCount.set(0);
+    }
+
+    public int getIdleCount()
+    {
+        return idleCount.get();
+    }
+
+    // Up to NEAREST_AIRPORTS other airports, nearest first. The array must not be changed.
+    public int[] getNearestAirports(int airport)
+    {
+        return nearest[airport];
+    }
+
+    public boolean isIdle(int planeId)
+    {
+        return planeStates.get(planeId) == IDLE;
+    }
+
+    // Every idle plane, airport by airport, in the order each airport's pool will hand them out
+    public void forEachIdle(Consumer<Plane> visitor)
+    {
+        for (Queue<Plane> pool : idlePlanes) {
+            pool.forEach(visitor);
+        }
+    }
+
+    // Where the next fallback scan for an idle plane starts; kept by snapshots
+    public int getScanStart()
+    {
+        return nextScanStart.get();
+    }
+
+    public void setScanStart(int start)
+    {
+        nextScanStart.set(start);
+    }
+
+    // Reserves an idle plane for a flight from the given airport, or returns null if none are idle
+    public Plane claim(int originAirport)
+    {
+        if (idleCount.get() == 0) {
+            return null; // Nothing to find, so skip the search entirely
+        }
+
+        Plane plane = claimFrom(originAirport);
+        for (int i = 0; plane == null && i < nearest[originAirport].length; i++) {
+            plane = claimFrom(nearest[originAirport][i]);
+        }
+
+        // Rare: everything nearby is busy but planes are idle elsewhere. Rotate the starting point
+        // so concurrent fallbacks don't all contend on the same pools.
+        int airportCount = idlePlanes.size();
+        int start = Math.floorMod(nextScanStart.getAndIncrement(), airportCount);
+        for (int i = 0; plane == null && i < airportCount && idleCount.get() > 0; i++) {
+            plane = claimFrom((start + i) % airportCount);
+        }
+        return plane;
+    }
+
+    // Reserves this plane if it is idle, as when replaying a run log's dispatches. Not safe to mix
+    // with claim(int), which could be taking the same plane at once.
+    public boolean claim(Plane plane)
+    {
+        if (!planeStates.compareAndSet(plane.getId(), IDLE, BUSY)) {
+            return false;
+        }
+        idlePlanes.get(plane.getAirport().getId()).remove(plane);
+        idleCount.decrementAndGet();
+        return true;
+    }
+
+    // Returns a plane to the idle pool of the airport it is parked at. Releasing a plane that is
+    // already idle has no effect.
+    public void release(Plane plane, Airport airport)
+    {
+        if (planeStates.compareAndSet(plane.getId(), BUSY, IDLE)) {
+            idlePlanes.get(airport.getId()).add(plane);
+            idleCount.incrementAndGet();
+        }
+    }
+
+    private Plane claimFrom(int airport)
+    {
+        Plane plane = idlePlanes.get(airport).poll(); // poll() hands each queued plane to one caller only
+        if (plane != null) {
+            idleCount.decrementAndGet();
+            planeStates.set(plane.getId(), BUSY);
+        }
+        return plane;
+    }
+
+    // For each airport, finds up to NEAREST_AIRPORTS other airports ordered by distance. Airports are
+    // bucketed into square cells of a coarse grid and the search widens ring by ring, so this stays
+    // close to linear in the number of airports rather than comparing every pair. Package-private
+    // for FleetDispatcherCheck.
+    /* default */ static int[][] findNearestAirports(List<Airport> airports)
+    {
+        int count = airports.size();
+        int[][] result = new int[count][];
+        if (count == 0) {
+            return result;
+        }
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (Airport airport : airports) {
+            minX = Math.min(minX, airport.getX());
+            minY = Math.min(minY, airport.getY());
+            maxX = Math.max(maxX, airport.getX());
+            maxY = Math.max(maxY, airport.getY());
+        }
+
+        // Roughly two airports per cell, but no more cells along the longer side than that, so airports
+        // spread along a strip still share cells
+        double width = maxX - minX;
+        double height = maxY - minY;
+        double cellSize = Math.max(Math.max(Math.sqrt(width * height * 2.0 / count),
+                Math.max(width, height) * 2.0 / count), 1e-9);
+        int cellsX = Math.max(1, (int) Math.ceil(width / cellSize));
+        int cellsY = Math.max(1, (int) Math.ceil(height / cellSize));
+
+        // Counting sort of airports into cells: cellStart[c]..cellStart[c + 1] indexes cellAirports
+        int[] cellOf = new int[count];
+        int[] cellStart = new int[cellsX * cellsY + 1];
+        for (int i = 0; i < count; i++) {
+            Airport airport = airports.get(i);
+            int cx = Math.min(cellsX - 1, (int) ((airport.getX() - minX) / cellSize));
+            int cy = Math.min(cellsY - 1, (int) ((airport.getY() - minY) / cellSize));
+            cellOf[i] = cy * cellsX + cx;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cellsX * cellsY; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] fill = Arrays.copyOf(cellStart, cellStart.length);
+        int[] cellAirports = new int[count];
+        for (int i = 0; i < count; i++) {
+            cellAirports[fill[cellOf[i]]++] = i;
+        }
+
+        int wanted = Math.min(NEAREST_AIRPORTS, count - 1);
+        int maxRing = Math.max(cellsX, cellsY);
+        int[] candidates = new int[count];
+        double[] distances = new double[count];
+        double[] best = new double[wanted]; // The nearest distances found so far, in order
+        for (int i = 0; i < count; i++) {
+            int cx = cellOf[i] % cellsX;
+            int cy = cellOf[i] / cellsX;
+            int found = 0;
+            int bestCount = 0;
+
+            // Widen until no airport outside the rings searched can be nearer than the furthest of the
+            // nearest found: anything further out is at least 'ring' whole cells away
+            for (int ring = 0; ring < maxRing; ring++) {
+                for (int y = Math.max(0, cy - ring); y <= Math.min(cellsY - 1, cy + ring); y++) {
+                    // Every cell of the ring's top and bottom rows, but only its two sides in between
+                    boolean edgeRow = Math.abs(y - cy) == ring;
+                    int firstX = edgeRow ? Math.max(0, cx - ring) : cx - ring;
+                    int lastX = edgeRow ? Math.min(cellsX - 1, cx + ring) : cx + ring;
+                    for (int x = firstX; x <= lastX; x += edgeRow ? 1 : 2 * ring) {
+                        if (x < 0 || x >= cellsX) {
+                            continue;
+                        }
+                        int cell = y * cellsX + x;
+                        for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                            int other = cellAirports[k];
+                            if (other != i) {
+                                candidates[found] = other;
+                                distances[found] = Math.hypot(airports.get(other).getX() - airports.get(i).getX(),
+                                        airports.get(other).getY() - airports.get(i).getY());
+                                bestCount = keepNearest(best, bestCount, distances[found]);
+                                found++;
+                            }
+                        }
+                    }
+                }
+                if (bestCount == wanted && (wanted == 0 || ring * cellSize >= best[wanted - 1])) {
+                    break;
+                }
+            }
+            result[i] = closest(candidates, distances, found, wanted);
+        }
+        return result;
+    }
+
+    // Inserts the distance into 'best', which holds the 'count' smallest so far in order, if it is
+    // among the best.length smallest, and returns the new count
+    private static int keepNearest(double[] best, int count, double distance)
+    {
+        int size = count;
+        if (size == best.length) {
+            if (size == 0 || distance >= best[size - 1]) {
+                return size;
+            }
+            size--; // Drop the furthest
+        }
+        int k = size;
+        while (k > 0 && best[k - 1] > distance) {
+            best[k] = best[k - 1];
+            k--;
+        }
+        best[k] = distance;
+        return size + 1;
+    }
+
+    // Partial selection sort; 'wanted' is small so this beats sorting all the candidates
+    private static int[] closest(int[] candidates, double[] distances, int found, int wanted)
+    {
+        int size = Math.min(wanted, found);
+        int[] result = new int[size];
+        for (int r = 0; r < size; r++) {
+            int best = r;
+            for (int k = r + 1; k < found; k++) {
+                if (distances[k] < distances[best]) {
+                    best = k;
+                }
+            }
+            int candidate = candidates[best];
+            double distance = distances[best];
+            candidates[best] = candidates[r];
+            distances[best] = distances[r];
+            candidates[r] = candidate;
+            distances[r] = distance;
+            result[r] = candidate;
+        }
+        return result;
+    }
+}
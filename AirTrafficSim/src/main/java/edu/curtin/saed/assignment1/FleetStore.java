@@ -0,0 +1,481 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// The state of every plane in flight, kept as parallel primitive arrays rather than one object per
+// flight. Flights occupy slots 0..size()-1 with no gaps (an arrival swap-removes its slot), so
+// advance() is one pass of plain arithmetic over contiguous arrays, with no allocation, no pointer
+// chasing and no branches the JIT can't turn into conditional moves. Only used from the engine thread.
+//
+// Each flight follows its Route, a polyline whose segment directions and lengths are worked out
+// before take-off, so a step is an add along the current segment and a subtract from what's left of
+// it. Only the step that reaches a waypoint touches the Route, to turn onto the next segment.
+//
+// Large fleets are advanced in parallel. Every so often the slots are sorted by spatial cell, so each
+// cell's planes sit in one contiguous run of slots, and the work is split into ForkJoin tasks at cell
+// boundaries. Each plane's step depends only on its own state and the sort depends only on positions,
+// so the result of a tick is the same whatever the number of threads.
+public class FleetStore
+{
+    public static final double ARRIVAL_DISTANCE = 0.5; // Closer than this and the plane lands
+    private static final double STEP_SCALE = 0.05; // Grid squares per tick at speed 1
+    private static final int PARKED = -1;
+    private static final int PARALLEL_THRESHOLD = 16_384; // Below this, forking costs more than it saves
+    private static final int TASK_SLOTS = 4096; // Roughly the most planes one task advances
+    private static final int SORT_INTERVAL = 32; // Ticks between cell sorts; planes drift slowly
+    private static final int PLANES_PER_CELL = 256;
+    private static final int MAX_CELLS_PER_SIDE = 1024;
+
+    // Indexed by slot. There can't be more flights than planes, so these never need to grow. The
+    // spare arrays are scratch space for the cell sort, allocated on first use.
+    private final double[] x;
+    private final double[] y;
+    private final double[] heading; // Degrees anticlockwise from the +x axis, for front ends that orient icons
+    private final double[] stepLength; // Grid squares moved per tick
+    private final double[] targetX;
+    private final double[] targetY;
+    private final double[] originX;
+    private final double[] originY;
+    private final double[] directionX; // Unit vector along the current segment
+    private final double[] directionY;
+    private final double[] segmentLeft; // Distance to the end of the current segment
+    private final double[] routeLeft; // Distance to the destination along the route
+    private final int[] segment;
+    private final Route[] routes;
+    private final boolean[] landing;
+    private final int[] planeIds;
+    private final PlaneMovement[] movements;
+    private double[] spareX;
+    private double[] spareY;
+    private double[] spareHeading;
+    private double[] spareStepLength;
+    private double[] spareTargetX;
+    private double[] spareTargetY;
+    private double[] spareOriginX;
+    private double[] spareOriginY;
+    private double[] spareDirectionX;
+    private double[] spareDirectionY;
+    private double[] spareSegmentLeft;
+    private double[] spareRouteLeft;
+    private int[] spareSegment;
+    private Route[] spareRoutes;
+    private int[] sparePlaneIds;
+    private PlaneMovement[] spareMovements;
+    private int[] cellOfSlot;
+
+    // Indexed by plane ID: the slot the plane occupies, or PARKED
+    private final int[] slotOf;
+    private int size;
+
+    // From the last cell sort: cell c held slots cellStart[c] to cellStart[c + 1] - 1. Flights added
+    // or moved since then don't match, which only costs some locality until the next sort.
+    private int[] cellStart = {0};
+    private int cellCount;
+    private int ticksSinceSort;
+
+    public FleetStore(int planeCount)
+    {
+        int capacity = Math.max(1, planeCount);
+        x = new double[capacity];
+        y = new double[capacity];
+        heading = new double[capacity];
+        stepLength = new double[capacity];
+        targetX = new double[capacity];
+        targetY = new double[capacity];
+        originX = new double[capacity];
+        originY = new double[capacity];
+        directionX = new double[capacity];
+        directionY = new double[capacity];
+        segmentLeft = new double[capacity];
+        routeLeft = new double[capacity];
+        segment = new int[capacity];
+        routes = new Route[capacity];
+        landing = new boolean[capacity];
+        planeIds = new int[capacity];
+        movements = new PlaneMovement[capacity];
+        slotOf = new int[planeCount];
+        Arrays.fill(slotOf, PARKED);
+    }
+
+    // Number of planes in flight
+    public int size()
+    {
+        return size;
+    }
+
+    public int getPlaneId(int slot) { return planeIds[slot]; }
+    public Plane getPlane(int slot) { return movements[slot].getPlane(); }
+    public double getX(int slot) { return x[slot]; }
+    public double getY(int slot) { return y[slot]; }
+    public double getHeading(int slot) { return heading[slot]; }
+    public double getTargetX(int slot) { return targetX[slot]; }
+    public double getTargetY(int slot) { return targetY[slot]; }
+    public double getOriginX(int slot) { return originX[slot]; }
+    public double getOriginY(int slot) { return originY[slot]; }
+    /* default */ PlaneMovement getMovement(int slot) { return movements[slot]; }
+    /* default */ int getSegment(int slot) { return segment[slot]; }
+    /* default */ double getSegmentLeft(int slot) { return segmentLeft[slot]; }
+    /* default */ double getRouteLeft(int slot) { return routeLeft[slot]; }
+    /* default */ Route getRoute(int slot) { return routes[slot]; }
+
+    // The slot the plane's flight occupies, or -1 if it isn't flying
+    /* default */ int getSlot(int planeId)
+    {
+        return slotOf[planeId];
+    }
+
+    public boolean isFlying(int planeId)
+    {
+        return slotOf[planeId] != PARKED;
+    }
+
+    // Takes a flight from its plane's current position, along the movement's route if it has one
+    // that starts there, else straight to the destination. Returns false, leaving the store
+    // unchanged, if the plane is already flying.
+    public boolean add(PlaneMovement movement)
+    {
+        Plane plane = movement.getPlane();
+        if (isFlying(plane.getId())) {
+            return false;
+        }
+        int slot = size++;
+        Airport destination = movement.getDestination();
+        Route route = movement.getRoute();
+        if (route == null || !route.startsAt(plane.getX(), plane.getY())) {
+            route = Route.direct(plane.getX(), plane.getY(), destination.getX(), destination.getY());
+        }
+        x[slot] = plane.getX();
+        y[slot] = plane.getY();
+        originX[slot] = x[slot];
+        originY[slot] = y[slot];
+        targetX[slot] = destination.getX();
+        targetY[slot] = destination.getY();
+        routes[slot] = route;
+        routeLeft[slot] = route.getLength();
+        startSegment(slot, 0);
+        stepLength[slot] = movement.getSpeed() * STEP_SCALE;
+        landing[slot] = false;
+        planeIds[slot] = plane.getId();
+        movements[slot] = movement;
+        slotOf[plane.getId()] = slot;
+        return true;
+    }
+
+    // Adds a flight part-way along its route, as a snapshot caught it: at (atX, atY) on the given
+    // segment, with the given distances left. The plane must still be at its origin airport, as it is
+    // at take-off.
+    /* default */ boolean resume(PlaneMovement movement, double atX, double atY, int atSegment, double left,
+                                 double leftOnRoute)
+    {
+        if (!add(movement)) {
+            return false;
+        }
+        place(size - 1, atX, atY, atSegment, left, leftOnRoute);
+        return true;
+    }
+
+    // Puts the flight in 'slot' at (atX, atY) on the given segment of its route, with the given
+    // distances left, as it was moved elsewhere (by a snapshot's run, or a shard worker)
+    /* default */ void place(int slot, double atX, double atY, int atSegment, double left, double leftOnRoute)
+    {
+        x[slot] = atX;
+        y[slot] = atY;
+        startSegment(slot, atSegment);
+        segmentLeft[slot] = left;
+        routeLeft[slot] = leftOnRoute;
+    }
+
+    // Puts the flight in 'slot' on its target and marks it as landing, as advance() would, for a
+    // flight a shard worker has landed
+    /* default */ void land(int slot)
+    {
+        x[slot] = targetX[slot];
+        y[slot] = targetY[slot];
+        landing[slot] = true;
+    }
+
+    // Moves every plane one tick towards its target, using the pool for large fleets if one is given.
+    // A plane within ARRIVAL_DISTANCE of its target is put on it and marked as landing, to be collected
+    // by removeFinished(). Planes never overshoot.
+    public void advance(ForkJoinPool pool)
+    {
+        if (size < PARALLEL_THRESHOLD) {
+            advanceRange(0, size);
+            return;
+        }
+        // Sorting whether or not there is a pool keeps the slot order, and so the order of arrivals,
+        // independent of the thread count
+        if (++ticksSinceSort >= SORT_INTERVAL) {
+            sortByCell();
+        }
+        if (pool == null) {
+            advanceRange(0, size);
+        } else {
+            pool.invoke(new AdvanceTask(0, size));
+        }
+    }
+
+    private void advanceRange(int from, int to)
+    {
+        for (int i = from; i < to; i++) {
+            double step = stepLength[i];
+            boolean lands = routeLeft[i] < ARRIVAL_DISTANCE;
+            if (lands) {
+                x[i] = targetX[i];
+                y[i] = targetY[i];
+            } else if (step < segmentLeft[i]) {
+                x[i] += directionX[i] * step;
+                y[i] += directionY[i] * step;
+                segmentLeft[i] -= step;
+                routeLeft[i] -= step;
+            } else {
+                followRoute(i, step);
+            }
+            landing[i] = lands;
+        }
+    }
+
+    // The step that reaches the end of a segment: on to the waypoint, then along the next segment
+    // with what's left of the step, or stopping at the destination
+    private void followRoute(int slot, double step)
+    {
+        Route route = routes[slot];
+        double left = step;
+        while (left >= segmentLeft[slot]) {
+            left -= segmentLeft[slot];
+            routeLeft[slot] -= segmentLeft[slot];
+            int next = segment[slot] + 1;
+            x[slot] = route.getX(next);
+            y[slot] = route.getY(next);
+            if (next == route.getSegmentCount()) {
+                segmentLeft[slot] = 0.0;
+                routeLeft[slot] = 0.0; // Lands on the next tick, as a plane that stops short would
+                return;
+            }
+            startSegment(slot, next);
+        }
+        x[slot] += directionX[slot] * left;
+        y[slot] += directionY[slot] * left;
+        segmentLeft[slot] -= left;
+        routeLeft[slot] -= left;
+    }
+
+    private void startSegment(int slot, int index)
+    {
+        Route route = routes[slot];
+        segment[slot] = index;
+        segmentLeft[slot] = route.getSegmentLength(index);
+        directionX[slot] = route.getDirectionX(index);
+        directionY[slot] = route.getDirectionY(index);
+        heading[slot] = route.getHeading(index);
+    }
+
+    // Removes the flights that landed in the last advance() or have been stopped, marking the
+    // landed ones as arrived, and adds their movements to 'finished'
+    public void removeFinished(List<PlaneMovement> finished)
+    {
+        // Backwards, so the slot swapped into a freed one has already been checked
+        for (int i = size - 1; i >= 0; i--) {
+            PlaneMovement movement = movements[i];
+            if (landing[i]) {
+                movement.arrive();
+                finished.add(movement);
+                removeAt(i);
+            } else if (!movement.isRunning()) {
+                finished.add(movement);
+                removeAt(i);
+            }
+        }
+    }
+
+    // Removes every flight, adding their movements to 'finished'
+    public void clear(List<PlaneMovement> finished)
+    {
+        for (int i = 0; i < size; i++) {
+            finished.add(movements[i]);
+            slotOf[planeIds[i]] = PARKED;
+            movements[i] = null;
+            routes[i] = null;
+        }
+        size = 0;
+    }
+
+    // Counting sort of the slots by the cell of a grid laid over the planes' bounding box, keeping the
+    // existing order within each cell
+    private void sortByCell()
+    {
+        ticksSinceSort = 0;
+        if (spareX == null) {
+            spareX = new double[x.length];
+            spareY = new double[x.length];
+            spareHeading = new double[x.length];
+            spareStepLength = new double[x.length];
+            spareTargetX = new double[x.length];
+            spareTargetY = new double[x.length];
+            spareOriginX = new double[x.length];
+            spareOriginY = new double[x.length];
+            spareDirectionX = new double[x.length];
+            spareDirectionY = new double[x.length];
+            spareSegmentLeft = new double[x.length];
+            spareRouteLeft = new double[x.length];
+            spareSegment = new int[x.length];
+            spareRoutes = new Route[x.length];
+            sparePlaneIds = new int[x.length];
+            spareMovements = new PlaneMovement[x.length];
+            cellOfSlot = new int[x.length];
+        }
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        int side = Math.min(MAX_CELLS_PER_SIDE, Math.max(1, (int) Math.sqrt((double) size / PLANES_PER_CELL)));
+        double cellWidth = Math.max((maxX - minX) / side, 1e-9);
+        double cellHeight = Math.max((maxY - minY) / side, 1e-9);
+
+        cellCount = side * side;
+        if (cellStart.length < cellCount + 1) {
+            cellStart = new int[cellCount + 1];
+        } else {
+            Arrays.fill(cellStart, 0, cellCount + 1, 0);
+        }
+        for (int i = 0; i < size; i++) {
+            int cx = Math.min(side - 1, (int) ((x[i] - minX) / cellWidth));
+            int cy = Math.min(side - 1, (int) ((y[i] - minY) / cellHeight));
+            cellOfSlot[i] = cy * side + cx;
+            cellStart[cellOfSlot[i] + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        // cellStart[c] doubles as the next free slot in cell c, and ends up as cell c's end, i.e.
+        // cell c + 1's start; shifting it back afterwards restores the starts
+        for (int i = 0; i < size; i++) {
+            int to = cellStart[cellOfSlot[i]]++;
+            spareX[to] = x[i];
+            spareY[to] = y[i];
+            spareHeading[to] = heading[i];
+            spareStepLength[to] = stepLength[i];
+            spareTargetX[to] = targetX[i];
+            spareTargetY[to] = targetY[i];
+            spareOriginX[to] = originX[i];
+            spareOriginY[to] = originY[i];
+            spareDirectionX[to] = directionX[i];
+            spareDirectionY[to] = directionY[i];
+            spareSegmentLeft[to] = segmentLeft[i];
+            spareRouteLeft[to] = routeLeft[i];
+            spareSegment[to] = segment[i];
+            spareRoutes[to] = routes[i];
+            sparePlaneIds[to] = planeIds[i];
+            spareMovements[to] = movements[i];
+            slotOf[planeIds[i]] = to;
+        }
+        System.arraycopy(cellStart, 0, cellStart, 1, cellCount);
+        cellStart[0] = 0;
+
+        // Copying back is cheap next to the sort, and lets the hot loop use final fields
+        System.arraycopy(spareX, 0, x, 0, size);
+        System.arraycopy(spareY, 0, y, 0, size);
+        System.arraycopy(spareHeading, 0, heading, 0, size);
+        System.arraycopy(spareStepLength, 0, stepLength, 0, size);
+        System.arraycopy(spareTargetX, 0, targetX, 0, size);
+        System.arraycopy(spareTargetY, 0, targetY, 0, size);
+        System.arraycopy(spareOriginX, 0, originX, 0, size);
+        System.arraycopy(spareOriginY, 0, originY, 0, size);
+        System.arraycopy(spareDirectionX, 0, directionX, 0, size);
+        System.arraycopy(spareDirectionY, 0, directionY, 0, size);
+        System.arraycopy(spareSegmentLeft, 0, segmentLeft, 0, size);
+        System.arraycopy(spareRouteLeft, 0, routeLeft, 0, size);
+        System.arraycopy(spareSegment, 0, segment, 0, size);
+        System.arraycopy(spareRoutes, 0, routes, 0, size);
+        System.arraycopy(sparePlaneIds, 0, planeIds, 0, size);
+        System.arraycopy(spareMovements, 0, movements, 0, size);
+        Arrays.fill(spareMovements, 0, size, null);
+        Arrays.fill(spareRoutes, 0, size, null);
+    }
+
+    // The cell boundary nearest to 'slot' that lies between 'from' and 'to' inclusive, or 'slot'
+    // itself if there isn't one
+    private int nearestCellBoundary(int slot, int from, int to)
+    {
+        int index = Arrays.binarySearch(cellStart, 0, cellCount + 1, slot);
+        if (index >= 0) {
+            return slot;
+        }
+        int insertion = -index - 1;
+        int best = slot;
+        long bestDistance = Long.MAX_VALUE;
+        for (int candidate = insertion - 1; candidate <= insertion; candidate++) {
+            if (candidate >= 0 && candidate <= cellCount) {
+                int boundary = cellStart[candidate];
+                long distance = Math.abs((long) boundary - slot);
+                if (boundary >= from && boundary <= to && distance < bestDistance) {
+                    best = boundary;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Advances a range of slots, halving it at cell boundaries until each part is small enough
+    private class AdvanceTask extends RecursiveAction
+    {
+        private final int from;
+        private final int to;
+
+        private AdvanceTask(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= TASK_SLOTS) {
+                advanceRange(from, to);
+                return;
+            }
+            // Snap to a cell boundary, but not so far from the middle that the halves get lopsided
+            int quarter = (to - from) / 4;
+            int split = nearestCellBoundary((from + to) >>> 1, from + quarter, to - quarter);
+            invokeAll(new AdvanceTask(from, split), new AdvanceTask(split, to));
+        }
+    }
+
+    private void removeAt(int slot)
+    {
+        slotOf[planeIds[slot]] = PARKED;
+        int last = --size;
+        if (slot != last) {
+            x[slot] = x[last];
+            y[slot] = y[last];
+            heading[slot] = heading[last];
+            stepLength[slot] = stepLength[last];
+            targetX[slot] = targetX[last];
+            targetY[slot] = targetY[last];
+            originX[slot] = originX[last];
+            originY[slot] = originY[last];
+            directionX[slot] = directionX[last];
+            directionY[slot] = directionY[last];
+            segmentLeft[slot] = segmentLeft[last];
+            routeLeft[slot] = routeLeft[last];
+            segment[slot] = segment[last];
+            routes[slot] = routes[last];
+            landing[slot] = landing[last];
+            planeIds[slot] = planeIds[last];
+            movements[slot] = movements[last];
+            slotOf[planeIds[slot]] = slot;
+        }
+        movements[last] = null;
+        routes[last] = null;
+    }
+}
@@ -0,0 +1,17 @@
+package edu.curtin.saed.assignment1;
+
+// A request for a flight from one airport to another, by airport ID
+public class FlightRequest
+{
+    private final int origin;
+    private final int destination;
+
+    public FlightRequest(int origin, int destination)
+    {
+        this.origin = origin;
+        this.destination = destination;
+    }
+
+    public int getOrigin() { return origin; }
+    public int getDestination() { return destination; }
+}
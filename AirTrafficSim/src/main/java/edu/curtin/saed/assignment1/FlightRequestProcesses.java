@@ -0,0 +1,137 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Runs one saed_flight_requests process per airport and feeds their requests into a simulation.
+// Process output is read by a shared ProcessOutputMultiplexer and parsed requests are put on a
+// bounded queue, which a single thread drains into the simulation. When the simulation falls behind
+// and the queue fills, the readers stop reading and the request processes block on their output.
+public class FlightRequestProcesses implements FlightRequestSource
+{
+    private static final Logger LOGGER = Logger.getLogger(FlightRequestProcesses.class.getName());
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final Simulation simulation;
+    private final ProcessOutputMultiplexer multiplexer;
+    private final Consumer<SimulationEvent> events;
+    private final BlockingQueue<FlightRequest> pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Process> processes = new ArrayList<>();
+    private Thread dispatchThread;
+    private volatile boolean stopping;
+
+    public FlightRequestProcesses(Simulation simulation, ProcessOutputMultiplexer multiplexer, Consumer<SimulationEvent> events)
+    {
+        this.simulation = simulation;
+        this.multiplexer = multiplexer;
+        this.events = events;
+    }
+
+    public int getQueuedRequests()
+    {
+        return pending.size();
+    }
+
+    @Override
+    public void start()
+    {
+        pending.clear();
+        stopping = false;
+        dispatchThread = new Thread(this::dispatchRequests, "flight-request-dispatch");
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
+
+        // Launch a flight request process for each airport
+        int nAirports = simulation.getAirports().size(); // Number of airports
+        for (int originAirport = 0; originAirport < nAirports; originAirport++) {
+            try {
+                Process flightRequestProcess = new ProcessBuilder(CommsPrograms.command(CommsPrograms.FLIGHT_REQUESTS),
+                        String.valueOf(nAirports), String.valueOf(originAirport))
+                        .redirectErrorStream(true)
+                        .start();
+                processes.add(flightRequestProcess);
+                multiplexer.register(flightRequestProcess, new RequestParser(originAirport));
+            } catch (IOException e) {
+                final int failedAirport = originAirport;
+                LOGGER.log(Level.SEVERE, e, () -> "Error starting flight request process for Airport " + failedAirport);
+                events.accept(SimulationEvent.error("Could not start flight request process for Airport " + originAirport + "."));
+            }
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        // Ensure the processes are terminated when the simulation ends; their streams closing is then expected
+        stopping = true;
+        for (Process process : processes) {
+            if (process.isAlive()) {
+                process.destroy();
+            }
+        }
+        processes.clear();
+
+        if (dispatchThread != null) {
+            dispatchThread.interrupt();
+            try {
+                dispatchThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dispatchThread = null;
+        }
+    }
+
+    private void dispatchRequests()
+    {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                FlightRequest request = pending.take();
+                simulation.submitFlightRequest(request.getOrigin(), request.getDestination());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Parses one airport's request stream on a multiplexer reader thread
+    private class RequestParser implements ProcessOutputMultiplexer.LineHandler
+    {
+        private final int originAirport;
+
+        private RequestParser(int originAirport)
+        {
+            this.originAirport = originAirport;
+        }
+
+        @Override
+        public boolean line(String line)
+        {
+            String request = line.trim();
+            if (request.isEmpty()) {
+                return true; // Skip empty lines
+            }
+            try {
+                return pending.offer(new FlightRequest(originAirport, Integer.parseInt(request)));
+            } catch (NumberFormatException e) {
+                simulation.submitFlightRequest(originAirport, request); // Reports the malformed line
+                return true;
+            }
+        }
+
+        @Override
+        public void closed()
+        {
+            if (!stopping && simulation.isRunning()) {
+                events.accept(new SimulationEvent(SimulationEvent.Type.REQUESTS_STOPPED, SimulationEvent.NONE, originAirport,
+                        SimulationEvent.NONE, null));
+            }
+        }
+    }
+}
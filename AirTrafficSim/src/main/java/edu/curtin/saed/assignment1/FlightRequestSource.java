@@ -0,0 +1,9 @@
+package edu.curtin.saed.assignment1;
+
+// Produces flight requests for a simulation while started. Implementations are bound to their
+// simulation when constructed.
+public interface FlightRequestSource
+{
+    void start();
+    void stop();
+}
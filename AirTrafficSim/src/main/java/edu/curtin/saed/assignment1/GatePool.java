@@ -0,0 +1,214 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// A fixed number of gates at every airport, each servicing one plane at a time, so a busy airport
+// never has more servicing under way (or more service processes running) than it has gates. Planes
+// queue for gates in the order they landed, planes landing together in plane order, and a plane
+// waiting for a gate is handed it as soon as the plane before it is done with it.
+//
+// Planes landing in the same tick ask for gates from their own threads, in whatever order those
+// threads run, so gates that are free are only handed out by grant(), which the engine runs between
+// ticks once they have all asked. That way which plane gets which gate depends only on simulated time.
+//
+// The planes waiting at each airport form a list linked through per-plane arrays, as a plane can
+// only wait at one airport at a time, so waiting allocates nothing. Safe to use from any thread; a
+// plane handed a gate goes ahead on the thread that handed it over, outside the lock.
+public final class GatePool
+{
+    private static final int NONE = -1;
+
+    // Receives each plane waiting for a gate, for snapshots
+    public interface WaitingVisitor
+    {
+        void waiting(int airport, int plane, long sinceMillis);
+    }
+
+    private final Object lock = new Object();
+    private final int gatesPerAirport;
+    private final int[] inUse;      // Per airport
+    private final int[] firstWaiting; // Per airport, NONE if no plane is waiting
+    private final int[] lastWaiting;
+    private final int[] nextWaiting;  // Per plane, the plane waiting behind it
+    private final long[] waitingSince; // Per plane, simulated millis
+    private final Runnable[] onGate;   // Per plane, what to do once it has a gate
+    private int waitingCount;
+    private final boolean[] toGrant; // Per airport, true once it's in grantAirports
+    private int[] grantAirports = new int[16]; // Airports with gates free and planes waiting, for grant()
+    private int grantCount;
+    private final AirportWaitStats waits;
+    private final LongAdder waited;
+    private final LatencyHistogram gateWait;
+
+    // Waits are added to 'waits', and the totals to 'metrics'
+    public GatePool(int airportCount, int planeCount, int gatesPerAirport, AirportWaitStats waits, MetricsRegistry metrics)
+    {
+        if (gatesPerAirport < 1) {
+            throw new IllegalArgumentException("Airports need at least one gate");
+        }
+        this.gatesPerAirport = gatesPerAirport;
+        inUse = new int[airportCount];
+        firstWaiting = new int[airportCount];
+        lastWaiting = new int[airportCount];
+        nextWaiting = new int[planeCount];
+        waitingSince = new long[planeCount];
+        onGate = new Runnable[planeCount];
+        toGrant = new boolean[airportCount];
+        Arrays.fill(firstWaiting, NONE);
+        Arrays.fill(lastWaiting, NONE);
+        this.waits = waits;
+        waited = metrics.counter("gates.waited"); // Planes that had to wait
+        gateWait = metrics.histogram("gates.wait"); // Simulated time, landed to at a gate
+        metrics.gauge("gates.waiting", this::getWaitingCount);
+    }
+
+    public int getWaitingCount()
+    {
+        synchronized (lock) {
+            return waitingCount;
+        }
+    }
+
+    // Queues the plane for a gate at the airport, having waited since 'sinceMillis'. 'atGate' runs once
+    // the plane has a gate, on the thread that hands it over, and must release() the gate later.
+    // Returns true if a gate is free for grant() to hand out, and grant() wasn't already due to run.
+    public boolean acquire(int airport, int plane, long sinceMillis, Runnable atGate)
+    {
+        synchronized (lock) {
+            waitingSince[plane] = sinceMillis;
+            onGate[plane] = atGate;
+            int last = lastWaiting[airport];
+            if (last == NONE || !isBefore(plane, last)) {
+                nextWaiting[plane] = NONE;
+                if (last == NONE) {
+                    firstWaiting[airport] = plane;
+                } else {
+                    nextWaiting[last] = plane;
+                }
+                lastWaiting[airport] = plane;
+            } else if (isBefore(plane, firstWaiting[airport])) {
+                nextWaiting[plane] = firstWaiting[airport];
+                firstWaiting[airport] = plane;
+            } else {
+                // Landed with planes that queued first; they are few, so walking the list is cheap
+                int before = firstWaiting[airport];
+                while (!isBefore(plane, nextWaiting[before])) {
+                    before = nextWaiting[before];
+                }
+                nextWaiting[plane] = nextWaiting[before];
+                nextWaiting[before] = plane;
+            }
+            waitingCount++;
+
+            if (inUse[airport] == gatesPerAirport || toGrant[airport]) {
+                return false;
+            }
+            toGrant[airport] = true;
+            if (grantCount == grantAirports.length) {
+                grantAirports = Arrays.copyOf(grantAirports, grantCount * 2);
+            }
+            grantAirports[grantCount++] = airport;
+            return grantCount == 1;
+        }
+    }
+
+    // Hands the free gates at each airport acquire() asked about to the planes that have waited
+    // longest, airport by airport, running their 'atGate' on this thread
+    public void grant(long nowMillis)
+    {
+        List<Runnable> granted = new ArrayList<>();
+        synchronized (lock) {
+            Arrays.sort(grantAirports, 0, grantCount);
+            for (int i = 0; i < grantCount; i++) {
+                int airport = grantAirports[i];
+                toGrant[airport] = false;
+                while (inUse[airport] < gatesPerAirport && firstWaiting[airport] != NONE) {
+                    inUse[airport]++;
+                    granted.add(callFirst(airport, nowMillis));
+                }
+            }
+            grantCount = 0;
+        }
+        for (Runnable atGate : granted) {
+            atGate.run();
+        }
+    }
+
+    // Takes a gate whether or not one is free, for servicing restored from a snapshot
+    public void occupy(int airport)
+    {
+        synchronized (lock) {
+            inUse[airport]++;
+        }
+    }
+
+    // Hands the gate to the plane that has waited longest for one at the airport, if any, or else frees it
+    public void release(int airport, long nowMillis)
+    {
+        Runnable next;
+        synchronized (lock) {
+            if (firstWaiting[airport] == NONE) {
+                inUse[airport] = Math.max(0, inUse[airport] - 1); // Not below zero, if reset() came in between
+                return;
+            }
+            next = callFirst(airport, nowMillis);
+        }
+        next.run();
+    }
+
+    // Calls 'visitor' with each waiting plane, airport by airport, in the order they'll get gates
+    public void forEachWaiting(WaitingVisitor visitor)
+    {
+        synchronized (lock) {
+            for (int airport = 0; airport < firstWaiting.length; airport++) {
+                for (int plane = firstWaiting[airport]; plane != NONE; plane = nextWaiting[plane]) {
+                    visitor.waiting(airport, plane, waitingSince[plane]);
+                }
+            }
+        }
+    }
+
+    // Frees every gate and forgets the planes waiting for them
+    public void reset()
+    {
+        synchronized (lock) {
+            Arrays.fill(inUse, 0);
+            Arrays.fill(firstWaiting, NONE);
+            Arrays.fill(lastWaiting, NONE);
+            Arrays.fill(onGate, null);
+            Arrays.fill(toGrant, false);
+            waitingCount = 0;
+            grantCount = 0;
+        }
+    }
+
+    // Takes the first plane off the airport's list, returning what it does once at a gate
+    private Runnable callFirst(int airport, long nowMillis)
+    {
+        int plane = firstWaiting[airport];
+        firstWaiting[airport] = nextWaiting[plane];
+        if (firstWaiting[airport] == NONE) {
+            lastWaiting[airport] = NONE;
+        }
+        waitingCount--;
+        Runnable atGate = onGate[plane];
+        onGate[plane] = null;
+        long millis = nowMillis - waitingSince[plane];
+        if (millis > 0) {
+            waits.record(airport, millis);
+            waited.increment();
+            gateWait.record(millis * 1_000_000L);
+        }
+        return atGate;
+    }
+
+    // Whether 'plane' queues ahead of 'other': it landed first, or at the same time with a lower ID
+    private boolean isBefore(int plane, int other)
+    {
+        return waitingSince[plane] < waitingSince[other]
+                || (waitingSince[plane] == waitingSince[other] && plane < other);
+    }
+}
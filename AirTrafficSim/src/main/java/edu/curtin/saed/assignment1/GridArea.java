@@ -1,33 +1,235 @@
 package edu.curtin.saed.assignment1;
 
 import javafx.geometry.VPos;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.*;
-import javafx.scene.transform.Affine;
 import javafx.scene.image.Image;
+import javafx.scene.input.MouseButton;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
+import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
 import java.util.*;
 
-public class GridArea extends Pane
+// Draws a grid of icons on two stacked canvases. The static layer (grid lines and icons that never
+// move, such as airports) is only redrawn when the area is resized, the view moves or a static icon
+// changes. On the dynamic layer, only the tiles an icon has left or entered are cleared and redrawn,
+// so the cost of a layout pass follows the number of icons that moved rather than the number of icons.
+//
+// The area starts out fitting the whole grid, and can be zoomed with the scroll wheel, panned by
+// dragging and reset by double-clicking. Only what falls inside the view is drawn: grid lines are
+// thinned out so they stay at least MIN_LINE_SPACING apart, captions are left off once squares are
+// too small to read them, and once squares are too small to make out an icon, movable icons are
+// drawn as a density map of the view instead, and static ones as dots.
+//
+// Icons tell the area when they change, and are indexed by the block of grid squares they sit in,
+// so a pass only looks at the icons that changed and the blocks in view or under a dirty tile. Icons
+// elsewhere on the grid cost nothing.
+public final class GridArea extends Pane
 {
+    private static final double MIN_TILE_PIXELS = 32.0; // Caps the dirty-tile bookkeeping on dense grids
+    private static final double CAPTION_OFFSET = 0.35; // Caption top, in grid squares below the icon centre
+    private static final double MAX_SQUARE_PIXELS = 128.0; // Furthest in the view can zoom
+    private static final double ZOOM_STEP = 1.25; // Per scroll-wheel notch
+    private static final double MIN_LINE_SPACING = 8.0; // Pixels; closer grid lines are thinned out
+    private static final double MIN_CAPTION_PIXELS = 24.0; // Grid square size below which captions are skipped
+    private static final double MIN_ICON_PIXELS = 6.0; // Grid square size below which movable icons become density
+    private static final double DENSITY_CELL_PIXELS = 4.0;
+    private static final double CULL_MARGIN_PIXELS = 64.0; // Room for an icon's caption to overhang the view
+    private static final double DOT_PIXELS = 3.0; // Size of a static icon when squares are too small for icons
+    private static final int MAX_INDEX_CELLS = 128; // Per side of the grid, capping the index's size
+    private static final int MAX_CAPTION_IMAGES = 4096; // Well over the captions a readable view can show
+    private static final Comparator<IconEntry> DRAW_ORDER = Comparator.comparingLong(entry -> entry.order);
+
+    // Density cell colours for 1, 2-3, 4-7, 8-15 and 16 or more icons
+    private static final Color[] DENSITY_COLOURS = {
+            Color.web("#ffff99"), Color.web("#ffd24d"), Color.web("#ff9933"), Color.web("#ff4d1a"), Color.web("#cc0000")
+    };
+
     private double gridWidth;
     private double gridHeight;
     private double gridSquareSize = 1.0;
+    private double fitSquareSize = 1.0; // Grid square size at which the whole grid fits
+    private double zoom = 1.0;
+    private double viewX; // Grid position at the area's top-left corner, less half a square
+    private double viewY;
+    private boolean viewChanged = true;
+    private boolean showCaptions = true;
+    private boolean densityMode;
+    private double dragX;
+    private double dragY;
     private boolean gridLines = true;
+    private boolean incremental = true;
     private Color captionColour = Color.WHITE;
-    private List<GridAreaIcon> icons = new ArrayList<>();
+    private final List<GridAreaIcon> icons = new IconList();
+    private Canvas staticCanvas = null;
     private Canvas canvas = null;
 
+    private final ImageAtlas atlas = new ImageAtlas();
+    private final Map<GridAreaIcon, IconEntry> entries = new IdentityHashMap<>();
+    private final List<IconEntry> changedIcons = new ArrayList<>(); // Since the last pass
+    private final List<IconEntry> found = new ArrayList<>(); // Scratch list for the index lookups
+    private final Map<String, Image> captionImages = new CaptionCache();
+    private long nextOrder;
+    private boolean staticDirty = true;
+    private double laidOutWidth = -1.0;
+    private double laidOutHeight = -1.0;
+    private double tileSize;
+    private int tilesX;
+    private int tilesY;
+    private boolean[] dirtyTiles = new boolean[0];
+    private int[] dirtyList = new int[0];
+    private int dirtyCount;
+    private long redraws; // Full redraws of the dynamic layer, which leave earlier bounds stale
+    private double maxOverhang; // Furthest any drawn icon reaches from its centre, in pixels
+    private int densityX;
+    private int[] densityCounts = new int[0];
+    private int[] densityList = new int[0]; // Cells with a non-zero count
+
+    // Blocks of indexCellSquares by indexCellSquares grid squares, each listing the icons centred in it
+    private final double indexCellSquares;
+    private final int indexCellsX;
+    private final int indexCellsY;
+    private final IconEntry[][] cellIcons;
+    private final int[] cellSizes;
+    private final long[] cellVisited; // The lookup that last took each cell's icons
+    private long lookups;
+
+    // An icon's place in the index, and where it was last drawn on the dynamic layer so it can be
+    // erased when it changes
+    private static class IconEntry
+    {
+        private final GridAreaIcon icon;
+        private final long order; // Icons added later are drawn over earlier ones
+        private boolean movable; // As last seen, so a change either way can be caught
+        private int cell = -1;
+        private int slot; // Within the cell's list
+        private boolean changed; // Waiting in changedIcons
+        private boolean removed;
+        private long drawnIn = -1; // Matches 'redraws' while the bounds below are on the dynamic layer
+        private double left;
+        private double top;
+        private double right;
+        private double bottom;
+
+        private IconEntry(GridAreaIcon icon, long order)
+        {
+            this.icon = icon;
+            this.order = order;
+            movable = icon.isMovable();
+        }
+    }
+
+    // The icon list handed out by getIcons(), which keeps the index up to date as icons come and go.
+    // An icon can only be in one area's list, once.
+    private class IconList extends AbstractList<GridAreaIcon>
+    {
+        private final List<GridAreaIcon> list = new ArrayList<>();
+
+        @Override
+        public GridAreaIcon get(int index)
+        {
+            return list.get(index);
+        }
+
+        @Override
+        public int size()
+        {
+            return list.size();
+        }
+
+        @Override
+        public void add(int index, GridAreaIcon icon)
+        {
+            if(icon.getArea() != null)
+            {
+                throw new IllegalArgumentException("Icon is already in a GridArea");
+            }
+            list.add(index, icon);
+            iconAdded(icon);
+        }
+
+        @Override
+        @SuppressWarnings("PMD.CompareObjectsWithEquals") // Icons are tracked by identity, as in 'entries'
+        public GridAreaIcon set(int index, GridAreaIcon icon)
+        {
+            if(icon.getArea() != null && icon != list.get(index))
+            {
+                throw new IllegalArgumentException("Icon is already in a GridArea");
+            }
+            GridAreaIcon old = list.set(index, icon);
+            iconRemoved(old);
+            iconAdded(icon);
+            return old;
+        }
+
+        @Override
+        public GridAreaIcon remove(int index)
+        {
+            GridAreaIcon old = list.remove(index);
+            iconRemoved(old);
+            return old;
+        }
+    }
+
+    // Caption images by text, in access order, dropping the least recently drawn once full so a long
+    // run with ever-new captions can't grow it without bound
+    private static final class CaptionCache extends LinkedHashMap<String, Image>
+    {
+        private CaptionCache()
+        {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Image> eldest)
+        {
+            return size() > MAX_CAPTION_IMAGES;
+        }
+    }
+
     public GridArea(double gridWidth, double gridHeight)
     {
         this.gridWidth = gridWidth;
         this.gridHeight = gridHeight;
+        indexCellSquares = Math.max(1.0, Math.ceil(Math.max(gridWidth, gridHeight) / MAX_INDEX_CELLS));
+        indexCellsX = Math.max(1, (int) Math.ceil(gridWidth / indexCellSquares));
+        indexCellsY = Math.max(1, (int) Math.ceil(gridHeight / indexCellSquares));
+        cellIcons = new IconEntry[indexCellsX * indexCellsY][];
+        cellSizes = new int[cellIcons.length];
+        cellVisited = new long[cellIcons.length];
+
+        setOnScroll(event ->
+        {
+            if(event.getDeltaY() != 0.0)
+            {
+                zoomAt(event.getDeltaY() > 0.0 ? ZOOM_STEP : 1.0 / ZOOM_STEP, event.getX(), event.getY());
+            }
+        });
+        setOnMousePressed(event ->
+        {
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        setOnMouseDragged(event ->
+        {
+            panBy(event.getX() - dragX, event.getY() - dragY);
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        setOnMouseClicked(event ->
+        {
+            if(event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2)
+            {
+                resetView();
+            }
+        });
     }
 
     public void setGridLines(boolean gridLines)
     {
         this.gridLines = gridLines;
+        staticDirty = true;
     }
 
     public List<GridAreaIcon> getIcons()
@@ -35,9 +237,78 @@ public class GridArea extends Pane
         return icons;
     }
 
+    public ImageAtlas getImageAtlas()
+    {
+        return atlas;
+    }
+
     public void setCaptionColour(Color captionColour)
     {
         this.captionColour = captionColour;
+        captionImages.clear();
+        staticDirty = true;
+        laidOutWidth = -1.0; // Every caption on the dynamic layer needs redrawing too
+    }
+
+    // Turns dirty-region rendering on or off. When off, both layers are redrawn in full on every
+    // layout pass, as a reference for checking the incremental output.
+    public void setIncrementalRendering(boolean incremental)
+    {
+        this.incremental = incremental;
+    }
+
+    // Redraws the static layer on the next pass. Icon changes already do this themselves.
+    public void setStaticDirty()
+    {
+        staticDirty = true;
+    }
+
+    // 1.0 when the whole grid fits the area
+    public double getZoom()
+    {
+        return zoom;
+    }
+
+    // Zooms in (factor > 1) or out, keeping the grid position under the given pixel where it is
+    public void zoomAt(double factor, double pixelX, double pixelY)
+    {
+        double squareSize = fitSquareSize * zoom; // Not gridSquareSize, which waits for the next layout pass
+        if(squareSize <= 0.0)
+        {
+            return;
+        }
+        double maxZoom = Math.max(1.0, MAX_SQUARE_PIXELS / fitSquareSize);
+        double newZoom = Math.max(1.0, Math.min(maxZoom, zoom * factor));
+        double newSquareSize = fitSquareSize * newZoom;
+        viewX += pixelX / squareSize - pixelX / newSquareSize;
+        viewY += pixelY / squareSize - pixelY / newSquareSize;
+        zoom = newZoom;
+        viewChanged = true;
+        requestLayout();
+    }
+
+    // Moves the view by a number of pixels, as when the grid is dragged
+    public void panBy(double pixelsX, double pixelsY)
+    {
+        double squareSize = fitSquareSize * zoom;
+        if(squareSize <= 0.0)
+        {
+            return;
+        }
+        viewX -= pixelsX / squareSize;
+        viewY -= pixelsY / squareSize;
+        viewChanged = true;
+        requestLayout();
+    }
+
+    // Back to fitting the whole grid
+    public void resetView()
+    {
+        zoom = 1.0;
+        viewX = 0.0;
+        viewY = 0.0;
+        viewChanged = true;
+        requestLayout();
     }
 
     @Override
@@ -46,71 +317,596 @@ public class GridArea extends Pane
         super.layoutChildren();
         if(canvas == null)
         {
-            canvas = new Canvas();
-            canvas.widthProperty().bind(widthProperty());
-            canvas.heightProperty().bind(heightProperty());
-            getChildren().add(canvas);
+            staticCanvas = createCanvas();
+            canvas = createCanvas();
+        }
+
+        boolean rescaled = getWidth() != laidOutWidth || getHeight() != laidOutHeight || viewChanged;
+        if(rescaled || !incremental)
+        {
+            laidOutWidth = getWidth();
+            laidOutHeight = getHeight();
+            updateView();
+            atlas.setScaledSize(gridSquareSize);
+            resetTiles();
+            staticDirty = true;
+        }
+
+        if(staticDirty)
+        {
+            drawStaticLayer();
+            staticDirty = false;
         }
 
         GraphicsContext gfx = canvas.getGraphicsContext2D();
-        gfx.clearRect(0.0, 0.0, canvas.getWidth(), canvas.getHeight());
+        if(densityMode)
+        {
+            forgetChanges(); // Leaving density mode redraws everything anyway
+            drawDensityLayer(gfx);
+            return;
+        }
+        if(rescaled || !incremental)
+        {
+            gfx.clearRect(0.0, 0.0, canvas.getWidth(), canvas.getHeight());
+            markDirty(0.0, 0.0, canvas.getWidth(), canvas.getHeight());
+            redrawDynamicLayer(gfx);
+        }
+        else
+        {
+            drawDynamicLayer(gfx);
+        }
+    }
+
+    private void iconAdded(GridAreaIcon icon)
+    {
+        icon.setArea(this);
+        IconEntry entry = new IconEntry(icon, nextOrder++);
+        entries.put(icon, entry);
+        index(entry);
+        if(entry.movable)
+        {
+            markChanged(entry);
+        }
+        else
+        {
+            staticDirty = true;
+        }
+    }
+
+    private void iconRemoved(GridAreaIcon icon)
+    {
+        icon.setArea(null);
+        IconEntry entry = entries.remove(icon);
+        unindex(entry);
+        entry.removed = true;
+        if(entry.movable)
+        {
+            markChanged(entry); // Still needs erasing
+        }
+        else
+        {
+            staticDirty = true;
+        }
+    }
+
+    // Called by an icon in this area's list when it moves, turns or is shown, hidden or made movable
+    /* default */ void iconChanged(GridAreaIcon icon)
+    {
+        IconEntry entry = entries.get(icon);
+        boolean wasMovable = entry.movable;
+        entry.movable = icon.isMovable();
+        index(entry);
+        if(!wasMovable || !entry.movable)
+        {
+            staticDirty = true;
+        }
+        if(wasMovable || entry.movable)
+        {
+            markChanged(entry);
+        }
+    }
+
+    private void markChanged(IconEntry entry)
+    {
+        if(!entry.changed)
+        {
+            entry.changed = true;
+            changedIcons.add(entry);
+        }
+    }
+
+    private void forgetChanges()
+    {
+        for(var entry : changedIcons)
+        {
+            entry.changed = false;
+        }
+        changedIcons.clear();
+    }
+
+    // Files the entry under the cell its icon is now in, if it has moved cell
+    private void index(IconEntry entry)
+    {
+        int cell = toIndexCell(entry.icon.getY(), indexCellsY) * indexCellsX + toIndexCell(entry.icon.getX(), indexCellsX);
+        if(cell == entry.cell)
+        {
+            return;
+        }
+        unindex(entry);
+        IconEntry[] list = cellIcons[cell];
+        if(list == null || cellSizes[cell] == list.length)
+        {
+            list = Arrays.copyOf(list == null ? new IconEntry[0] : list, Math.max(4, cellSizes[cell] * 2));
+            cellIcons[cell] = list;
+        }
+        entry.cell = cell;
+        entry.slot = cellSizes[cell]++;
+        list[entry.slot] = entry;
+    }
+
+    private void unindex(IconEntry entry)
+    {
+        if(entry.cell < 0)
+        {
+            return;
+        }
+        IconEntry[] list = cellIcons[entry.cell];
+        int last = --cellSizes[entry.cell];
+        list[entry.slot] = list[last];
+        list[entry.slot].slot = entry.slot;
+        list[last] = null;
+        entry.cell = -1;
+    }
+
+    // Adds to 'found' the icons of every cell in view, or near enough for a caption to reach it
+    private void findInView()
+    {
+        double margin = gridSquareSize + (showCaptions ? CULL_MARGIN_PIXELS : 0.0);
+        lookups++;
+        findIn(-margin, -margin, getWidth() + margin, getHeight() + margin);
+    }
+
+    // Adds to 'found' the icons of every cell that overlaps the given pixels and hasn't already been
+    // taken in this lookup
+    private void findIn(double left, double top, double right, double bottom)
+    {
+        if(gridSquareSize <= 0.0)
+        {
+            return;
+        }
+        int x0 = toIndexCell(left / gridSquareSize + viewX - 0.5, indexCellsX);
+        int x1 = toIndexCell(right / gridSquareSize + viewX - 0.5, indexCellsX);
+        int y0 = toIndexCell(top / gridSquareSize + viewY - 0.5, indexCellsY);
+        int y1 = toIndexCell(bottom / gridSquareSize + viewY - 0.5, indexCellsY);
+        for(int cellY = y0; cellY <= y1; cellY++)
+        {
+            for(int cellX = x0; cellX <= x1; cellX++)
+            {
+                int cell = cellY * indexCellsX + cellX;
+                if(cellVisited[cell] != lookups)
+                {
+                    cellVisited[cell] = lookups;
+                    for(int i = 0; i < cellSizes[cell]; i++)
+                    {
+                        found.add(cellIcons[cell][i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private int toIndexCell(double gridPosition, int cellCount)
+    {
+        return Math.max(0, Math.min(cellCount - 1, (int) Math.floor(gridPosition / indexCellSquares)));
+    }
+
+    // Works out the grid square size for the current zoom, keeps the view on the grid and picks the
+    // level of detail
+    private void updateView()
+    {
+        fitSquareSize = Math.min(getWidth() / gridWidth, getHeight() / gridHeight);
+        gridSquareSize = fitSquareSize * zoom;
+        if(gridSquareSize > 0.0)
+        {
+            viewX = Math.max(0.0, Math.min(viewX, gridWidth - getWidth() / gridSquareSize));
+            viewY = Math.max(0.0, Math.min(viewY, gridHeight - getHeight() / gridSquareSize));
+        }
+        boolean hadCaptions = showCaptions;
+        showCaptions = gridSquareSize >= MIN_CAPTION_PIXELS;
+        if(hadCaptions && !showCaptions)
+        {
+            captionImages.clear(); // Zoomed out too far for them; no need to keep them until zoomed back in
+        }
+        densityMode = gridSquareSize < MIN_ICON_PIXELS;
+        viewChanged = false;
+    }
+
+    private double toPixelX(double gridX)
+    {
+        return (gridX + 0.5 - viewX) * gridSquareSize;
+    }
+
+    private double toPixelY(double gridY)
+    {
+        return (gridY + 0.5 - viewY) * gridSquareSize;
+    }
+
+    // True if any of an icon at this grid position could be in view
+    private boolean inView(double gridX, double gridY)
+    {
+        double x = toPixelX(gridX);
+        double y = toPixelY(gridY);
+        double margin = gridSquareSize + (showCaptions ? CULL_MARGIN_PIXELS : 0.0);
+        return x >= -margin && x <= getWidth() + margin && y >= -margin && y <= getHeight() + margin;
+    }
 
-        gridSquareSize = Math.min(getWidth() / gridWidth, getHeight() / gridHeight);
+    private Canvas createCanvas()
+    {
+        Canvas layer = new Canvas();
+        layer.widthProperty().bind(widthProperty());
+        layer.heightProperty().bind(heightProperty());
+        getChildren().add(layer);
+        return layer;
+    }
+
+    private void drawStaticLayer()
+    {
+        GraphicsContext gfx = staticCanvas.getGraphicsContext2D();
+        gfx.clearRect(0.0, 0.0, staticCanvas.getWidth(), staticCanvas.getHeight());
 
-        if(gridLines)
+        if(gridLines && gridSquareSize > 0.0)
         {
+            // Every line, every 2nd, every 4th... whichever keeps them MIN_LINE_SPACING apart
+            int step = 1;
+            while(step * gridSquareSize < MIN_LINE_SPACING)
+            {
+                step *= 2;
+            }
+            double top = Math.max(0.0, toPixelY(0.0));
+            double bottom = Math.min(getHeight(), toPixelY(gridHeight - 1.0));
+            double left = Math.max(0.0, toPixelX(0.0));
+            double right = Math.min(getWidth(), toPixelX(gridWidth - 1.0));
+
             gfx.setStroke(Color.DARKGREY);
-            for(double gridX = 0.0; gridX < gridWidth; gridX++)
+            for(double gridX = firstLine(viewX, step); gridX < gridWidth && toPixelX(gridX) <= getWidth(); gridX += step)
             {
-                double x = (gridX + 0.5) * gridSquareSize;
-                gfx.strokeLine(x, gridSquareSize / 2.0, x, (gridHeight - 0.5) * gridSquareSize);
+                double x = toPixelX(gridX);
+                gfx.strokeLine(x, top, x, bottom);
             }
-            for(double gridY = 0.0; gridY < gridHeight; gridY++)
+            for(double gridY = firstLine(viewY, step); gridY < gridHeight && toPixelY(gridY) <= getHeight(); gridY += step)
             {
-                double y = (gridY + 0.5) * gridSquareSize;
-                gfx.strokeLine(gridSquareSize / 2.0, y, (gridWidth - 0.5) * gridSquareSize, y);
+                double y = toPixelY(gridY);
+                gfx.strokeLine(left, y, right, y);
             }
         }
 
-        for(var icon : icons)
+        gfx.setFill(Color.LIGHTGREY);
+        found.clear();
+        findInView();
+        found.sort(DRAW_ORDER);
+        for(var entry : found)
         {
-            if(icon.isShown())
+            GridAreaIcon icon = entry.icon;
+            if(!icon.isMovable() && icon.isShown() && inView(icon.getX(), icon.getY()))
             {
-                drawIcon(gfx, icon);
+                if(densityMode)
+                {
+                    gfx.fillRect(toPixelX(icon.getX()) - DOT_PIXELS / 2.0, toPixelY(icon.getY()) - DOT_PIXELS / 2.0,
+                            DOT_PIXELS, DOT_PIXELS);
+                }
+                else
+                {
+                    drawIcon(gfx, icon);
+                }
             }
         }
     }
 
-    private void drawIcon(GraphicsContext gfx, GridAreaIcon icon)
+    // The first multiple of 'step' from which grid lines can be in view
+    private static double firstLine(double viewStart, int step)
     {
-        double x = (icon.getX() + 0.5) * gridSquareSize;
-        double y = (icon.getY() + 0.5) * gridSquareSize;
+        return Math.max(0.0, Math.floor((viewStart - 0.5) / step) * step);
+    }
 
-        var image = icon.getImage();
-        double fullSizePixelWidth = image.getWidth();
-        double fullSizePixelHeight = image.getHeight();
+    // Counts the movable icons in view into DENSITY_CELL_PIXELS cells and fills each cell that has
+    // any, coloured by how many. Redrawn in full each pass, at a cost that follows the icons in view
+    // and the cells they fall in, not the size of the grid.
+    private void drawDensityLayer(GraphicsContext gfx)
+    {
+        gfx.clearRect(0.0, 0.0, canvas.getWidth(), canvas.getHeight());
+        int cellCount = 0;
+        found.clear();
+        findInView();
+        for(var entry : found)
+        {
+            GridAreaIcon icon = entry.icon;
+            if(!icon.isMovable() || !icon.isShown())
+            {
+                continue;
+            }
+            double x = toPixelX(icon.getX());
+            double y = toPixelY(icon.getY());
+            if(x < 0.0 || y < 0.0 || x >= getWidth() || y >= getHeight())
+            {
+                continue;
+            }
+            int cell = (int) (y / DENSITY_CELL_PIXELS) * densityX + (int) (x / DENSITY_CELL_PIXELS);
+            if(densityCounts[cell]++ == 0)
+            {
+                densityList[cellCount++] = cell;
+            }
+        }
+
+        // One pass per colour, so the fill only changes a handful of times
+        for(int colour = 0; colour < DENSITY_COLOURS.length; colour++)
+        {
+            gfx.setFill(DENSITY_COLOURS[colour]);
+            for(int i = 0; i < cellCount; i++)
+            {
+                int cell = densityList[i];
+                if(densityColour(densityCounts[cell]) == colour)
+                {
+                    gfx.fillRect((cell % densityX) * DENSITY_CELL_PIXELS, (cell / densityX) * DENSITY_CELL_PIXELS,
+                            DENSITY_CELL_PIXELS, DENSITY_CELL_PIXELS);
+                }
+            }
+        }
+        for(int i = 0; i < cellCount; i++)
+        {
+            densityCounts[densityList[i]] = 0;
+        }
+    }
+
+    private static int densityColour(int count)
+    {
+        return Math.min(DENSITY_COLOURS.length - 1, 31 - Integer.numberOfLeadingZeros(count));
+    }
+
+    // Erases and redraws the icons that changed since the last pass
+    private void drawDynamicLayer(GraphicsContext gfx)
+    {
+        // Pass 1: dirty the tiles each changed icon was and now is in
+        for(var entry : changedIcons)
+        {
+            entry.changed = false;
+            if(entry.drawnIn == redraws)
+            {
+                markDirty(entry.left, entry.top, entry.right, entry.bottom);
+            }
+            GridAreaIcon icon = entry.icon;
+            if(!entry.removed && icon.isMovable() && icon.isShown() && inView(icon.getX(), icon.getY()))
+            {
+                updateBounds(entry);
+                markDirty(entry.left, entry.top, entry.right, entry.bottom);
+            }
+            else
+            {
+                entry.drawnIn = -1;
+            }
+        }
+        changedIcons.clear();
+        drawDirtyTiles(gfx);
+    }
+
+    // Draws every icon in view afresh, after the whole layer has been cleared and dirtied
+    private void redrawDynamicLayer(GraphicsContext gfx)
+    {
+        forgetChanges();
+        redraws++;
+        maxOverhang = 0.0;
+        found.clear();
+        findInView();
+        for(var entry : found)
+        {
+            GridAreaIcon icon = entry.icon;
+            if(icon.isMovable() && icon.isShown() && inView(icon.getX(), icon.getY()))
+            {
+                updateBounds(entry);
+            }
+        }
+        drawDirtyTiles(gfx);
+    }
+
+    // Pass 2: clear the dirty tiles and redraw, clipped to them, every icon that overlaps one
+    private void drawDirtyTiles(GraphicsContext gfx)
+    {
+        if(dirtyCount == 0)
+        {
+            return;
+        }
+
+        gfx.save();
+        gfx.beginPath();
+        for(int i = 0; i < dirtyCount; i++)
+        {
+            int tile = dirtyList[i];
+            double left = (tile % tilesX) * tileSize;
+            double top = (tile / tilesX) * tileSize;
+            gfx.clearRect(left, top, tileSize, tileSize);
+            gfx.rect(left, top, tileSize, tileSize);
+        }
+        gfx.clip();
 
-        double displayedPixelWidth, displayedPixelHeight;
-        if(fullSizePixelWidth > fullSizePixelHeight)
+        // Only icons centred within maxOverhang of a dirty tile can reach into it
+        found.clear();
+        if(dirtyCount == dirtyTiles.length)
         {
-            displayedPixelWidth = gridSquareSize;
-            displayedPixelHeight = gridSquareSize * fullSizePixelHeight / fullSizePixelWidth;
+            findInView();
         }
         else
         {
-            displayedPixelHeight = gridSquareSize;
-            displayedPixelWidth = gridSquareSize * fullSizePixelWidth / fullSizePixelHeight;
+            lookups++;
+            for(int i = 0; i < dirtyCount; i++)
+            {
+                int tile = dirtyList[i];
+                double left = (tile % tilesX) * tileSize;
+                double top = (tile / tilesX) * tileSize;
+                findIn(left - maxOverhang, top - maxOverhang, left + tileSize + maxOverhang, top + tileSize + maxOverhang);
+            }
+        }
+        found.sort(DRAW_ORDER);
+        for(var entry : found)
+        {
+            if(entry.drawnIn == redraws && overlapsDirtyTile(entry))
+            {
+                drawIcon(gfx, entry.icon);
+            }
+        }
+        gfx.restore();
+
+        for(int i = 0; i < dirtyCount; i++)
+        {
+            dirtyTiles[dirtyList[i]] = false;
+        }
+        dirtyCount = 0;
+    }
+
+    // Records where the icon is about to be drawn, marking it as on the dynamic layer
+    private void updateBounds(IconEntry bounds)
+    {
+        GridAreaIcon icon = bounds.icon;
+        double x = toPixelX(icon.getX());
+        double y = toPixelY(icon.getY());
+        Image caption = showCaptions ? getCaptionImage(icon.getCaption()) : null;
+
+        // The image fits in one grid square but may be rotated, so allow for its diagonal
+        double halfImage = gridSquareSize * Math.sqrt(0.5);
+        double halfCaption = caption != null ? caption.getWidth() / 2.0 : 0.0;
+        double halfWidth = Math.max(halfImage, halfCaption);
+
+        bounds.drawnIn = redraws;
+        bounds.left = x - halfWidth - 1.0;
+        bounds.right = x + halfWidth + 1.0;
+        bounds.top = y - halfImage - 1.0;
+        double captionBottom = caption != null ? y + gridSquareSize * CAPTION_OFFSET + caption.getHeight() : y;
+        bounds.bottom = Math.max(y + halfImage, captionBottom) + 1.0;
+        maxOverhang = Math.max(maxOverhang, Math.max(halfWidth, bounds.bottom - y) + 1.0);
+    }
+
+    private void resetTiles()
+    {
+        tileSize = Math.max(gridSquareSize, MIN_TILE_PIXELS);
+        tilesX = Math.max(1, (int) Math.ceil(getWidth() / tileSize));
+        tilesY = Math.max(1, (int) Math.ceil(getHeight() / tileSize));
+        dirtyTiles = new boolean[tilesX * tilesY];
+        dirtyList = new int[tilesX * tilesY];
+        dirtyCount = 0;
+
+        densityX = Math.max(1, (int) Math.ceil(getWidth() / DENSITY_CELL_PIXELS));
+        int densityY = Math.max(1, (int) Math.ceil(getHeight() / DENSITY_CELL_PIXELS));
+        if(densityCounts.length != densityX * densityY)
+        {
+            densityCounts = new int[densityX * densityY];
+            densityList = new int[densityX * densityY];
         }
+    }
+
+    private void markDirty(double left, double top, double right, double bottom)
+    {
+        int x0 = clampTile(left, tilesX);
+        int x1 = clampTile(right, tilesX);
+        int y0 = clampTile(top, tilesY);
+        int y1 = clampTile(bottom, tilesY);
+        for(int ty = y0; ty <= y1; ty++)
+        {
+            for(int tx = x0; tx <= x1; tx++)
+            {
+                int tile = ty * tilesX + tx;
+                if(!dirtyTiles[tile])
+                {
+                    dirtyTiles[tile] = true;
+                    dirtyList[dirtyCount++] = tile;
+                }
+            }
+        }
+    }
+
+    private boolean overlapsDirtyTile(IconEntry bounds)
+    {
+        int x0 = clampTile(bounds.left, tilesX);
+        int x1 = clampTile(bounds.right, tilesX);
+        int y0 = clampTile(bounds.top, tilesY);
+        int y1 = clampTile(bounds.bottom, tilesY);
+        for(int ty = y0; ty <= y1; ty++)
+        {
+            for(int tx = x0; tx <= x1; tx++)
+            {
+                if(dirtyTiles[ty * tilesX + tx])
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int clampTile(double pixel, int tileCount)
+    {
+        return Math.max(0, Math.min(tileCount - 1, (int) Math.floor(pixel / tileSize)));
+    }
+
+    // Captions are rendered to an image once and then blitted, since strokeText is slow
+    private Image getCaptionImage(String caption)
+    {
+        Image image = captionImages.get(caption);
+        if(image == null)
+        {
+            var bounds = new Text(caption).getLayoutBounds();
+            Canvas textCanvas = new Canvas(Math.ceil(bounds.getWidth()) + 2.0, Math.ceil(bounds.getHeight()) + 2.0);
+            GraphicsContext gfx = textCanvas.getGraphicsContext2D();
+            gfx.setTextAlign(TextAlignment.CENTER);
+            gfx.setTextBaseline(VPos.TOP);
+            gfx.setStroke(captionColour);
+            gfx.strokeText(caption, textCanvas.getWidth() / 2.0, 1.0);
+
+            SnapshotParameters params = new SnapshotParameters();
+            params.setFill(Color.TRANSPARENT);
+            image = textCanvas.snapshot(params, null);
+            captionImages.put(caption, image);
+        }
+        return image;
+    }
+
+    private void drawIcon(GraphicsContext gfx, GridAreaIcon icon)
+    {
+        double x = toPixelX(icon.getX());
+        double y = toPixelY(icon.getY());
+
+        var image = icon.getImage();
+        var scaledImage = atlas.getScaled(image);
 
         gfx.save();
         gfx.translate(x, y);
         gfx.rotate(icon.getRotation());
-        gfx.drawImage(image, -displayedPixelWidth / 2.0, -displayedPixelHeight / 2.0, displayedPixelWidth, displayedPixelHeight);
+        if(scaledImage != null)
+        {
+            // Already the displayed size, so no scaling on each draw
+            gfx.drawImage(scaledImage, -scaledImage.getWidth() / 2.0, -scaledImage.getHeight() / 2.0);
+        }
+        else
+        {
+            double fullSizePixelWidth = image.getWidth();
+            double fullSizePixelHeight = image.getHeight();
+
+            double displayedPixelWidth, displayedPixelHeight;
+            if(fullSizePixelWidth > fullSizePixelHeight)
+            {
+                displayedPixelWidth = gridSquareSize;
+                displayedPixelHeight = gridSquareSize * fullSizePixelHeight / fullSizePixelWidth;
+            }
+            else
+            {
+                displayedPixelHeight = gridSquareSize;
+                displayedPixelWidth = gridSquareSize * fullSizePixelWidth / fullSizePixelHeight;
+            }
+            gfx.drawImage(image, -displayedPixelWidth / 2.0, -displayedPixelHeight / 2.0, displayedPixelWidth, displayedPixelHeight);
+        }
         gfx.restore();
 
-        gfx.setTextAlign(TextAlignment.CENTER);
-        gfx.setTextBaseline(VPos.TOP);
-        gfx.setStroke(captionColour);
-        gfx.strokeText(icon.getCaption(), x, y + gridSquareSize * 0.35);
+        if(showCaptions)
+        {
+            Image caption = getCaptionImage(icon.getCaption());
+            gfx.drawImage(caption, x - caption.getWidth() / 2.0, y + gridSquareSize * CAPTION_OFFSET - 1.0);
+        }
     }
 }
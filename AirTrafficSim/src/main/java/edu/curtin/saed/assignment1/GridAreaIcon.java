@@ -12,6 +12,8 @@ public class GridAreaIcon
     private Image image;
     private String caption;
     private boolean shown = true;
+    private boolean movable = true;
+    private GridArea area; // The area whose icon list holds this, told of each change
 
     public GridAreaIcon(double x, double y, double rotation, double scale, InputStream imageStream, String caption)
     {
@@ -23,6 +25,17 @@ public class GridAreaIcon
         this.caption = caption;
     }
 
+    // Shares an already-decoded image, normally one from GridArea's ImageAtlas
+    public GridAreaIcon(double x, double y, double rotation, double scale, Image image, String caption)
+    {
+        this.x = x;
+        this.y = y;
+        this.rotation = rotation;
+        this.scale = scale;
+        this.image = image;
+        this.caption = caption;
+    }
+
     public double getX() { return x; }
     public double getY() { return y; }
     public double getRotation() { return rotation; }
@@ -30,20 +43,54 @@ public class GridAreaIcon
     public Image getImage() { return image; }
     public String getCaption() { return caption; }
     public boolean isShown() { return shown; }
+    public boolean isMovable() { return movable; }
 
     public void setPosition(double x, double y)
     {
-        this.x = x;
-        this.y = y;
+        if(x != this.x || y != this.y)
+        {
+            this.x = x;
+            this.y = y;
+            changed();
+        }
     }
 
     public void setRotation(double rotation)
     {
-        this.rotation = rotation;
+        if(rotation != this.rotation)
+        {
+            this.rotation = rotation;
+            changed();
+        }
     }
 
     public void setShown(boolean shown)
     {
-        this.shown = shown;
+        if(shown != this.shown)
+        {
+            this.shown = shown;
+            changed();
+        }
+    }
+
+    // Icons that never move are drawn once onto GridArea's static layer rather than every pass
+    public void setMovable(boolean movable)
+    {
+        if(movable != this.movable)
+        {
+            this.movable = movable;
+            changed();
+        }
+    }
+
+    /* default */ GridArea getArea() { return area; }
+    /* default */ void setArea(GridArea area) { this.area = area; }
+
+    private void changed()
+    {
+        if(area != null)
+        {
+            area.iconChanged(this);
+        }
     }
 }
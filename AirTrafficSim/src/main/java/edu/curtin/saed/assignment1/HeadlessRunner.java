@@ -0,0 +1,471 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Command-line entry point that runs the simulation without JavaFX, as fast as the CPU allows unless
+// --time-scale says otherwise, for batch and load runs. Flight requests are generated in-process
+// each tick and servicing is instant unless --service-time is given, so the run measures the
+// simulation core rather than the external comms programs.
+//
+// Counters and latency percentiles are printed at the end; --metrics also dumps them to a file (CSV if
+// it ends in .csv) every --metrics-interval seconds while the run goes on.
+//
+// --record writes a run log (see RunRecorder); --replay runs the scenario, settings, requests,
+// dispatches and servicing times from one instead, up to the tick of its last record unless --ticks
+// is given. If the replay can't keep to the log, it stops there and says why.
+//
+// --snapshot writes the simulation's full state (see SimulationSnapshot) when the run ends, and
+// --restore carries on from one for another --ticks ticks, skipping scenario set-up and warm-up.
+// With generated requests and in-process servicing, a restored run goes on exactly as the
+// snapshotted run would have.
+//
+// --landings limits the planes each airport lands per --landing-window of simulated time, with the rest
+// holding until a later window, and --gates limits the planes each airport services at once, with the
+// rest waiting on the ground. The airports where planes waited longest are listed at the end.
+//
+// --shards N steps flights in N worker JVMs, each looking after a strip of the grid (see
+// ShardCoordinator), with the same results as stepping them here.
+//
+// Usage: HeadlessRunner [--airports N] [--planes-per-airport M] [--grid G] [--ticks T] [--request-rate P]
+//                       [--service-time uniform:MIN:MAX|exponential:MEAN|fixed:MILLIS] [--event-log FILE]
+//                       [--tick-threads N] [--separation MIN] [--scenario FILE] [--plane-threads platform|virtual]
+//                       [--time-scale N|max] [--metrics FILE] [--metrics-interval SECONDS]
+//                       [--pending-requests N] [--overflow block|drop-oldest|reject]
+//                       [--record FILE] [--replay FILE] [--route-cache N] [--snapshot FILE] [--restore FILE]
+//                       [--landings N] [--landing-window MILLIS] [--gates N] [--shards N]
+//
+// Requests are generated on the engine thread, which never waits, so --overflow block acts as reject.
+public class HeadlessRunner
+{
+    private static final String USAGE = "Usage: HeadlessRunner [--airports N] [--planes-per-airport M] [--grid G] "
+            + "[--ticks T] [--request-rate P] [--service-time SPEC] [--event-log FILE] [--tick-threads N] [--separation MIN] [--scenario FILE]"
+            + " [--plane-threads platform|virtual] [--time-scale N|max] [--metrics FILE] [--metrics-interval SECONDS]"
+            + " [--pending-requests N] [--overflow block|drop-oldest|reject] [--record FILE] [--replay FILE]"
+            + " [--route-cache N] [--snapshot FILE] [--restore FILE] [--landings N] [--landing-window MILLIS] [--gates N]"
+            + " [--shards N]";
+    private static final long EVENT_LOG_FILE_BYTES = 64L * 1024 * 1024;
+    private static final int EVENT_LOG_FILES = 3;
+    private static final int CONGESTED_AIRPORTS = 10; // Listed at the end, if planes waited at any
+
+    private final SimulationConfig config = new SimulationConfig();
+    private long durationTicks = -1; // Default of 40,000 (1000 simulated seconds), or the replay's length
+    private double requestRate = 0.05; // Chance per airport per tick of a new flight request
+    private ServiceTimeDistribution serviceTimes; // Null for instant servicing
+    private Path eventLogPath; // Null to discard events
+    private Path scenarioPath; // Null for randomly placed airports
+    private Path metricsPath; // Null to only print metrics at the end
+    private long metricsIntervalMillis = 5000;
+    private Path recordPath; // Null unless recording
+    private Path replayPath; // Null unless replaying
+    private Path snapshotPath; // Null unless snapshotting at the end
+    private Path restorePath; // Null unless carrying on from a snapshot
+    private RollingFileEventSink eventSink;
+
+    public static void main(String[] args)
+    {
+        HeadlessRunner runner = new HeadlessRunner();
+        try {
+            runner.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return;
+        }
+        runner.run();
+    }
+
+    private void parseArgs(String[] args)
+    {
+        config.setTimeScale(SimulationClock.AS_FAST_AS_POSSIBLE);
+        config.setShardPositionsEveryTick(false); // Only flights are counted
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--airports":
+                        config.setAirports(Integer.parseInt(value));
+                        break;
+                    case "--planes-per-airport":
+                        config.setPlanesPerAirport(Integer.parseInt(value));
+                        break;
+                    case "--grid":
+                        config.setGridSize(Integer.parseInt(value));
+                        break;
+                    case "--ticks":
+                        durationTicks = Long.parseLong(value);
+                        break;
+                    case "--request-rate":
+                        requestRate = Double.parseDouble(value);
+                        break;
+                    case "--service-time":
+                        serviceTimes = ServiceTimeDistribution.parse(value);
+                        break;
+                    case "--event-log":
+                        eventLogPath = Path.of(value);
+                        break;
+                    case "--tick-threads":
+                        config.setTickThreads(Integer.parseInt(value));
+                        break;
+                    case "--separation":
+                        config.setMinimumSeparation(Double.parseDouble(value));
+                        break;
+                    case "--scenario":
+                        scenarioPath = Path.of(value);
+                        break;
+                    case "--time-scale":
+                        config.setTimeScale(SimulationClock.parseTimeScale(value));
+                        break;
+                    case "--metrics":
+                        metricsPath = Path.of(value);
+                        break;
+                    case "--metrics-interval":
+                        metricsIntervalMillis = Long.parseLong(value) * 1000;
+                        break;
+                    case "--pending-requests":
+                        config.setPendingRequestsPerAirport(Integer.parseInt(value));
+                        break;
+                    case "--overflow":
+                        config.setOverflowPolicy(PendingRequestQueue.OverflowPolicy.parse(value));
+                        break;
+                    case "--record":
+                        recordPath = Path.of(value);
+                        break;
+                    case "--replay":
+                        replayPath = Path.of(value);
+                        break;
+                    case "--snapshot":
+                        snapshotPath = Path.of(value);
+                        break;
+                    case "--restore":
+                        restorePath = Path.of(value);
+                        break;
+                    case "--route-cache":
+                        config.setRouteCacheSize(Integer.parseInt(value));
+                        break;
+                    case "--landings":
+                        config.setLandingsPerWindow(Integer.parseInt(value));
+                        break;
+                    case "--landing-window":
+                        config.setLandingWindowMillis(Long.parseLong(value));
+                        break;
+                    case "--gates":
+                        config.setGatesPerAirport(Integer.parseInt(value));
+                        break;
+                    case "--shards":
+                        config.setShards(Integer.parseInt(value));
+                        break;
+                    case "--plane-threads":
+                        config.setVirtualPlaneThreads(parsePlaneThreads(value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value '" + value + "' for " + args[i], e);
+            }
+        }
+        if (config.getAirports() < 2) {
+            throw new IllegalArgumentException("At least 2 airports are needed");
+        }
+        if (config.getPendingRequestsPerAirport() < 0 || config.getLandingsPerWindow() < 0
+                || config.getGatesPerAirport() < 0 || config.getShards() < 0) {
+            throw new IllegalArgumentException("--pending-requests, --landings, --gates and --shards can't be negative");
+        }
+        if (config.getLandingWindowMillis() < 1) {
+            throw new IllegalArgumentException("--landing-window must be at least 1");
+        }
+        if (restorePath != null && replayPath != null) {
+            throw new IllegalArgumentException("--restore and --replay can't be used together");
+        }
+    }
+
+    private static boolean parsePlaneThreads(String value)
+    {
+        switch (value) {
+            case "virtual":
+                return true;
+            case "platform":
+                return false;
+            default:
+                throw new IllegalArgumentException("--plane-threads must be platform or virtual");
+        }
+    }
+
+    private void run()
+    {
+        if (eventLogPath != null) {
+            try {
+                eventSink = new RollingFileEventSink(eventLogPath, EVENT_LOG_FILE_BYTES, EVENT_LOG_FILES);
+            } catch (IOException e) {
+                System.err.println("Cannot write event log " + eventLogPath + ": " + e.getMessage());
+                return;
+            }
+        }
+        Scenario scenario;
+        RunReplay replay = null;
+        SimulationSnapshot snapshot = null;
+        long loadNanos = System.nanoTime();
+        try {
+            if (replayPath != null) {
+                replay = RunReplay.load(replayPath);
+                scenario = replay.getScenario();
+            } else if (restorePath != null) {
+                snapshot = SimulationSnapshot.load(restorePath);
+                scenario = snapshot.getScenario();
+            } else {
+                scenario = scenarioPath != null ? ScenarioLoader.load(scenarioPath)
+                        : Scenario.random(config, new Random().nextLong());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot load " + (replayPath != null ? "run log: " : restorePath != null ? "snapshot: "
+                    : "scenario: ") + e.getMessage());
+            return;
+        }
+        if (replay != null) {
+            replay.applyTo(config);
+            requestRate = 0.0; // The log's requests only
+            if (durationTicks < 0) {
+                durationTicks = replay.getDurationMillis() / SimulationEngine.TICK_MILLIS;
+            }
+        } else {
+            if (snapshot != null) {
+                snapshot.applyTo(config);
+            } else {
+                scenario.applyTo(config);
+            }
+            if (scenario.getRequestRate() > 0.0) {
+                // Each headless tick stands for one interactive tick of simulated time
+                requestRate = scenario.getRequestRate() * SimulationEngine.TICK_MILLIS / 1000.0;
+            }
+        }
+        if (durationTicks < 0) {
+            durationTicks = 40_000;
+        }
+
+        Random requestRandom = snapshot != null ? snapshot.getRandom("requests") : null;
+        RequestGenerator generator = new RequestGenerator(requestRandom != null ? requestRandom : new Random(scenario.getSeed()));
+        SimulationClock clock = new SimulationClock(config.getTimeScale());
+        PlaneServiceProvider servicing;
+        Random serviceRandom = null;
+        if (replay != null) {
+            servicing = replay.createServiceProvider(clock);
+        } else if (serviceTimes != null) {
+            serviceRandom = snapshot != null ? snapshot.getRandom("servicing") : null;
+            if (serviceRandom == null) {
+                serviceRandom = new Random();
+            }
+            servicing = new SimulatedPlaneService(clock, serviceTimes, serviceRandom);
+        } else {
+            servicing = (airport, plane, output) -> CompletableFuture.completedFuture(null);
+        }
+        MetricsRegistry metrics = new MetricsRegistry();
+        AirTrafficSimulation simulation = new AirTrafficSimulation(config, scenario, clock, metrics, generator, servicing);
+        generator.simulation = simulation;
+        simulation.addRandomStream("requests", generator.rand);
+        if (serviceRandom != null) {
+            simulation.addRandomStream("servicing", serviceRandom);
+        }
+        if (snapshot != null) {
+            simulation.restore(snapshot);
+        }
+        FlightRequestSource replayedRequests = replay != null ? replay.createRequestSource(simulation) : null;
+        double loadSeconds = (System.nanoTime() - loadNanos) / 1e9;
+        MetricsReporter reporter = null;
+        if (metricsPath != null) {
+            try {
+                reporter = new MetricsReporter(metrics, metricsPath, metricsIntervalMillis);
+            } catch (IOException e) {
+                System.err.println("Cannot write metrics " + metricsPath + ": " + e.getMessage());
+                return;
+            }
+        }
+        RunRecorder recorder = null;
+        if (recordPath != null) {
+            try {
+                recorder = new RunRecorder(recordPath, scenario, config, simulation::getTicks);
+            } catch (IOException e) {
+                System.err.println("Cannot write run log " + recordPath + ": " + e.getMessage());
+                return;
+            }
+            simulation.setRecorder(recorder);
+        }
+
+        System.out.printf("Set up %d airports with %d planes in %.2f s%n",
+                scenario.getAirportCount(), scenario.getPlaneCount(), loadSeconds);
+        System.out.printf("Running for %d ticks on %d tick threads, with %s plane threads%n", durationTicks,
+                config.getTickThreads(), config.isVirtualPlaneThreads() ? "virtual" : "platform");
+        if (config.getShards() > 0) {
+            System.out.printf("Stepping flights in %d shard worker JVMs%n", config.getShards());
+        }
+        if (replay != null) {
+            replay.describe(line -> System.out.println("Replaying " + line));
+        }
+        if (snapshot != null) {
+            System.out.printf("Restored %s at tick %d (%.1f s simulated), with %d in flight and %d queued%n",
+                    restorePath, snapshot.getTicks(), snapshot.getClockMillis() / 1000.0, snapshot.getFlightCount(),
+                    snapshot.getWaitingCount());
+        }
+        long startNanos = System.nanoTime();
+        if (replayedRequests != null) {
+            replayedRequests.start();
+        }
+        simulation.setTickLimit(simulation.getTicks() + durationTicks);
+        simulation.start();
+        try {
+            while (!simulation.isAtTickLimit() && (replay == null || replay.getDivergence() == null)) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            if (snapshotPath != null) {
+                writeSnapshot(simulation);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (replayedRequests != null) {
+            replayedRequests.stop();
+        }
+        simulation.stop();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        if (recorder != null) {
+            recorder.close();
+        }
+        if (eventSink != null) {
+            eventSink.close();
+        }
+        if (reporter != null) {
+            reporter.close();
+        }
+
+        SimulationStats stats = simulation.getStats();
+        System.out.printf("Wall time:           %.2f s%n", seconds);
+        System.out.printf("Ticks:               %d (%.0f ticks/s)%n", stats.getTicks(), stats.getTicks() / seconds);
+        double simulatedSeconds = clock.millis() / 1000.0;
+        System.out.printf("Simulated time:      %.1f s (%.1fx real time)%n", simulatedSeconds, simulatedSeconds / seconds);
+        System.out.printf("Plane steps:         %d (%.0f steps/s)%n", generator.planeSteps, generator.planeSteps / seconds);
+        System.out.printf("Flight requests:     %d (%d rejected)%n", stats.getFlightRequests(), stats.getRejectedRequests());
+        System.out.printf("Completed trips:     %d (%.0f trips/s)%n", stats.getTotalCompletedTrips(), stats.getTotalCompletedTrips() / seconds);
+        System.out.printf("In flight at end:    %d%n", stats.getPlanesInFlight());
+        System.out.printf("Queued at end:       %d%n", stats.getQueuedRequests());
+        System.out.printf("Separation conflicts: %d (%d active at end)%n", stats.getSeparationConflicts(), stats.getActiveConflicts());
+        if (eventSink != null) {
+            System.out.printf("Events dropped:      %d%n", eventSink.getDroppedCount());
+        }
+        if (recorder != null) {
+            System.out.printf("Run log:             %s (%d bytes)%n", recordPath, recorder.getBytesWritten());
+        }
+        if (replay != null && replay.getDivergence() != null) {
+            System.err.println("Replay stopped matching " + replayPath + ": " + replay.getDivergence());
+        }
+        printCongestedAirports(simulation);
+        System.out.println("Metrics:");
+        try {
+            metrics.writeText(System.out, Map.of(), seconds);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // PrintStream doesn't throw
+        }
+    }
+
+    private static void printCongestedAirports(AirTrafficSimulation simulation)
+    {
+        AirportWaitStats holding = simulation.getHoldingWaits();
+        AirportWaitStats gates = simulation.getGateWaits();
+        int[] busiest = AirportWaitStats.busiest(CONGESTED_AIRPORTS, holding, gates);
+        if (busiest.length == 0) {
+            return;
+        }
+        System.out.println("Most congested airports (simulated ms):");
+        System.out.println("  airport (x,y)          held  mean hold   max hold   at gate  mean gate   max gate");
+        for (int airport : busiest) {
+            Airport at = simulation.getAirports().get(airport);
+            String name = airport + " (" + (int) at.getX() + "," + (int) at.getY() + ")";
+            System.out.printf("  %-20s %6d %10.0f %10d %9d %10.0f %10d%n", name, holding.getCount(airport),
+                    holding.getMeanMillis(airport), holding.getMaxMillis(airport), gates.getCount(airport),
+                    gates.getMeanMillis(airport), gates.getMaxMillis(airport));
+        }
+    }
+
+    // Takes a snapshot and writes it from this thread while the simulation runs on
+    private void writeSnapshot(AirTrafficSimulation simulation) throws InterruptedException
+    {
+        try {
+            SimulationSnapshot snapshot = simulation.snapshot().get();
+            long startNanos = System.nanoTime();
+            long bytes = snapshot.write(snapshotPath);
+            System.out.printf("Snapshot:            %s at tick %d (%d bytes, written in %.1f ms)%n", snapshotPath,
+                    snapshot.getTicks(), bytes, (System.nanoTime() - startNanos) / 1e6);
+        } catch (ExecutionException e) {
+            System.err.println("Cannot take snapshot: " + e.getCause().getMessage());
+        } catch (IOException e) {
+            System.err.println("Cannot write snapshot " + snapshotPath + ": " + e.getMessage());
+        }
+    }
+
+    // Generates random flight requests on the engine thread after every tick, in the same way as the
+    // saed_flight_requests program, and counts engine work. Events go to the event log file, if any.
+    private class RequestGenerator implements SimulationListener
+    {
+        private final Random rand;
+        private Simulation simulation;
+        private long planeSteps;
+
+        private RequestGenerator(Random rand)
+        {
+            this.rand = rand;
+        }
+
+        @Override
+        public void planesMoved(FleetStore fleet)
+        {
+            planeSteps += fleet.size();
+        }
+
+        @Override
+        public void planeArrived(Plane plane, Airport destination)
+        {
+            planeSteps++;
+        }
+
+        @Override
+        public void separationConflict(Plane first, Plane second, double distance)
+        {
+            event(new SimulationEvent(SimulationEvent.Type.SEPARATION_CONFLICT, first.getId(), SimulationEvent.NONE,
+                    SimulationEvent.NONE, null, second.getId()));
+        }
+
+        @Override
+        public void tickCompleted()
+        {
+            int nAirports = config.getAirports();
+            for (int origin = 0; origin < nAirports; origin++) {
+                if (rand.nextDouble() < requestRate) {
+                    int destination = rand.nextInt(nAirports - 1);
+                    simulation.submitFlightRequest(origin, destination >= origin ? destination + 1 : destination);
+                }
+            }
+        }
+
+        @Override
+        public void event(SimulationEvent event)
+        {
+            if (eventSink != null) {
+                eventSink.accept(event);
+            }
+        }
+
+        @Override
+        public void statsChanged(SimulationStats stats)
+        {
+            // Read once at the end instead
+        }
+    }
+}
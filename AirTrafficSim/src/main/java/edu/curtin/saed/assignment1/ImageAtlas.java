@@ -0,0 +1,81 @@
+package edu.curtin.saed.assignment1;
+
+import javafx.scene.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Shared images keyed by resource name, so every icon using "plane.png" shares one decoded bitmap.
+// Also keeps a copy of each image pre-scaled to the current grid square size, which GridArea draws
+// 1:1 instead of scaling on every draw. Only used from the FX thread.
+public class ImageAtlas
+{
+    private static final double MIN_SCALED_PIXELS = 1.0; // Below this, drawing scaled on the fly is fine
+
+    private final Map<String, byte[]> encoded = new HashMap<>();
+    private final Map<String, Image> images = new HashMap<>();
+    private final Map<Image, String> names = new IdentityHashMap<>();
+    private final Map<String, Image> scaled = new HashMap<>();
+    private double scaledSize = -1.0;
+
+    // Returns the image for a classpath resource, decoding it on first use only
+    public Image get(String resource)
+    {
+        Image image = images.get(resource);
+        if (image == null) {
+            image = new Image(openResource(resource));
+            images.put(resource, image);
+            names.put(image, resource);
+        }
+        return image;
+    }
+
+    // Sets the square (in pixels) that scaled variants must fit in, discarding any of the old size
+    public void setScaledSize(double size)
+    {
+        if (size != scaledSize) {
+            scaledSize = size;
+            scaled.clear();
+        }
+    }
+
+    // Returns a variant of an image from this atlas that fits the scaled size with its aspect ratio
+    // kept, or null if the image didn't come from this atlas or the size is too small to be worth it.
+    public Image getScaled(Image image)
+    {
+        String resource = names.get(image);
+        if (resource == null || scaledSize < MIN_SCALED_PIXELS) {
+            return null;
+        }
+        Image variant = scaled.get(resource);
+        if (variant == null) {
+            // Decoding straight to the target size gives a better result than scaling the full image
+            variant = new Image(openResource(resource), scaledSize, scaledSize, true, true);
+            scaled.put(resource, variant);
+        }
+        return variant;
+    }
+
+    // The encoded bytes are kept so that scaled variants can be decoded without reloading the resource
+    private InputStream openResource(String resource)
+    {
+        byte[] data = encoded.get(resource);
+        if (data == null) {
+            try (InputStream stream = ImageAtlas.class.getClassLoader().getResourceAsStream(resource)) {
+                if (stream == null) {
+                    throw new IllegalArgumentException("Image resource not found: " + resource);
+                }
+                data = stream.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading image resource " + resource, e);
+            }
+            encoded.put(resource, data);
+        }
+        return new ByteArrayInputStream(data);
+    }
+}
@@ -0,0 +1,111 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free histogram of durations in nanoseconds, bucketed the way HdrHistogram does it: every
+// power of two is split into SUB_BUCKETS equal buckets, so any recorded value is known to within about
+// 3% however large it is, in a fixed 15 KB. record() is safe from any thread and never allocates.
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS; // Enough for Long.MAX_VALUE
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    // Negative durations (from a clock going backwards) are recorded as zero
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    // Records the time since startNanos, a System.nanoTime() reading
+    public void recordSince(long startNanos)
+    {
+        record(System.nanoTime() - startNanos);
+    }
+
+    // Values below SUB_BUCKETS get a bucket each; above that, the top SUB_BUCKET_BITS + 1 bits of the
+    // value pick the bucket, the leading one choosing the power of two and the rest the sub-bucket
+    private static int bucketOf(long value)
+    {
+        int top = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (top < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        int shift = top - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    // The largest value that falls in the bucket, so percentiles err on the high side
+    private static long highestValueIn(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    // Copies the counts out. Values recorded during the copy may be partly included, so the
+    // snapshot's total count comes from its own buckets to keep percentiles consistent.
+    public Snapshot snapshot()
+    {
+        long[] copy = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            n += copy[i];
+        }
+        return new Snapshot(copy, n, total.sum(), max.get());
+    }
+
+    public static final class Snapshot
+    {
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long total, long max)
+        {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+        public long getMaxNanos() { return max; }
+
+        public double getMeanNanos()
+        {
+            return count == 0 ? 0.0 : (double) total / count;
+        }
+
+        // The value that 'percentile' percent of recorded values are at or below, e.g. 99.0
+        public long getValueAtPercentile(double percentile)
+        {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Named counters, histograms and gauges for one simulation. Counters are LongAdders, striped across
+// cells so threads counting at once don't contend; histograms are LatencyHistograms. Instruments are
+// looked up once, when their owner is created, and kept in fields, so recording never touches the
+// maps. Names are dotted lowercase, e.g. "dispatch.latency".
+public class MetricsRegistry
+{
+    public static final String CSV_HEADER = "elapsed_s,metric,kind,count,rate_per_s,mean_ms,p50_ms,p90_ms,p99_ms,max_ms";
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    // Sorted, so dumps list metrics in the same order every time
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    // Returns the counter with this name, creating it the first time
+    public LongAdder counter(String name)
+    {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name)
+    {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    // A value read only when the metrics are dumped, such as a queue's current depth. Replaces any
+    // gauge already registered under the name.
+    public void gauge(String name, LongSupplier value)
+    {
+        gauges.put(name, value);
+    }
+
+    public long getCount(String name)
+    {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    // Reads every counter, for working out rates between dumps
+    public void readCounters(Map<String, Long> into)
+    {
+        counters.forEach((name, counter) -> into.put(name, counter.sum()));
+    }
+
+    // Human-readable dump, one metric per line. Counter rates are per second since 'previousCounts'
+    // were read, 'intervalSeconds' ago; with no previous counts, the rate is over the whole run.
+    public void writeText(Appendable out, Map<String, Long> previousCounts, double intervalSeconds) throws IOException
+    {
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            long count = entry.getValue().sum();
+            out.append(String.format(Locale.ROOT, "  %-28s %12d  (%.1f/s)%n", entry.getKey(), count,
+                    rate(count, previousCounts.get(entry.getKey()), intervalSeconds)));
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            out.append(String.format(Locale.ROOT, "  %-28s %12d%n", entry.getKey(), entry.getValue().getAsLong()));
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            out.append(String.format(Locale.ROOT,
+                    "  %-28s %12d  mean %.3f ms, p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                    entry.getKey(), snapshot.getCount(), snapshot.getMeanNanos() / NANOS_PER_MILLI,
+                    millisAt(snapshot, 50.0), millisAt(snapshot, 90.0), millisAt(snapshot, 99.0),
+                    snapshot.getMaxNanos() / NANOS_PER_MILLI));
+        }
+    }
+
+    // One CSV row per metric, under CSV_HEADER, with columns that don't apply to a kind left empty
+    public void writeCsv(Appendable out, double elapsedSeconds, Map<String, Long> previousCounts,
+                         double intervalSeconds) throws IOException
+    {
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            long count = entry.getValue().sum();
+            out.append(String.format(Locale.ROOT, "%.3f,%s,counter,%d,%.3f,,,,,%n", elapsedSeconds, entry.getKey(),
+                    count, rate(count, previousCounts.get(entry.getKey()), intervalSeconds)));
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            out.append(String.format(Locale.ROOT, "%.3f,%s,gauge,%d,,,,,,%n", elapsedSeconds, entry.getKey(),
+                    entry.getValue().getAsLong()));
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            out.append(String.format(Locale.ROOT, "%.3f,%s,histogram,%d,,%.3f,%.3f,%.3f,%.3f,%.3f%n", elapsedSeconds,
+                    entry.getKey(), snapshot.getCount(), snapshot.getMeanNanos() / NANOS_PER_MILLI,
+                    millisAt(snapshot, 50.0), millisAt(snapshot, 90.0), millisAt(snapshot, 99.0),
+                    snapshot.getMaxNanos() / NANOS_PER_MILLI));
+        }
+    }
+
+    private static double rate(long count, Long previous, double intervalSeconds)
+    {
+        long delta = previous != null ? count - previous : count;
+        return intervalSeconds > 0.0 ? delta / intervalSeconds : 0.0;
+    }
+
+    private static double millisAt(LatencyHistogram.Snapshot snapshot, double percentile)
+    {
+        return snapshot.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,89 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Appends a dump of a MetricsRegistry to a file every interval, on its own background thread, and
+// once more on close(). A path ending in .csv gets CSV rows (one per metric per dump, for loading
+// into a spreadsheet); anything else gets the text dump under a timestamp line.
+public class MetricsReporter
+{
+    private static final Logger LOGGER = Logger.getLogger(MetricsReporter.class.getName());
+
+    private final MetricsRegistry registry;
+    private final Path path;
+    private final boolean csv;
+    private final BufferedWriter writer;
+    private final long startNanos = System.nanoTime();
+    private final Object lock = new Object(); // close() can report while a scheduled dump is running
+    private final Map<String, Long> previousCounts = new HashMap<>(); // Guarded by lock
+    private long previousNanos = startNanos; // Guarded by lock
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MetricsReporter(MetricsRegistry registry, Path path, long intervalMillis) throws IOException
+    {
+        this.registry = registry;
+        this.path = path;
+        this.csv = path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        if (csv) {
+            writer.write(MetricsRegistry.CSV_HEADER);
+            writer.newLine();
+        }
+        scheduler.scheduleAtFixedRate(this::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Writes a final dump, then closes the file
+    public void close()
+    {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        report();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Error closing metrics file " + path);
+        }
+    }
+
+    private void report()
+    {
+        synchronized (lock) {
+            long now = System.nanoTime();
+            double intervalSeconds = (now - previousNanos) / 1e9;
+            try {
+                if (csv) {
+                    registry.writeCsv(writer, (now - startNanos) / 1e9, previousCounts, intervalSeconds);
+                } else {
+                    writer.write(String.format(Locale.ROOT, "%s (%.1f s)%n", Instant.now(), (now - startNanos) / 1e9));
+                    registry.writeText(writer, previousCounts, intervalSeconds);
+                }
+                writer.flush();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, e, () -> "Error writing metrics file " + path);
+            }
+            registry.readCounters(previousCounts);
+            previousNanos = now;
+        }
+    }
+}
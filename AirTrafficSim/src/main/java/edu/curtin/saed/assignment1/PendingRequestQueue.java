@@ -0,0 +1,185 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// Flight requests waiting for a plane, in a bounded FIFO queue per origin airport. A request is only
+// queued when no plane anywhere is idle; planes take the oldest request nearest to them as they free
+// up. Queues are created on an airport's first queued request, so idle airports cost one array slot.
+public class PendingRequestQueue
+{
+    // What offer() does when the origin airport's queue is full
+    public enum OverflowPolicy
+    {
+        BLOCK,       // Wait for room, holding up the request source
+        DROP_OLDEST, // Make room by dropping the airport's longest-waiting request
+        REJECT;      // Turn the new request away
+
+        // Parses "block", "drop-oldest" or "reject"
+        public static OverflowPolicy parse(String text)
+        {
+            try {
+                return valueOf(text.toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Overflow policy must be block, drop-oldest or reject", e);
+            }
+        }
+    }
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Consumer<Waiting> dropped;
+    private final AtomicReferenceArray<BlockingQueue<Waiting>> queues;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger nextScanStart = new AtomicInteger();
+
+    // 'dropped' is told about each request DROP_OLDEST discards. A capacity of zero queues nothing.
+    public PendingRequestQueue(int airportCount, int capacity, OverflowPolicy policy, Consumer<Waiting> dropped)
+    {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.dropped = dropped;
+        this.queues = new AtomicReferenceArray<>(airportCount);
+    }
+
+    public OverflowPolicy getPolicy()
+    {
+        return policy;
+    }
+
+    // Requests queued at all airports
+    public int size()
+    {
+        return size.get();
+    }
+
+    public int size(int airport)
+    {
+        BlockingQueue<Waiting> queue = queues.get(airport);
+        return queue != null ? queue.size() : 0;
+    }
+
+    // Queues a request, applying the overflow policy if the origin's queue is full. Returns false if
+    // the request was turned away. Callers that mustn't wait pass mayBlock = false, which makes BLOCK
+    // behave like REJECT; an interrupted wait also turns the request away.
+    public boolean offer(int origin, int destination, long acceptedNanos, boolean mayBlock)
+    {
+        if (capacity <= 0) {
+            return false;
+        }
+        BlockingQueue<Waiting> queue = queueFor(origin);
+        Waiting request = new Waiting(origin, destination, acceptedNanos);
+        boolean queued = queue.offer(request);
+        if (!queued && policy == OverflowPolicy.BLOCK && mayBlock) {
+            try {
+                queue.put(request);
+                queued = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        while (!queued && policy == OverflowPolicy.DROP_OLDEST) {
+            Waiting oldest = queue.poll();
+            if (oldest != null) {
+                size.decrementAndGet();
+                dropped.accept(oldest);
+            }
+            queued = queue.offer(request);
+        }
+        if (queued) {
+            size.incrementAndGet(); // After the request is visible, so a non-zero size means there's one to find
+        }
+        return queued;
+    }
+
+    // Takes the oldest request from the airport a freed plane is at, else from its nearest airports,
+    // else from anywhere, as FleetDispatcher searches for planes. Returns null if none are waiting.
+    public Waiting poll(int airport, int[] nearest)
+    {
+        if (size.get() == 0) {
+            return null;
+        }
+        Waiting request = pollFrom(airport);
+        for (int i = 0; request == null && i < nearest.length; i++) {
+            request = pollFrom(nearest[i]);
+        }
+        int airportCount = queues.length();
+        int start = Math.floorMod(nextScanStart.getAndIncrement(), airportCount);
+        for (int i = 0; request == null && i < airportCount && size.get() > 0; i++) {
+            request = pollFrom((start + i) % airportCount);
+        }
+        return request;
+    }
+
+    // Every waiting request, airport by airport, oldest first
+    public void forEach(Consumer<Waiting> visitor)
+    {
+        for (int i = 0; i < queues.length(); i++) {
+            BlockingQueue<Waiting> queue = queues.get(i);
+            if (queue != null) {
+                queue.forEach(visitor);
+            }
+        }
+    }
+
+    // Where the next fallback scan for a request starts; kept by snapshots
+    public int getScanStart()
+    {
+        return nextScanStart.get();
+    }
+
+    public void setScanStart(int start)
+    {
+        nextScanStart.set(start);
+    }
+
+    // Forgets every waiting request, e.g. when the simulation restarts
+    public void clear()
+    {
+        for (int i = 0; i < queues.length(); i++) {
+            // One at a time, as each poll also makes room for a producer blocked on the queue
+            Waiting cleared;
+            do {
+                cleared = pollFrom(i);
+            } while (cleared != null);
+        }
+    }
+
+    private Waiting pollFrom(int airport)
+    {
+        BlockingQueue<Waiting> queue = queues.get(airport);
+        Waiting request = queue != null ? queue.poll() : null;
+        if (request != null) {
+            size.decrementAndGet();
+        }
+        return request;
+    }
+
+    private BlockingQueue<Waiting> queueFor(int airport)
+    {
+        BlockingQueue<Waiting> queue = queues.get(airport);
+        if (queue == null) {
+            queues.compareAndSet(airport, null, new LinkedBlockingQueue<>(capacity));
+            queue = queues.get(airport); // Ours, or the one a racing thread created first
+        }
+        return queue;
+    }
+
+    // A queued request, with the System.nanoTime() at which the simulation accepted it
+    public static final class Waiting extends FlightRequest
+    {
+        private final long acceptedNanos;
+
+        private Waiting(int origin, int destination, long acceptedNanos)
+        {
+            super(origin, destination);
+            this.acceptedNanos = acceptedNanos;
+        }
+
+        public long getAcceptedNanos() { return acceptedNanos; }
+    }
+}
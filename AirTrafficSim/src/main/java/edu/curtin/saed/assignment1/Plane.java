@@ -0,0 +1,48 @@
+package edu.curtin.saed.assignment1;
+
+// A plane in the simulated fleet. Its position is written by the engine's tick thread while it is
+// in flight, and its airport by the plane's own lifecycle thread once the flight has been retired.
+public class Plane
+{
+    private final int id;
+    private double x;
+    private double y;
+    private volatile Airport airport;
+
+    public Plane(int id, Airport airport)
+    {
+        this.id = id;
+        this.x = airport.getX();
+        this.y = airport.getY();
+        this.airport = airport;
+    }
+
+    public int getId() { return id; }
+    public double getX() { return x; }
+    public double getY() { return y; }
+
+    // The airport the plane last landed at (or started from)
+    public Airport getAirport() { return airport; }
+
+    public void setAirport(Airport airport)
+    {
+        this.airport = airport;
+    }
+
+    public String getName()
+    {
+        return "Plane " + id;
+    }
+
+    public void setPosition(double x, double y)
+    {
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName();
+    }
+}
@@ -1,90 +1,58 @@
 package edu.curtin.saed.assignment1;
 
-import javafx.application.Platform;
-import javafx.scene.control.TextArea;
+import java.util.concurrent.CountDownLatch;
 
-public class PlaneMovement implements Runnable
+// A flight handed to the SimulationEngine, as seen by the thread that launched it. The flight's
+// position is kept in the engine's FleetStore; this only tracks whether it has landed or been dropped.
+public class PlaneMovement
 {
-    private final GridAreaIcon plane;
-    private final GridArea area;
-    private final GridAreaIcon destination;
+    private final Plane plane;
+    private final Airport destination;
     private final double speed;
-    private final TextArea textArea;
+    private final Route route; // Null to fly straight there
+    private final CountDownLatch finished = new CountDownLatch(1);
     private volatile boolean isRunning;
+    private volatile boolean arrived;
 
-    public PlaneMovement(GridAreaIcon plane, GridAreaIcon destination, GridArea area, double speed, TextArea textArea)
+    public PlaneMovement(Plane plane, Airport destination, double speed)
+    {
+        this(plane, destination, speed, null);
+    }
+
+    // Flies along 'route', which should run from the plane's position to the destination
+    public PlaneMovement(Plane plane, Airport destination, double speed, Route route)
     {
         this.plane = plane;
-        this.area = area;
         this.destination = destination;
         this.speed = speed;
-        this.textArea = textArea;
+        this.route = route;
         this.isRunning = true;  // Initialize isRunning as true
     }
 
-    @Override
-    public void run()
-    {
-        while (!Thread.currentThread().isInterrupted() && isRunning)
-        {
-            synchronized (area)
-            {
-
-                double deltaX = calculateDelta(plane.getX(), destination.getX());
-                double deltaY = calculateDelta(plane.getY(), destination.getY());
-                double distance = computeDistance(deltaX, deltaY);
-
-                // If the plane is close enough to the destination, snap to position and stop
-                if (distance < 0.5)
-                {
-                    Platform.runLater(() -> {
-                        plane.setPosition(destination.getX(), destination.getY());
-                        area.requestLayout();
-                        textArea.appendText(plane.getCaption() + " arrived at " + destination.getCaption() + ".\n");
-                    });
-                    break;
-                }
-
-                // Calculate movement step based on speed and normalize the vector
-                double[] step = computeStep(deltaX, deltaY, distance);
-
-                // Update plane's position
-                double newX = plane.getX() + step[0];
-                double newY = plane.getY() + step[1];
-
-                Platform.runLater(() -> {
-                    plane.setPosition(newX, newY);
-                    area.requestLayout();
-                });
-
-                try
-                {
-                    Thread.sleep(25); // Adjust sleep time for smoother movement
-                }
-                catch (InterruptedException e)
-                {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        }
-    }
+    public Plane getPlane() { return plane; }
+    public Airport getDestination() { return destination; }
+    public double getSpeed() { return speed; }
+    public Route getRoute() { return route; }
+    public boolean isRunning() { return isRunning; }
+    public boolean hasArrived() { return arrived; }
 
-    private double calculateDelta(double start, double end)
+    // Blocks the calling (plane servicing) thread until the engine has landed or dropped this flight.
+    // While the engine runs, the caller must release the engine's clock once it has acted on the result.
+    public void awaitArrival() throws InterruptedException
     {
-        return end - start; // Generic method to calculate the delta between two points
+        finished.await();
     }
 
-    private double computeDistance(double deltaX, double deltaY)
+    // Called by the engine once the flight has been retired, releasing anyone in awaitArrival()
+    public void finish()
     {
-        return Math.hypot(deltaX, deltaY); // Use hypot for cleaner distance calculation
+        finished.countDown();
     }
 
-    private double[] computeStep(double deltaX, double deltaY, double distance)
+    // Called by the engine's FleetStore when the plane reaches its destination
+    /* default */ void arrive()
     {
-        // Normalize the vector to get the direction, then scale by speed
-        double factor = speed * 0.05 / distance;
-        return new double[]{deltaX * factor, deltaY * factor}; // Return step as an array
+        arrived = true;
     }
 
     public void stop()
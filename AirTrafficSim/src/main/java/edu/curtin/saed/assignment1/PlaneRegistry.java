@@ -0,0 +1,47 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// All planes, stored by ID, together with each plane's queue of assigned destinations. IDs are
+// allocated densely from 0 in the order planes are added.
+public class PlaneRegistry
+{
+    private final List<Plane> planes = new ArrayList<>();
+    private final List<BlockingQueue<Airport>> requests = new ArrayList<>(); // Indexed by plane ID
+    private final List<Plane> view = Collections.unmodifiableList(planes);
+
+    public Plane add(Airport airport)
+    {
+        Plane plane = new Plane(planes.size(), airport);
+        planes.add(plane);
+        requests.add(new LinkedBlockingQueue<>());
+        return plane;
+    }
+
+    // Returns the plane with the given ID, or null if there isn't one
+    public Plane get(int id)
+    {
+        return id >= 0 && id < planes.size() ? planes.get(id) : null;
+    }
+
+    // The destinations assigned to a plane but not yet flown
+    public BlockingQueue<Airport> getRequests(Plane plane)
+    {
+        return requests.get(plane.getId());
+    }
+
+    public int size()
+    {
+        return planes.size();
+    }
+
+    // Read-only view, in ID order
+    public List<Plane> asList()
+    {
+        return view;
+    }
+}
@@ -0,0 +1,26 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// Services a plane after it lands. Returns straight away with a future that completes when servicing
+// is done, so no simulation thread waits on it; any progress text is passed to output. Cancelling the
+// future abandons the servicing.
+public interface PlaneServiceProvider
+{
+    CompletableFuture<Void> service(Airport airport, Plane plane, Consumer<String> output);
+
+    // Simulated milliseconds left of the plane's servicing, for snapshots, or -1 if the provider
+    // can't tell (as for the external service programs)
+    default long getRemainingMillis(Plane plane)
+    {
+        return -1;
+    }
+
+    // Carries on servicing that a snapshot caught part-way, with 'remainingMillis' to go as given by
+    // getRemainingMillis(). Providers that can't tell start servicing afresh.
+    default CompletableFuture<Void> resume(Airport airport, Plane plane, long remainingMillis, Consumer<String> output)
+    {
+        return service(airport, plane, output);
+    }
+}
@@ -0,0 +1,45 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+// Long-lived worker process for PooledProcessPlaneServiceProvider. Reads "AIRPORT PLANE" lines from
+// standard input and, for each one, runs the real saed_plane_service logic from comms.jar within this
+// JVM, then prints DONE_MARKER. Exits when standard input is closed.
+public final class PlaneServiceWorker
+{
+    public static final String DONE_MARKER = "#plane-service-done";
+    private static final String PLANE_SERVICE_CLASS = "edu.curtin.saed.assignment1.comms.PlaneService";
+
+    private PlaneServiceWorker()
+    {
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Method planeService;
+        try {
+            planeService = Class.forName(PLANE_SERVICE_CLASS).getMethod("main", String[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("comms.jar must be on the worker's classpath", e);
+        }
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] request = line.trim().split("\\s+");
+                try {
+                    planeService.invoke(null, (Object) request);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    System.out.println("saed_plane_service: error: " + e);
+                }
+                System.out.println(DONE_MARKER);
+                System.out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Services planes on a fixed pool of long-lived external worker processes (PlaneServiceWorker by
+// default), so each landing costs a line written to a pipe instead of a JVM start-up. At most
+// poolSize planes are serviced at once; the rest wait in arrival order for a free worker.
+public class PooledProcessPlaneServiceProvider implements PlaneServiceProvider
+{
+    private static final Logger LOGGER = Logger.getLogger(PooledProcessPlaneServiceProvider.class.getName());
+
+    private final List<String> workerCommand;
+    private final int poolSize;
+    private final ProcessOutputMultiplexer multiplexer;
+    private final Object lock = new Object();
+    private final Deque<Worker> idle = new ArrayDeque<>();
+    private final Queue<Job> waiting = new ArrayDeque<>();
+    private final List<Worker> workers = new ArrayList<>();
+
+    public PooledProcessPlaneServiceProvider(List<String> workerCommand, int poolSize, ProcessOutputMultiplexer multiplexer)
+    {
+        this.workerCommand = List.copyOf(workerCommand);
+        this.poolSize = poolSize;
+        this.multiplexer = multiplexer;
+    }
+
+    // Runs PlaneServiceWorker in a JVM like this one, with comms.jar added to the classpath
+    public static List<String> workerCommand(String commsJar)
+    {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String classpath = System.getProperty("java.class.path") + File.pathSeparator + commsJar;
+        return List.of(java, "-cp", classpath, PlaneServiceWorker.class.getName());
+    }
+
+    @Override
+    public CompletableFuture<Void> service(Airport airport, Plane plane, Consumer<String> output)
+    {
+        Job job = new Job(airport.getId() + " " + plane.getId() + "\n", output);
+        job.done.whenComplete((result, error) -> {
+            Worker worker = job.worker;
+            if (job.done.isCancelled() && worker != null) {
+                worker.process.destroy(); // Can't interrupt a worker mid-service, so replace it
+            }
+        });
+        synchronized (lock) {
+            waiting.add(job);
+        }
+        dispatch();
+        return job.done;
+    }
+
+    // Destroys every worker process; any servicing in progress fails
+    public void shutdown()
+    {
+        synchronized (lock) {
+            for (Worker worker : workers) {
+                worker.process.destroy();
+            }
+        }
+    }
+
+    // Hands waiting jobs to idle workers, starting new workers while below the pool size
+    private void dispatch()
+    {
+        Job job = nextAssignment();
+        while (job != null) {
+            job.worker.send(job);
+            job = nextAssignment();
+        }
+    }
+
+    // Takes the next waiting job and binds it to a worker, or returns null if either is unavailable
+    private Job nextAssignment()
+    {
+        synchronized (lock) {
+            while (!waiting.isEmpty()) {
+                if (waiting.peek().done.isDone()) {
+                    waiting.poll(); // Cancelled while waiting
+                    continue;
+                }
+                Worker worker = idle.poll();
+                if (worker == null) {
+                    if (workers.size() >= poolSize) {
+                        return null;
+                    }
+                    worker = tryStartWorker();
+                }
+                if (worker != null) {
+                    Job job = waiting.poll();
+                    job.worker = worker;
+                    worker.current = job;
+                    return job;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Starts a worker, or fails the next waiting job and returns null if it can't be started
+    private Worker tryStartWorker()
+    {
+        try {
+            return startWorker();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error starting plane service worker", e);
+            waiting.poll().done.completeExceptionally(e);
+            return null;
+        }
+    }
+
+    private Worker startWorker() throws IOException
+    {
+        Process process = new ProcessBuilder(workerCommand).redirectErrorStream(true).start();
+        Worker worker = new Worker(process);
+        workers.add(worker);
+        multiplexer.register(process, worker);
+        return worker;
+    }
+
+    private static class Job
+    {
+        private final String request;
+        private final Consumer<String> output;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile Worker worker;
+
+        private Job(String request, Consumer<String> output)
+        {
+            this.request = request;
+            this.output = output;
+        }
+    }
+
+    private class Worker implements ProcessOutputMultiplexer.LineHandler
+    {
+        private final Process process;
+        private final OutputStream in;
+        private Job current; // Guarded by lock
+
+        private Worker(Process process)
+        {
+            this.process = process;
+            this.in = process.getOutputStream();
+        }
+
+        private void send(Job job)
+        {
+            try {
+                in.write(job.request.getBytes(StandardCharsets.US_ASCII));
+                in.flush();
+            } catch (IOException e) {
+                job.done.completeExceptionally(e);
+                process.destroy(); // closed() will tidy up
+            }
+        }
+
+        @Override
+        public boolean line(String line)
+        {
+            Job job;
+            synchronized (lock) {
+                job = current;
+                if (PlaneServiceWorker.DONE_MARKER.equals(line)) {
+                    current = null;
+                    idle.add(this);
+                }
+            }
+            if (PlaneServiceWorker.DONE_MARKER.equals(line)) {
+                if (job != null) {
+                    job.done.complete(null);
+                }
+                dispatch();
+            } else if (job != null) {
+                job.output.accept(line);
+            }
+            return true;
+        }
+
+        @Override
+        public void closed()
+        {
+            Job job;
+            synchronized (lock) {
+                job = current;
+                current = null;
+                idle.remove(this);
+                workers.remove(this);
+            }
+            if (job != null) {
+                job.done.completeExceptionally(new IOException("Plane service worker exited"));
+            }
+            dispatch(); // Start a replacement if anything is waiting
+        }
+    }
+}
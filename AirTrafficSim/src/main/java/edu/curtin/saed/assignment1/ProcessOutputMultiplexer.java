@@ -0,0 +1,187 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Reads the output of any number of child processes on a small fixed set of reader threads, instead
+// of blocking one thread in readLine() per process. Each reader polls its share of the processes and
+// only reads what is already available, so one quiet process never holds up the others.
+public class ProcessOutputMultiplexer
+{
+    private static final Logger LOGGER = Logger.getLogger(ProcessOutputMultiplexer.class.getName());
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5); // Latency cap when idle
+    private static final int BUFFER_SIZE = 4096;
+
+    // Receives a process's output one line at a time on a reader thread. Returning false from line()
+    // means "not now": the reader holds on to that line, stops reading from that process, and offers
+    // the line again on its next pass. The process then blocks once its pipe fills up, which is the
+    // backpressure. closed() is called once, at end of output or on a read error.
+    public interface LineHandler
+    {
+        boolean line(String line);
+        void closed();
+    }
+
+    private final List<Reader> readers = new ArrayList<>();
+    private final AtomicInteger nextReader = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public ProcessOutputMultiplexer(int readerCount, String name)
+    {
+        for (int i = 0; i < readerCount; i++) {
+            Reader reader = new Reader();
+            Thread thread = new Thread(reader, name + "-" + i);
+            thread.setDaemon(true);
+            reader.thread = thread;
+            readers.add(reader);
+            thread.start();
+        }
+    }
+
+    // Starts relaying the process's standard output (merge stderr with redirectErrorStream(true))
+    public void register(Process process, LineHandler handler)
+    {
+        Reader reader = readers.get(Math.floorMod(nextReader.getAndIncrement(), readers.size()));
+        reader.added.add(new Source(process, handler));
+        LockSupport.unpark(reader.thread);
+    }
+
+    // Stops the reader threads. Processes still registered are not destroyed; that's up to their owners.
+    public void shutdown()
+    {
+        running = false;
+        for (Reader reader : readers) {
+            LockSupport.unpark(reader.thread);
+        }
+    }
+
+    // One process being read, with its partial line and any line the handler refused
+    private static class Source
+    {
+        private final Process process;
+        private final InputStream in;
+        private final LineHandler handler;
+        private final StringBuilder partial = new StringBuilder();
+        private String refused;
+
+        private Source(Process process, LineHandler handler)
+        {
+            this.process = process;
+            this.in = process.getInputStream();
+            this.handler = handler;
+        }
+    }
+
+    private class Reader implements Runnable
+    {
+        private final Queue<Source> added = new ConcurrentLinkedQueue<>();
+        private final List<Source> sources = new ArrayList<>();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private Thread thread; // Set before the thread starts
+
+        @Override
+        public void run()
+        {
+            while (running) {
+                Source source;
+                while ((source = added.poll()) != null) {
+                    sources.add(source);
+                }
+
+                boolean progress = false;
+                Iterator<Source> it = sources.iterator();
+                while (it.hasNext()) {
+                    Source current = it.next();
+                    try {
+                        int result = poll(current);
+                        if (result < 0) {
+                            it.remove();
+                            current.handler.closed();
+                        } else if (result > 0) {
+                            progress = true;
+                        }
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Error reading process output", e);
+                        it.remove();
+                        current.handler.closed();
+                    }
+                }
+
+                if (!progress) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+
+        // Reads whatever the process has already written. Returns the number of bytes consumed, or -1
+        // once the process has exited and all of its output has been delivered.
+        private int poll(Source source) throws IOException
+        {
+            if (source.refused != null) {
+                if (!source.handler.line(source.refused)) {
+                    return 0; // Still backed up; leave the rest in the pipe
+                }
+                source.refused = null;
+                if (!drainLines(source)) {
+                    return 0;
+                }
+            }
+
+            int available = source.in.available();
+            int count;
+            if (available > 0) {
+                count = source.in.read(buffer, 0, Math.min(available, buffer.length));
+            } else if (source.process.isAlive()) {
+                return 0;
+            } else {
+                // available() can't tell "nothing yet" from end of stream, but once the process has
+                // exited its pipe is closed and read() returns straight away
+                count = source.in.read(buffer);
+            }
+
+            if (count < 0) {
+                if (source.partial.length() > 0) {
+                    source.handler.line(source.partial.toString()); // Last line had no newline
+                }
+                return -1;
+            }
+
+            // The comms programs only print ASCII, so each byte is one character
+            source.partial.append(new String(buffer, 0, count, StandardCharsets.US_ASCII));
+            drainLines(source);
+            return count;
+        }
+
+        // Hands each complete line in the partial buffer to the handler, stopping at the first one it
+        // refuses. Returns false if a line was refused.
+        private boolean drainLines(Source source)
+        {
+            StringBuilder partial = source.partial;
+            int start = 0;
+            int newline;
+            boolean accepted = true;
+            while (accepted && (newline = partial.indexOf("\n", start)) >= 0) {
+                int end = newline > start && partial.charAt(newline - 1) == '\r' ? newline - 1 : newline;
+                String line = partial.substring(start, end);
+                start = newline + 1;
+                if (!source.handler.line(line)) {
+                    source.refused = line;
+                    accepted = false;
+                }
+            }
+            partial.delete(0, start);
+            return accepted;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// Services each plane by running the external saed_plane_service program and relaying its output.
+// The output is read by a shared ProcessOutputMultiplexer, so servicing holds no thread of its own.
+public class ProcessPlaneServiceProvider implements PlaneServiceProvider
+{
+    private final ProcessOutputMultiplexer multiplexer;
+
+    public ProcessPlaneServiceProvider(ProcessOutputMultiplexer multiplexer)
+    {
+        this.multiplexer = multiplexer;
+    }
+
+    @Override
+    public CompletableFuture<Void> service(Airport airport, Plane plane, Consumer<String> output)
+    {
+        Process serviceProcess;
+        try {
+            serviceProcess = new ProcessBuilder(
+                    CommsPrograms.command(CommsPrograms.PLANE_SERVICE),
+                    String.valueOf(airport.getId()),
+                    String.valueOf(plane.getId()))
+                    .redirectErrorStream(true)
+                    .start();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        multiplexer.register(serviceProcess, new ProcessOutputMultiplexer.LineHandler() {
+            @Override
+            public boolean line(String line)
+            {
+                output.accept(line);
+                return true;
+            }
+
+            @Override
+            public void closed()
+            {
+                done.complete(null); // The program prints its result and exits, so EOF means finished
+            }
+        });
+
+        // Ensure the process is destroyed if servicing is cancelled
+        done.whenComplete((result, error) -> {
+            if (serviceProcess.isAlive()) {
+                serviceProcess.destroy();
+            }
+        });
+        return done;
+    }
+}
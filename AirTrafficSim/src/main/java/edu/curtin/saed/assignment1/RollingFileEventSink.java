@@ -0,0 +1,165 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Writes simulation events to a text file on a background thread. accept() only offers the event to a
+// bounded queue, so callers never wait on the disk; if the writer falls behind, events are dropped
+// and counted rather than queued without limit. Once the file passes maxBytes it is rolled over to
+// path.1, path.1 to path.2 and so on, keeping at most maxFiles old files.
+public class RollingFileEventSink implements Consumer<SimulationEvent>
+{
+    private static final Logger LOGGER = Logger.getLogger(RollingFileEventSink.class.getName());
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private final Path path;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final BlockingQueue<SimulationEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writerThread;
+    private BufferedWriter writer;
+    private long bytesWritten;
+    private long droppedReported; // Only used by the writer thread
+
+    public RollingFileEventSink(Path path, long maxBytes, int maxFiles) throws IOException
+    {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        openFile();
+        writerThread = new Thread(this::writeEvents, "event-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void accept(SimulationEvent event)
+    {
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    // Writes out whatever is still queued, then closes the file
+    public void close()
+    {
+        writerThread.interrupt();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Fills one file after another until the sink is closed, each file closed as it's rolled over
+    private void writeEvents()
+    {
+        try {
+            boolean full;
+            do {
+                try (BufferedWriter current = writer) {
+                    full = fillFile(current);
+                }
+                if (full) {
+                    rollOver();
+                }
+            } while (full);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e, () -> "Error writing event log " + path + "; event logging stopped");
+        }
+    }
+
+    // Writes events to the current file until it reaches maxBytes (returns true) or the sink is
+    // closed and the queue has been written out (returns false)
+    private boolean fillFile(BufferedWriter current) throws IOException
+    {
+        while (!Thread.currentThread().isInterrupted() && bytesWritten < maxBytes) {
+            SimulationEvent event;
+            try {
+                event = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            // Write in batches, flushing only once the queue has been emptied or the file is full
+            do {
+                write(event);
+                event = bytesWritten < maxBytes ? queue.poll() : null;
+            } while (event != null);
+
+            long droppedNow = dropped.get();
+            if (droppedNow != droppedReported) {
+                writeLine(Instant.now() + " WARNING " + (droppedNow - droppedReported) + " events dropped");
+                droppedReported = droppedNow;
+            }
+            current.flush();
+        }
+        if (!Thread.currentThread().isInterrupted()) {
+            return true; // Stopped because the file is full
+        }
+
+        // Closing, so write out whatever is still queued
+        SimulationEvent event;
+        while (bytesWritten < maxBytes && (event = queue.poll()) != null) {
+            write(event);
+        }
+        return bytesWritten >= maxBytes && !queue.isEmpty();
+    }
+
+    private void write(SimulationEvent event) throws IOException
+    {
+        writeLine(Instant.ofEpochMilli(event.getTimeMillis()) + " " + event.getType() + " " + event.getText());
+    }
+
+    private void writeLine(String line) throws IOException
+    {
+        writer.write(line);
+        writer.newLine();
+        bytesWritten += line.length() + 1; // Close enough for deciding when to roll over
+    }
+
+    // Moves the closed file aside and opens a new one
+    private void rollOver() throws IOException
+    {
+        if (maxFiles > 0) {
+            Files.deleteIfExists(rolledPath(maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path older = rolledPath(i);
+                if (Files.exists(older)) {
+                    Files.move(older, rolledPath(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(path, rolledPath(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        openFile(); // Truncates the file if it wasn't moved
+    }
+
+    private Path rolledPath(int index)
+    {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    private void openFile() throws IOException
+    {
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        bytesWritten = 0;
+    }
+}
@@ -0,0 +1,64 @@
+package edu.curtin.saed.assignment1;
+
+// A flight path as a polyline from the origin to the destination, with each segment's length,
+// direction and heading worked out once, so FleetStore only has to step along it. Routes are
+// immutable and shared by every flight between the same two airports.
+public final class Route
+{
+    private final double[] x;
+    private final double[] y;
+    private final double[] length; // Per segment
+    private final double[] dirX;   // Per segment, unit vector
+    private final double[] dirY;
+    private final double[] heading; // Per segment, degrees anticlockwise from the +x axis
+    private final double totalLength;
+
+    // The points are used as they are: the first is the origin, the last the destination
+    public Route(double[] x, double[] y)
+    {
+        if (x.length < 2 || x.length != y.length) {
+            throw new IllegalArgumentException("A route needs at least two points");
+        }
+        this.x = x;
+        this.y = y;
+        int segments = x.length - 1;
+        length = new double[segments];
+        dirX = new double[segments];
+        dirY = new double[segments];
+        heading = new double[segments];
+        double total = 0.0;
+        for (int s = 0; s < segments; s++) {
+            double dx = x[s + 1] - x[s];
+            double dy = y[s + 1] - y[s];
+            length[s] = Math.sqrt(dx * dx + dy * dy);
+            if (length[s] > 0.0) {
+                dirX[s] = dx / length[s];
+                dirY[s] = dy / length[s];
+            }
+            heading[s] = Math.toDegrees(Math.atan2(dy, dx));
+            total += length[s];
+        }
+        totalLength = total;
+    }
+
+    // Straight from one point to the other
+    public static Route direct(double fromX, double fromY, double toX, double toY)
+    {
+        return new Route(new double[] {fromX, toX}, new double[] {fromY, toY});
+    }
+
+    public int getPointCount() { return x.length; }
+    public double getX(int point) { return x[point]; }
+    public double getY(int point) { return y[point]; }
+    public int getSegmentCount() { return length.length; }
+    public double getSegmentLength(int segment) { return length[segment]; }
+    public double getDirectionX(int segment) { return dirX[segment]; }
+    public double getDirectionY(int segment) { return dirY[segment]; }
+    public double getHeading(int segment) { return heading[segment]; }
+    public double getLength() { return totalLength; }
+
+    public boolean startsAt(double startX, double startY)
+    {
+        return x[0] == startX && y[0] == startY;
+    }
+}
@@ -0,0 +1,198 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Writes an append-only binary log of a run, which RunReplay can later drive a simulation from. The
+// log starts with the scenario and the settings that shape the run, followed by a record for every
+// flight request, dispatch, rejection, arrival and servicing outcome. Simulated time is only written
+// when it has moved on since the last record, as a TIME record, so most records are 9 to 17 bytes.
+//
+// Records are stamped with the simulated time of the last completed tick, which reads the same
+// between two ticks whether the record comes from a tick listener, a clock timer or another thread.
+// A request replayed by a clock timer is therefore stamped just as it was when first recorded.
+//
+// Records are appended to a direct buffer under a lock, and the buffer goes to the file channel each
+// time it fills, so recording costs a short critical section per record rather than any I/O.
+//
+// Layout, all big-endian: MAGIC, VERSION (short), seed (long), grid size (int), speed (double),
+// request rate (double), turnaround millis (long), pending requests per airport (int), overflow
+// policy ordinal (byte), landings per window (int), landing window millis (long), gates per airport
+// (int), airport count (int), then x, y and plane count (ints) per airport,
+// restricted area count (int), then x, y, width and height (ints) per area; then records, each a
+// type byte followed by its ints.
+public class RunRecorder
+{
+    private static final Logger LOGGER = Logger.getLogger(RunRecorder.class.getName());
+    /* default */ static final int MAGIC = 0x41545352; // "ATSR"
+    /* default */ static final short VERSION = 3;
+    /* default */ static final byte TIME = 0;           // Millis since the last TIME record
+    /* default */ static final byte REQUEST = 1;        // Origin, destination
+    /* default */ static final byte DISPATCH = 2;       // Plane, origin, destination
+    /* default */ static final byte ARRIVAL = 3;        // Plane, airport
+    /* default */ static final byte SERVICED = 4;       // Plane, airport, simulated millis taken
+    /* default */ static final byte SERVICE_FAILED = 5; // Plane, airport, simulated millis taken
+    /* default */ static final byte REJECTED = 6;       // Origin, destination; no plane and no room to wait
+    /* default */ static final byte DROPPED = 7;        // Origin, destination; pushed out of a full queue
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int MAX_RECORD_BYTES = 1 + 3 * Integer.BYTES;
+
+    private final Path path;
+    private final LongSupplier ticks;
+    private final FileChannel channel;
+    private final Object lock = new Object();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES); // Guarded by lock
+    private long lastMillis; // Guarded by lock
+    private long bytesWritten; // Guarded by lock
+    private boolean closed; // Guarded by lock; set once closed or writing fails, after which records are discarded
+
+    // Creates (or truncates) the log and writes its header. 'config' should already have the
+    // scenario applied, and 'ticks' gives the number of ticks the simulation has completed.
+    public RunRecorder(Path path, Scenario scenario, SimulationConfig config, LongSupplier ticks) throws IOException
+    {
+        this.path = path;
+        this.ticks = ticks;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.lastMillis = ticks.getAsLong() * SimulationEngine.TICK_MILLIS;
+
+        buffer.putInt(MAGIC).putShort(VERSION).putLong(scenario.getSeed()).putInt(scenario.getGridSize())
+                .putDouble(config.getSpeed()).putDouble(scenario.getRequestRate()).putLong(config.getTurnaroundMillis())
+                .putInt(config.getPendingRequestsPerAirport()).put((byte) config.getOverflowPolicy().ordinal())
+                .putInt(config.getLandingsPerWindow()).putLong(config.getLandingWindowMillis())
+                .putInt(config.getGatesPerAirport()).putInt(scenario.getAirportCount());
+        for (int i = 0; i < scenario.getAirportCount(); i++) {
+            if (buffer.remaining() < 3 * Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(scenario.getAirportX(i)).putInt(scenario.getAirportY(i)).putInt(scenario.getPlanes(i));
+        }
+        if (buffer.remaining() < Integer.BYTES) {
+            flush();
+        }
+        buffer.putInt(scenario.getRestrictedAreaCount());
+        for (int a = 0; a < scenario.getRestrictedAreaCount(); a++) {
+            if (buffer.remaining() < 4 * Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(scenario.getRestrictedX(a)).putInt(scenario.getRestrictedY(a))
+                    .putInt(scenario.getRestrictedWidth(a)).putInt(scenario.getRestrictedHeight(a));
+        }
+        flush();
+    }
+
+    public long getBytesWritten()
+    {
+        synchronized (lock) {
+            return bytesWritten + buffer.position();
+        }
+    }
+
+    public void request(int origin, int destination)
+    {
+        synchronized (lock) {
+            if (startRecord(REQUEST)) {
+                buffer.putInt(origin).putInt(destination);
+            }
+        }
+    }
+
+    public void dispatch(int plane, int origin, int destination)
+    {
+        synchronized (lock) {
+            if (startRecord(DISPATCH)) {
+                buffer.putInt(plane).putInt(origin).putInt(destination);
+            }
+        }
+    }
+
+    // A valid request turned away, or dropped from its queue, for want of a plane. Requests for
+    // unknown airports aren't recorded, as replaying the request rejects them again.
+    public void rejected(int origin, int destination, boolean dropped)
+    {
+        synchronized (lock) {
+            if (startRecord(dropped ? DROPPED : REJECTED)) {
+                buffer.putInt(origin).putInt(destination);
+            }
+        }
+    }
+
+    public void arrival(int plane, int airport)
+    {
+        synchronized (lock) {
+            if (startRecord(ARRIVAL)) {
+                buffer.putInt(plane).putInt(airport);
+            }
+        }
+    }
+
+    public void serviced(int plane, int airport, long millis, boolean succeeded)
+    {
+        synchronized (lock) {
+            if (startRecord(succeeded ? SERVICED : SERVICE_FAILED)) {
+                buffer.putInt(plane).putInt(airport).putInt((int) Math.min(millis, Integer.MAX_VALUE));
+            }
+        }
+    }
+
+    // Writes out anything still buffered and closes the file. Later records are ignored.
+    public void close()
+    {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                flush();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, e, () -> "Error writing run log " + path);
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, e, () -> "Error closing run log " + path);
+            }
+        }
+    }
+
+    // Makes room for a record and writes its type, preceded by a TIME record if simulated time has
+    // moved on. The time is read under the lock, so times in the log never go backwards.
+    private boolean startRecord(byte type)
+    {
+        if (closed) {
+            return false;
+        }
+        if (buffer.remaining() < 2 * MAX_RECORD_BYTES) {
+            try {
+                flush();
+            } catch (IOException e) {
+                closed = true;
+                LOGGER.log(Level.SEVERE, e, () -> "Error writing run log " + path + "; recording stopped");
+                return false;
+            }
+        }
+        long now = ticks.getAsLong() * SimulationEngine.TICK_MILLIS;
+        if (now != lastMillis) {
+            buffer.put(TIME).putInt((int) Math.min(now - lastMillis, Integer.MAX_VALUE));
+            lastMillis = now;
+        }
+        buffer.put(type);
+        return true;
+    }
+
+    private void flush() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,438 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+// A run log written by RunRecorder, memory-mapped for replaying. The log's flight requests are
+// submitted at the simulated times they were recorded at, but the simulation doesn't choose planes
+// for them: each plane is dispatched, and each request turned away, on the tick and in the order
+// the log says. Planes take the recorded servicing times, so flights, arrivals and servicing follow
+// the recorded run however its requests and servicing came about, at any time scale.
+//
+// If the replay can't keep to the log, because a plane is still busy on the tick the log dispatches
+// it or lands more often than the log has servicing for, it has diverged. That is logged, and
+// getDivergence() says where; requests stop being replayed from then on.
+public class RunReplay
+{
+    private static final Logger LOGGER = Logger.getLogger(RunReplay.class.getName());
+    private static final int TYPES = RunRecorder.DROPPED + 1;
+
+    private final Path path;
+    private final MappedByteBuffer log;
+    private final int recordsStart;
+    private final Scenario scenario;
+    private final long turnaroundMillis;
+    private final int pendingRequestsPerAirport;
+    private final PendingRequestQueue.OverflowPolicy overflowPolicy;
+    private final int landingsPerWindow;
+    private final long landingWindowMillis;
+    private final int gatesPerAirport;
+    private final double speed;
+    private final long[] recordCounts = new long[TYPES];
+    private long durationMillis;
+
+    // Each plane's recorded servicing times, in order: serviceTimes[serviceStart[p]..serviceStart[p + 1]]
+    // for plane p, with failed servicing stored as -1 - millis
+    private int[] serviceStart;
+    private int[] serviceTimes;
+    private int[] arrivals; // Per plane; servicing beyond the recorded outcomes was still going at the end
+    private final Object lock = new Object();
+    private volatile String divergence; // Null until the replay stops matching the log; set under lock
+
+    private RunReplay(Path path, MappedByteBuffer log)
+    {
+        this.path = path;
+        this.log = log;
+        if (log.getInt() != RunRecorder.MAGIC) {
+            throw new IllegalArgumentException(path + " is not a run log");
+        }
+        short version = log.getShort();
+        if (version != RunRecorder.VERSION) {
+            throw new IllegalArgumentException(path + " is a version " + version + " run log; expected version "
+                    + RunRecorder.VERSION);
+        }
+        long seed = log.getLong();
+        int gridSize = log.getInt();
+        speed = log.getDouble();
+        double requestRate = log.getDouble();
+        turnaroundMillis = log.getLong();
+        pendingRequestsPerAirport = log.getInt();
+        int policy = log.get();
+        PendingRequestQueue.OverflowPolicy[] policies = PendingRequestQueue.OverflowPolicy.values();
+        if (policy < 0 || policy >= policies.length) {
+            throw new IllegalArgumentException(path + ": unknown overflow policy " + policy);
+        }
+        overflowPolicy = policies[policy];
+        landingsPerWindow = log.getInt();
+        landingWindowMillis = log.getLong();
+        gatesPerAirport = log.getInt();
+        int airportCount = log.getInt();
+        if (airportCount < 0 || (long) airportCount * 3 * Integer.BYTES > log.remaining()) {
+            throw new IllegalArgumentException(path + ": bad airport count " + airportCount);
+        }
+        int[] x = new int[airportCount];
+        int[] y = new int[airportCount];
+        int[] planes = new int[airportCount];
+        for (int i = 0; i < airportCount; i++) {
+            x[i] = log.getInt();
+            y[i] = log.getInt();
+            planes[i] = log.getInt();
+        }
+        int areaCount = log.getInt();
+        if (areaCount < 0 || (long) areaCount * 4 * Integer.BYTES > log.remaining()) {
+            throw new IllegalArgumentException(path + ": bad restricted area count " + areaCount);
+        }
+        int[] restricted = new int[areaCount * 4];
+        for (int i = 0; i < restricted.length; i++) {
+            restricted[i] = log.getInt();
+        }
+        scenario = new Scenario(gridSize, seed, speed, requestRate, airportCount, x, y, planes, restricted);
+        recordsStart = log.position();
+        indexRecords();
+    }
+
+    // Maps and checks the log, and indexes its servicing times. Throws IllegalArgumentException if
+    // the file isn't a readable run log.
+    public static RunReplay load(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to replay (over 2 GB)");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new RunReplay(path, log);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException(path + " is truncated", e);
+        }
+    }
+
+    public Scenario getScenario()
+    {
+        return scenario;
+    }
+
+    // Sets up the config as it was for the recorded run, apart from the time scale and thread counts,
+    // and for dispatching as the log says
+    public void applyTo(SimulationConfig config)
+    {
+        scenario.applyTo(config);
+        config.setReplaying(true);
+        config.setSpeed(speed);
+        config.setTurnaroundMillis(turnaroundMillis);
+        config.setPendingRequestsPerAirport(pendingRequestsPerAirport);
+        config.setOverflowPolicy(overflowPolicy);
+        config.setLandingsPerWindow(landingsPerWindow);
+        config.setLandingWindowMillis(landingWindowMillis);
+        config.setGatesPerAirport(gatesPerAirport);
+    }
+
+    // Simulated time from the start of the log to its last record, the end of the tick it was made in
+    public long getDurationMillis()
+    {
+        return durationMillis;
+    }
+
+    public long getRequestCount() { return recordCounts[RunRecorder.REQUEST]; }
+    public long getDispatchCount() { return recordCounts[RunRecorder.DISPATCH]; }
+    public long getArrivalCount() { return recordCounts[RunRecorder.ARRIVAL]; }
+    public long getServicedCount() { return recordCounts[RunRecorder.SERVICED]; }
+    public long getServiceFailedCount() { return recordCounts[RunRecorder.SERVICE_FAILED]; }
+    public long getRejectedCount() { return recordCounts[RunRecorder.REJECTED] + recordCounts[RunRecorder.DROPPED]; }
+
+    // Where the replay first failed to keep to the log, or null if it hasn't
+    public String getDivergence()
+    {
+        return divergence;
+    }
+
+    // Services each plane for its next recorded servicing time, on the clock, or at once for servicing
+    // that took no time at all, as a timer would only fire after the next tick. Servicing the log has
+    // no outcome for was still going when the recording stopped, so it never finishes; a plane asking
+    // for more servicing than it landed for in the log means the replay has diverged.
+    public PlaneServiceProvider createServiceProvider(SimulationClock clock)
+    {
+        int[] next = new int[serviceStart.length - 1]; // Each plane's servicing is one at a time, so no races
+        return (airport, plane, output) -> {
+            int id = plane.getId();
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            if (serviceStart[id] + next[id] >= serviceStart[id + 1]) {
+                if (next[id] >= arrivals[id]) {
+                    diverged(String.format("plane %d landed at %.3f s for servicing the log doesn't have", id,
+                            clock.millis() / 1000.0));
+                }
+                next[id]++;
+                return done; // Until cancelled by a stop
+            }
+            int recorded = serviceTimes[serviceStart[id] + next[id]];
+            next[id]++;
+            long millis = recorded >= 0 ? recorded : -1 - recorded;
+            if (millis == 0) {
+                return recorded >= 0 ? CompletableFuture.completedFuture(null) : CompletableFuture.failedFuture(failed());
+            }
+            SimulationClock.Timer timer = clock.schedule(millis, id, () -> {
+                if (recorded >= 0) {
+                    done.complete(null);
+                } else {
+                    done.completeExceptionally(failed());
+                }
+            });
+            done.whenComplete((result, error) -> timer.cancel()); // No-op unless servicing was cancelled
+            return done;
+        };
+    }
+
+    private static IllegalStateException failed()
+    {
+        return new IllegalStateException("Servicing failed in the recorded run");
+    }
+
+    // Submits the recorded flight requests, dispatches and rejections at their recorded times,
+    // measured from when start() is called, so start it just before the simulation, which must have
+    // been set up by applyTo(). Only one timer is pending at a time: each reads on through the log,
+    // replaying every record now due, and schedules the next for when the following record is due.
+    public FlightRequestSource createRequestSource(AirTrafficSimulation simulation)
+    {
+        return new ReplayedRequests(simulation, log.duplicate().position(recordsStart));
+    }
+
+    // Prints the record counts of a log, e.g. to compare a replay's own recording with the original
+    public void describe(Consumer<String> out)
+    {
+        out.accept(String.format("%s: %.1f s simulated, %d requests, %d rejected, %d dispatches, %d arrivals,"
+                + " %d serviced, %d failed", path, durationMillis / 1000.0, getRequestCount(), getRejectedCount(),
+                getDispatchCount(), getArrivalCount(), getServicedCount(), getServiceFailedCount()));
+    }
+
+    // Counts records, finds the log's duration and gathers each plane's servicing times, in two passes.
+    // Throws IllegalArgumentException for a dispatch the simulation couldn't make.
+    private void indexRecords()
+    {
+        int planeCount = scenario.getPlaneCount();
+        serviceStart = new int[planeCount + 1];
+        arrivals = new int[planeCount];
+        forEachRecord(log.duplicate().position(recordsStart), (type, reader) -> {
+            recordCounts[type]++;
+            if (type == RunRecorder.DISPATCH) {
+                checkDispatch(reader.getInt(0), reader.getInt(1), reader.getInt(2));
+            } else if (type == RunRecorder.ARRIVAL) {
+                int plane = reader.getInt(0);
+                if (plane >= 0 && plane < planeCount) {
+                    arrivals[plane]++;
+                }
+            } else if (type == RunRecorder.SERVICED || type == RunRecorder.SERVICE_FAILED) {
+                int plane = reader.getInt(0);
+                if (plane >= 0 && plane < planeCount) {
+                    serviceStart[plane + 1]++;
+                }
+            }
+        });
+        for (int p = 0; p < planeCount; p++) {
+            serviceStart[p + 1] += serviceStart[p];
+        }
+        serviceTimes = new int[serviceStart[planeCount]];
+        int[] fill = serviceStart.clone();
+        durationMillis = forEachRecord(log.duplicate().position(recordsStart), (type, reader) -> {
+            if (type == RunRecorder.SERVICED || type == RunRecorder.SERVICE_FAILED) {
+                int plane = reader.getInt(0);
+                if (plane >= 0 && plane < planeCount) {
+                    int millis = reader.getInt(2);
+                    serviceTimes[fill[plane]++] = type == RunRecorder.SERVICED ? millis : -1 - millis;
+                }
+            }
+        });
+    }
+
+    private void checkDispatch(int plane, int origin, int destination)
+    {
+        int airportCount = scenario.getAirportCount();
+        if (plane < 0 || plane >= scenario.getPlaneCount() || origin < 0 || origin >= airportCount
+                || destination < 0 || destination >= airportCount) {
+            throw new IllegalArgumentException(path + ": bad dispatch of plane " + plane + " from " + origin + " to "
+                    + destination);
+        }
+    }
+
+    private void diverged(String message)
+    {
+        synchronized (lock) {
+            if (divergence == null) {
+                divergence = message;
+                LOGGER.severe(() -> "Replay of " + path + " diverged from the log: " + message);
+            }
+        }
+    }
+
+    // Calls the visitor for every record but TIME records, and returns the time of the last one
+    private long forEachRecord(ByteBuffer records, RecordVisitor visitor)
+    {
+        RecordReader reader = new RecordReader(records);
+        long millis = 0;
+        while (records.hasRemaining()) {
+            byte type = records.get();
+            if (type == RunRecorder.TIME) {
+                millis += records.getInt();
+                continue;
+            }
+            reader.start(type);
+            visitor.record(type, reader);
+            reader.skip();
+        }
+        return millis;
+    }
+
+    private static int fieldCount(byte type, Path path)
+    {
+        switch (type) {
+            case RunRecorder.REQUEST:
+            case RunRecorder.ARRIVAL:
+            case RunRecorder.REJECTED:
+            case RunRecorder.DROPPED:
+                return 2;
+            case RunRecorder.DISPATCH:
+            case RunRecorder.SERVICED:
+            case RunRecorder.SERVICE_FAILED:
+                return 3;
+            default:
+                throw new IllegalArgumentException(path + ": unknown record type " + type);
+        }
+    }
+
+    private interface RecordVisitor
+    {
+        void record(byte type, RecordReader reader);
+    }
+
+    // The ints of the record the buffer is positioned at, read without moving past them
+    private final class RecordReader
+    {
+        private final ByteBuffer records;
+        private int fields;
+
+        private RecordReader(ByteBuffer records)
+        {
+            this.records = records;
+        }
+
+        private void start(byte type)
+        {
+            fields = fieldCount(type, path);
+            if (records.remaining() < fields * Integer.BYTES) {
+                throw new IllegalArgumentException(path + " is truncated");
+            }
+        }
+
+        private int getInt(int field)
+        {
+            return records.getInt(records.position() + field * Integer.BYTES);
+        }
+
+        private void skip()
+        {
+            records.position(records.position() + fields * Integer.BYTES);
+        }
+    }
+
+    private final class ReplayedRequests implements FlightRequestSource
+    {
+        private final AirTrafficSimulation simulation;
+        private final ByteBuffer records; // Only read by the engine thread once started
+        private final RecordReader reader;
+        private volatile int generation; // Timers from before the last stop() see a different value and lapse
+        private boolean running;
+        private long logMillis; // Time of the record 'records' is positioned at
+        private long startMillis; // Clock time the log's time zero corresponds to
+
+        private ReplayedRequests(AirTrafficSimulation simulation, ByteBuffer records)
+        {
+            this.simulation = simulation;
+            this.records = records;
+            this.reader = new RecordReader(records);
+        }
+
+        @Override
+        public void start()
+        {
+            if (running) {
+                return;
+            }
+            running = true;
+            int current = generation;
+            records.position(recordsStart);
+            logMillis = 0;
+            startMillis = simulation.getClock().millis();
+            simulation.getClock().schedule(0, () -> replayDue(current));
+        }
+
+        @Override
+        public void stop()
+        {
+            if (running) {
+                running = false;
+                generation++;
+            }
+        }
+
+        private void replayDue(int current)
+        {
+            if (generation != current || divergence != null) {
+                return;
+            }
+            long now = simulation.getClock().millis() - startMillis;
+            while (records.hasRemaining()) {
+                byte type = records.get(records.position());
+                if (type == RunRecorder.TIME) {
+                    int delta = records.getInt(records.position() + 1);
+                    if (logMillis + delta > now) {
+                        simulation.getClock().schedule(logMillis + delta - now, () -> replayDue(current));
+                        break;
+                    }
+                    logMillis += delta;
+                    records.position(records.position() + 1 + Integer.BYTES);
+                    continue;
+                }
+                records.get();
+                reader.start(type);
+                replay(type);
+                reader.skip();
+            }
+
+            // The planes the log dispatched have to be free before the next tick, to take off on it
+            if (simulation.getOwedDispatches() > 0) {
+                long dispatchedMillis = logMillis;
+                simulation.getClock().schedule(0, () -> {
+                    if (generation == current && simulation.getOwedDispatches() > 0) {
+                        diverged(String.format("%d planes the log dispatched at %.3f s were still busy",
+                                simulation.getOwedDispatches(), dispatchedMillis / 1000.0));
+                    }
+                });
+            }
+        }
+
+        private void replay(byte type)
+        {
+            switch (type) {
+                case RunRecorder.REQUEST:
+                    simulation.submitFlightRequest(reader.getInt(0), reader.getInt(1));
+                    break;
+                case RunRecorder.DISPATCH:
+                    simulation.dispatchReplayed(reader.getInt(0), reader.getInt(1), reader.getInt(2));
+                    break;
+                case RunRecorder.REJECTED:
+                case RunRecorder.DROPPED:
+                    simulation.rejectReplayed(reader.getInt(0), reader.getInt(1), type == RunRecorder.DROPPED);
+                    break;
+                default:
+                    break; // Arrivals and servicing follow from the dispatches and servicing times
+            }
+        }
+    }
+}
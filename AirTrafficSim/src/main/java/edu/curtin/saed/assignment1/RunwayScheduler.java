@@ -0,0 +1,211 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Landing slots at every airport: each airport lands at most landingsPerWindow planes in each window
+// of simulated time, with windows starting at every multiple of windowMillis. A flight that reaches
+// an airport with no slot left joins the airport's holding stack, and planes leave the stack, the
+// longest held first, as later windows open.
+//
+// Windows open at the same moment at every airport, so between two window starts nothing holding
+// can land, and the engine has no work to do for them. When a window opens, only the airports with
+// planes holding are visited, however many airports there are.
+//
+// Used from the engine thread only, apart from getHoldingCount().
+public class RunwayScheduler
+{
+    // Receives each flight holding, for snapshots
+    public interface HoldingVisitor
+    {
+        void holding(PlaneMovement movement, long sinceMillis);
+    }
+
+    private final int landingsPerWindow;
+    private final long windowMillis;
+    private final long[] window;      // Per airport, the window its landing count is for
+    private final int[] landings;     // Per airport
+    private final List<Queue<Holding>> stacks; // Per airport, made when a plane first holds there
+    private int[] holdingAirports = new int[16]; // Airports with planes holding, in the order they started to
+    private int holdingAirportCount;
+    private long lastWindow = -1; // The last window the stacks were let land in
+    private final AtomicInteger holdingCount = new AtomicInteger();
+    private final AirportWaitStats waits;
+    private final LongAdder held;
+    private final LatencyHistogram holdingTime;
+
+    // Waits are added to 'waits', and the totals to 'metrics'
+    public RunwayScheduler(int airportCount, int landingsPerWindow, long windowMillis, AirportWaitStats waits,
+                           MetricsRegistry metrics)
+    {
+        if (landingsPerWindow < 1 || windowMillis < 1) {
+            throw new IllegalArgumentException("Runways need at least one landing in a window of at least 1 ms");
+        }
+        this.landingsPerWindow = landingsPerWindow;
+        this.windowMillis = windowMillis;
+        this.window = new long[airportCount];
+        this.landings = new int[airportCount];
+        this.stacks = new ArrayList<>(Collections.nCopies(airportCount, null));
+        Arrays.fill(window, -1);
+        this.waits = waits;
+        held = metrics.counter("runway.held");
+        holdingTime = metrics.histogram("runway.holding-wait"); // Simulated time, held to landed
+        metrics.gauge("runway.holding", holdingCount::get);
+    }
+
+    // Planes holding at all airports
+    public int getHoldingCount()
+    {
+        return holdingCount.get();
+    }
+
+    // Takes a landing slot for a flight that has reached its destination, returning true, or else puts
+    // it in the holding stack there and returns false. Planes never land ahead of ones already holding.
+    public boolean land(PlaneMovement movement, long nowMillis)
+    {
+        int airport = movement.getDestination().getId();
+        Queue<Holding> stack = stacks.get(airport);
+        if ((stack == null || stack.isEmpty()) && takeSlot(airport, nowMillis)) {
+            return true;
+        }
+        hold(movement, nowMillis);
+        held.increment();
+        return false;
+    }
+
+    // Puts a flight back in the hold, as a snapshot caught it. Call before the engine starts.
+    /* default */ void restoreHolding(PlaneMovement movement, long sinceMillis)
+    {
+        hold(movement, sinceMillis);
+    }
+
+    // Planes landed at the airport in the window under way at 'nowMillis'
+    /* default */ int getLandings(int airport, long nowMillis)
+    {
+        return window[airport] == nowMillis / windowMillis ? landings[airport] : 0;
+    }
+
+    // Sets the airport's landings in the window under way at 'nowMillis', as a snapshot caught them.
+    // Call before the engine starts.
+    /* default */ void restoreLandings(int airport, long nowMillis, int count)
+    {
+        window[airport] = nowMillis / windowMillis;
+        landings[airport] = count;
+    }
+
+    /* default */ long getLastWindow() { return lastWindow; }
+    /* default */ void setLastWindow(long window) { lastWindow = window; }
+
+    private void hold(PlaneMovement movement, long sinceMillis)
+    {
+        int airport = movement.getDestination().getId();
+        Queue<Holding> stack = stacks.get(airport);
+        if (stack == null) {
+            stack = new PriorityQueue<>();
+            stacks.set(airport, stack);
+        }
+        if (stack.isEmpty()) {
+            if (holdingAirportCount == holdingAirports.length) {
+                holdingAirports = Arrays.copyOf(holdingAirports, holdingAirportCount * 2);
+            }
+            holdingAirports[holdingAirportCount++] = airport;
+        }
+        stack.add(new Holding(movement, sinceMillis));
+        holdingCount.incrementAndGet();
+    }
+
+    // Once a new window has opened, lands as many planes from each holding stack as it has slots for,
+    // adding their movements to 'landed'. Does nothing until then.
+    public void landHolding(long nowMillis, List<PlaneMovement> landed)
+    {
+        long current = nowMillis / windowMillis;
+        if (current == lastWindow) {
+            return;
+        }
+        lastWindow = current;
+        int kept = 0;
+        for (int i = 0; i < holdingAirportCount; i++) {
+            int airport = holdingAirports[i];
+            Queue<Holding> stack = stacks.get(airport);
+            while (!stack.isEmpty() && takeSlot(airport, nowMillis)) {
+                Holding holding = stack.poll();
+                long waited = nowMillis - holding.sinceMillis;
+                waits.record(airport, waited);
+                holdingTime.record(waited * 1_000_000L);
+                holdingCount.decrementAndGet();
+                landed.add(holding.movement);
+            }
+            if (!stack.isEmpty()) {
+                holdingAirports[kept++] = airport;
+            }
+        }
+        holdingAirportCount = kept;
+    }
+
+    // Calls 'visitor' with each holding flight, airport by airport. Only between ticks.
+    public void forEachHolding(HoldingVisitor visitor)
+    {
+        for (int i = 0; i < holdingAirportCount; i++) {
+            for (Holding holding : stacks.get(holdingAirports[i])) {
+                visitor.holding(holding.movement, holding.sinceMillis);
+            }
+        }
+    }
+
+    // Empties every holding stack into 'into', and forgets the landings so far
+    public void clear(List<PlaneMovement> into)
+    {
+        for (int i = 0; i < holdingAirportCount; i++) {
+            Queue<Holding> stack = stacks.get(holdingAirports[i]);
+            for (Holding holding : stack) {
+                into.add(holding.movement);
+            }
+            stack.clear();
+        }
+        holdingAirportCount = 0;
+        holdingCount.set(0);
+        Arrays.fill(window, -1);
+        lastWindow = -1;
+    }
+
+    private boolean takeSlot(int airport, long nowMillis)
+    {
+        long current = nowMillis / windowMillis;
+        if (window[airport] != current) {
+            window[airport] = current;
+            landings[airport] = 0;
+        }
+        if (landings[airport] == landingsPerWindow) {
+            return false;
+        }
+        landings[airport]++;
+        return true;
+    }
+
+    // A flight waiting to land, ordered by when it started holding, then by plane, so the order
+    // doesn't depend on the order flights reach the stack in a tick
+    private static final class Holding implements Comparable<Holding>
+    {
+        private final PlaneMovement movement;
+        private final long sinceMillis;
+
+        private Holding(PlaneMovement movement, long sinceMillis)
+        {
+            this.movement = movement;
+            this.sinceMillis = sinceMillis;
+        }
+
+        @Override
+        public int compareTo(Holding other)
+        {
+            int bySince = Long.compare(sinceMillis, other.sinceMillis);
+            return bySince == 0 ? Integer.compare(movement.getPlane().getId(), other.movement.getPlane().getId()) : bySince;
+        }
+    }
+}
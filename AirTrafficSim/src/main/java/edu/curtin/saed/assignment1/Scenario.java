@@ -0,0 +1,127 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+// The layout a simulation starts from: the grid, where each airport is and how many planes it has,
+// plus optional overrides for plane speed and flight request rate, and any restricted areas planes
+// must route around. Airports are kept as primitive arrays, so even very large scenarios cost a few
+// bytes per airport until the simulation is built.
+// Load one with ScenarioLoader, or use random() for the original randomly placed layout.
+public class Scenario
+{
+    public static final int MAX_GRID_SIZE = 46_340; // So that every cell has an int index
+
+    private final int gridSize;
+    private final long seed;
+    private final double speed;
+    private final double requestRate;
+    private final int airportCount;
+    private final int[] airportX;
+    private final int[] airportY;
+    private final int[] planes;
+    private final int planeCount;
+    private final int[] restricted; // x, y, width, height of each restricted area, in cells
+
+    // The arrays are used as they are, and may be longer than airportCount
+    /* default */ Scenario(int gridSize, long seed, double speed, double requestRate,
+                           int airportCount, int[] airportX, int[] airportY, int[] planes)
+    {
+        this(gridSize, seed, speed, requestRate, airportCount, airportX, airportY, planes, new int[0]);
+    }
+
+    // As above, with 'restricted' holding four ints per restricted area: x, y, width, height
+    /* default */ Scenario(int gridSize, long seed, double speed, double requestRate,
+                           int airportCount, int[] airportX, int[] airportY, int[] planes, int[] restricted)
+    {
+        this.gridSize = gridSize;
+        this.seed = seed;
+        this.speed = speed;
+        this.requestRate = requestRate;
+        this.airportCount = airportCount;
+        this.airportX = airportX;
+        this.airportY = airportY;
+        this.planes = planes;
+        this.restricted = restricted;
+        long total = 0;
+        for (int i = 0; i < airportCount; i++) {
+            total += planes[i];
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many planes: " + total);
+        }
+        this.planeCount = (int) total;
+    }
+
+    // 'airports' airports in distinct random cells of a gridSize x gridSize grid, each with the same
+    // number of planes, using the seed for placement
+    public static Scenario random(int gridSize, int airports, int planesPerAirport, long seed)
+    {
+        int[] x = new int[airports];
+        int[] y = new int[airports];
+        int[] planes = new int[airports];
+        placeRandomly(gridSize, new Random(seed), new BitSet(), x, y, 0, airports);
+        Arrays.fill(planes, planesPerAirport);
+        return new Scenario(gridSize, seed, 0.0, 0.0, airports, x, y, planes);
+    }
+
+    // The original layout, from the grid size and fleet sizes in the config
+    public static Scenario random(SimulationConfig config, long seed)
+    {
+        return random(config.getGridSize(), config.getAirports(), config.getPlanesPerAirport(), seed);
+    }
+
+    // Fills x[from..to-1] and y[from..to-1] with random cells not already marked in 'occupied',
+    // marking each one as it goes
+    /* default */ static void placeRandomly(int gridSize, Random rand, BitSet occupied, int[] x, int[] y, int from, int to)
+    {
+        if (gridSize < 1 || gridSize > MAX_GRID_SIZE) {
+            throw new IllegalArgumentException("Grid size must be 1.." + MAX_GRID_SIZE);
+        }
+        long cells = (long) gridSize * gridSize;
+        if (occupied.cardinality() + (long) (to - from) > cells) {
+            throw new IllegalArgumentException("Cannot fit " + to + " airports on a " + gridSize + " x " + gridSize + " grid");
+        }
+        for (int i = from; i < to; i++) {
+            int cell;
+            do {
+                cell = rand.nextInt((int) cells);
+            } while (occupied.get(cell));
+            occupied.set(cell);
+            x[i] = cell % gridSize;
+            y[i] = cell / gridSize;
+        }
+    }
+
+    // Copies the grid size, airport count and any speed override into the config
+    public void applyTo(SimulationConfig config)
+    {
+        config.setGridSize(gridSize);
+        config.setAirports(airportCount);
+        if (speed > 0.0) {
+            config.setSpeed(speed);
+        }
+    }
+
+    public int getGridSize() { return gridSize; }
+    public long getSeed() { return seed; }
+    public int getAirportCount() { return airportCount; }
+    public int getAirportX(int airport) { return airportX[airport]; }
+    public int getAirportY(int airport) { return airportY[airport]; }
+    public int getPlanes(int airport) { return planes[airport]; }
+    public int getPlaneCount() { return planeCount; }
+
+    // Rectangles of cells no flight may cross, from their top-left cell
+    public int getRestrictedAreaCount() { return restricted.length / 4; }
+    public int getRestrictedX(int area) { return restricted[area * 4]; }
+    public int getRestrictedY(int area) { return restricted[area * 4 + 1]; }
+    public int getRestrictedWidth(int area) { return restricted[area * 4 + 2]; }
+    public int getRestrictedHeight(int area) { return restricted[area * 4 + 3]; }
+
+    // Plane speed in the same units as SimulationConfig's, or 0 if the scenario leaves it to the config
+    public double getSpeed() { return speed; }
+
+    // Mean flight requests per airport per second, or 0 if the scenario leaves it to the request source
+    public double getRequestRate() { return requestRate; }
+}
@@ -0,0 +1,276 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+// Reads a scenario file one line at a time, so only the airport table is ever held in memory. Each
+// line is a keyword and its values, separated by spaces; blank lines and anything after '#' are
+// ignored:
+//
+//   grid SIZE                 Grid is SIZE x SIZE (default 10); must come before any airport or
+//                             restricted line
+//   seed N                    Seed for random placement and request generation (default: random)
+//   speed S                   Plane speed, as in SimulationConfig
+//   request-rate R            Mean flight requests per airport per second
+//   planes-per-airport N      Planes at airports that don't give their own count (default 10)
+//   airport X Y [PLANES]      An airport in cell (X, Y), optionally with its own plane count
+//   random-airports N         N more airports in random free cells, placed after the whole file is read
+//   restricted X Y W H        W x H cells from (X, Y) that flights must route around
+//
+// Every airport must be in its own cell, outside every restricted area.
+public final class ScenarioLoader
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_TOKENS = 5;
+
+    private int gridSize = 10;
+    private long seed = new Random().nextLong();
+    private double speed;
+    private double requestRate;
+    private int planesPerAirport = 10;
+    private int randomAirports;
+    private int airportCount;
+    private int[] airportX = new int[64];
+    private int[] airportY = new int[64];
+    private int[] planes = new int[64];
+    private int[] explicitPlanes = new int[64]; // -1 where the airport takes planes-per-airport
+    private int[] restricted = new int[0]; // x, y, width, height per area
+    private final BitSet occupied = new BitSet();
+    private final String[] tokens = new String[MAX_TOKENS + 1];
+    private String source;
+    private int lineNumber;
+
+    private ScenarioLoader()
+    {
+    }
+
+    public static Scenario load(Path path) throws IOException
+    {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            return load(reader, path.toString());
+        }
+    }
+
+    // 'source' names the input in error messages
+    public static Scenario load(BufferedReader reader, String source) throws IOException
+    {
+        ScenarioLoader loader = new ScenarioLoader();
+        loader.source = source;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            loader.lineNumber++;
+            loader.parseLine(line);
+        }
+        return loader.build();
+    }
+
+    private void parseLine(String line)
+    {
+        int count = tokenize(line);
+        if (count == 0) {
+            return;
+        }
+        String keyword = tokens[0];
+        switch (keyword) {
+            case "grid":
+                expectValues(count, 1, 1);
+                if (airportCount > 0 || restricted.length > 0) {
+                    throw error("grid must come before the first airport or restricted area");
+                }
+                gridSize = parseInt(tokens[1], 1, Scenario.MAX_GRID_SIZE);
+                break;
+            case "seed":
+                expectValues(count, 1, 1);
+                seed = parseLong(tokens[1]);
+                break;
+            case "speed":
+                expectValues(count, 1, 1);
+                speed = parsePositiveDouble(tokens[1]);
+                break;
+            case "request-rate":
+                expectValues(count, 1, 1);
+                requestRate = parsePositiveDouble(tokens[1]);
+                break;
+            case "planes-per-airport":
+                expectValues(count, 1, 1);
+                planesPerAirport = parseInt(tokens[1], 0, Integer.MAX_VALUE);
+                break;
+            case "airport":
+                expectValues(count, 2, 3);
+                addAirport(parseInt(tokens[1], 0, gridSize - 1), parseInt(tokens[2], 0, gridSize - 1),
+                        count > 3 ? parseInt(tokens[3], 0, Integer.MAX_VALUE) : -1);
+                break;
+            case "restricted":
+                expectValues(count, 4, 4);
+                addRestrictedArea();
+                break;
+            case "random-airports":
+                expectValues(count, 1, 1);
+                randomAirports = parseInt(tokens[1], 0, Integer.MAX_VALUE);
+                break;
+            default:
+                throw error("unknown keyword '" + keyword + "'");
+        }
+    }
+
+    // Splits the line (up to any '#') at spaces and tabs into 'tokens', returning how many there
+    // were. One more than MAX_TOKENS is kept, so that too many values can be reported.
+    private int tokenize(String line)
+    {
+        int end = line.indexOf('#');
+        if (end < 0) {
+            end = line.length();
+        }
+        int count = 0;
+        int i = 0;
+        while (i < end && count < tokens.length) {
+            while (i < end && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < end && !Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                tokens[count++] = line.substring(start, i);
+            }
+        }
+        return count;
+    }
+
+    private void addAirport(int x, int y, int planeCount)
+    {
+        int cell = y * gridSize + x;
+        if (occupied.get(cell)) {
+            throw error("there is already an airport at (" + x + ", " + y + ")");
+        }
+        occupied.set(cell);
+        ensureCapacity(airportCount + 1);
+        airportX[airportCount] = x;
+        airportY[airportCount] = y;
+        explicitPlanes[airportCount] = planeCount;
+        airportCount++;
+    }
+
+    // From the 'restricted' line's tokens; the area must fit on the grid
+    private void addRestrictedArea()
+    {
+        int x = parseInt(tokens[1], 0, gridSize - 1);
+        int y = parseInt(tokens[2], 0, gridSize - 1);
+        int width = parseInt(tokens[3], 1, gridSize - x);
+        int height = parseInt(tokens[4], 1, gridSize - y);
+        restricted = Arrays.copyOf(restricted, restricted.length + 4); // Areas are few, so no need to grow in steps
+        restricted[restricted.length - 4] = x;
+        restricted[restricted.length - 3] = y;
+        restricted[restricted.length - 2] = width;
+        restricted[restricted.length - 1] = height;
+    }
+
+    private Scenario build()
+    {
+        // Airports from the file can't be in restricted areas, and random ones won't be put in them
+        for (int area = 0; area < restricted.length; area += 4) {
+            int left = restricted[area];
+            int top = restricted[area + 1];
+            int width = restricted[area + 2];
+            int height = restricted[area + 3];
+            for (int i = 0; i < airportCount; i++) {
+                if (airportX[i] >= left && airportX[i] < left + width && airportY[i] >= top && airportY[i] < top + height) {
+                    throw new IllegalArgumentException(source + ": the airport at (" + airportX[i] + ", " + airportY[i]
+                            + ") is in a restricted area");
+                }
+            }
+            for (int row = top; row < top + height; row++) {
+                occupied.set(row * gridSize + left, row * gridSize + left + width);
+            }
+        }
+        if (randomAirports > 0) {
+            ensureCapacity(airportCount + randomAirports);
+            Scenario.placeRandomly(gridSize, new Random(seed), occupied, airportX, airportY,
+                    airportCount, airportCount + randomAirports);
+            Arrays.fill(explicitPlanes, airportCount, airportCount + randomAirports, -1);
+            airportCount += randomAirports;
+        }
+        if (airportCount < 2) {
+            throw new IllegalArgumentException(source + ": a scenario needs at least 2 airports");
+        }
+        // planes-per-airport can come anywhere in the file, so defaults are filled in at the end
+        for (int i = 0; i < airportCount; i++) {
+            planes[i] = explicitPlanes[i] >= 0 ? explicitPlanes[i] : planesPerAirport;
+        }
+        return new Scenario(gridSize, seed, speed, requestRate, airportCount, airportX, airportY, planes, restricted);
+    }
+
+    private void ensureCapacity(int needed)
+    {
+        if (needed > airportX.length) {
+            int capacity = Math.max(needed, airportX.length * 2);
+            airportX = Arrays.copyOf(airportX, capacity);
+            airportY = Arrays.copyOf(airportY, capacity);
+            planes = Arrays.copyOf(planes, capacity);
+            explicitPlanes = Arrays.copyOf(explicitPlanes, capacity);
+        }
+    }
+
+    private void expectValues(int tokenCount, int min, int max)
+    {
+        int values = tokenCount - 1;
+        if (values < min || values > max) {
+            throw error(tokens[0] + " takes " + (min == max ? String.valueOf(min) : min + " to " + max)
+                    + (max == 1 ? " value" : " values"));
+        }
+    }
+
+    private int parseInt(String text, int min, int max)
+    {
+        try {
+            int value = Integer.parseInt(text);
+            if (value < min || value > max) {
+                throw error(text + " is outside " + min + ".." + max);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw error("'" + text + "' is not a whole number", e);
+        }
+    }
+
+    private long parseLong(String text)
+    {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw error("'" + text + "' is not a whole number", e);
+        }
+    }
+
+    private double parsePositiveDouble(String text)
+    {
+        try {
+            double value = Double.parseDouble(text);
+            if (!(value > 0.0) || Double.isInfinite(value)) {
+                throw error(text + " must be a positive number");
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw error("'" + text + "' is not a number", e);
+        }
+    }
+
+    private IllegalArgumentException error(String message)
+    {
+        return new IllegalArgumentException(source + ":" + lineNumber + ": " + message);
+    }
+
+    private IllegalArgumentException error(String message, Throwable cause)
+    {
+        return new IllegalArgumentException(source + ":" + lineNumber + ": " + message, cause);
+    }
+}
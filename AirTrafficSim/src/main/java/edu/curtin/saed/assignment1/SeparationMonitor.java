@@ -0,0 +1,245 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.Arrays;
+
+// Finds pairs of flying planes closer than a minimum separation. Planes are hashed into a uniform
+// grid whose cells are one minimum separation wide, so any conflicting pair is in the same or
+// adjacent cells and each plane is only compared with its neighbours: close to O(n) rather than
+// O(n^2). Pairs are tracked from tick to tick so that each conflict is reported once, when it starts.
+// Planes within the minimum of the airport they left or are landing at are under the airport's
+// control rather than en route, so they aren't checked; otherwise every group departure would count.
+// Only used from the engine thread, and allocates nothing once its arrays have grown to the fleet size.
+public class SeparationMonitor
+{
+    // The own cell plus half the neighbours, so each pair of adjacent cells is compared once
+    private static final int[] NEIGHBOUR_DX = {0, 1, 1, 0, -1};
+    private static final int[] NEIGHBOUR_DY = {0, 0, 1, 1, 1};
+
+    private final double minimum;
+    private final double minimumSquared;
+
+    // Indexed by slot, for the slots being checked
+    private int[] cellX = new int[0];
+    private int[] cellY = new int[0];
+    private int[] bucketOf = new int[0];
+    private int[] checked = new int[0]; // The slots that are en route
+    private int checkedCount;
+
+    // Slots grouped by bucket: bucket b holds bySlot[bucketStart[b]] to bySlot[bucketStart[b + 1] - 1]
+    private int[] bucketStart = new int[1];
+    private int[] bySlot = new int[0];
+    private int mask;
+
+    private PairSet previous = new PairSet();
+    private PairSet current = new PairSet();
+    private int[] newFirst = new int[16];
+    private int[] newSecond = new int[16];
+    private double[] newDistance = new double[16];
+    private int newCount;
+
+    public SeparationMonitor(double minimum)
+    {
+        this.minimum = minimum;
+        this.minimumSquared = minimum * minimum;
+    }
+
+    // Pairs found closer than the minimum in the last check(), whether new or not
+    public int getActiveConflicts()
+    {
+        return current.size();
+    }
+
+    // Conflicts that started in the last check(), as slots of the fleet that was checked
+    public int getNewConflictCount() { return newCount; }
+    public int getNewConflictFirst(int index) { return newFirst[index]; }
+    public int getNewConflictSecond(int index) { return newSecond[index]; }
+    public double getNewConflictDistance(int index) { return newDistance[index]; }
+
+    public void check(FleetStore fleet)
+    {
+        PairSet swap = previous;
+        previous = current;
+        current = swap;
+        current.clear();
+        newCount = 0;
+
+        int size = fleet.size();
+        if (size < 2) {
+            return;
+        }
+        buildBuckets(fleet, size);
+
+        for (int c = 0; c < checkedCount; c++) {
+            int i = checked[c];
+            for (int k = 0; k < NEIGHBOUR_DX.length; k++) {
+                int nx = cellX[i] + NEIGHBOUR_DX[k];
+                int ny = cellY[i] + NEIGHBOUR_DY[k];
+                int bucket = hash(nx, ny);
+                for (int b = bucketStart[bucket]; b < bucketStart[bucket + 1]; b++) {
+                    int j = bySlot[b];
+                    // Buckets can hold other cells that hashed the same way, so check the cell too
+                    if (cellX[j] == nx && cellY[j] == ny && (k != 0 || j > i)) {
+                        double dx = fleet.getX(j) - fleet.getX(i);
+                        double dy = fleet.getY(j) - fleet.getY(i);
+                        double distanceSquared = dx * dx + dy * dy;
+                        if (distanceSquared < minimumSquared) {
+                            recordConflict(fleet, i, j, Math.sqrt(distanceSquared));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Counting sort of the en-route slots by the hash of their cell
+    private void buildBuckets(FleetStore fleet, int size)
+    {
+        if (cellX.length < size) {
+            cellX = new int[size];
+            cellY = new int[size];
+            bucketOf = new int[size];
+            bySlot = new int[size];
+            checked = new int[size];
+        }
+        checkedCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (isEnRoute(fleet, i)) {
+                checked[checkedCount++] = i;
+            }
+        }
+
+        int buckets = Integer.highestOneBit(Math.max(1, checkedCount)) << 1; // One to two buckets per plane
+        if (bucketStart.length < buckets + 1) {
+            bucketStart = new int[buckets + 1];
+        } else {
+            Arrays.fill(bucketStart, 0, buckets + 1, 0);
+        }
+        mask = buckets - 1;
+
+        for (int c = 0; c < checkedCount; c++) {
+            int i = checked[c];
+            cellX[i] = (int) Math.floor(fleet.getX(i) / minimum);
+            cellY[i] = (int) Math.floor(fleet.getY(i) / minimum);
+            bucketOf[i] = hash(cellX[i], cellY[i]);
+            bucketStart[bucketOf[i] + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        // As in FleetStore's cell sort: use each start as a cursor, then shift them back
+        for (int c = 0; c < checkedCount; c++) {
+            int i = checked[c];
+            bySlot[bucketStart[bucketOf[i]]++] = i;
+        }
+        System.arraycopy(bucketStart, 0, bucketStart, 1, buckets);
+        bucketStart[0] = 0;
+    }
+
+    private boolean isEnRoute(FleetStore fleet, int slot)
+    {
+        double fromX = fleet.getX(slot) - fleet.getOriginX(slot);
+        double fromY = fleet.getY(slot) - fleet.getOriginY(slot);
+        double toX = fleet.getTargetX(slot) - fleet.getX(slot);
+        double toY = fleet.getTargetY(slot) - fleet.getY(slot);
+        return fromX * fromX + fromY * fromY >= minimumSquared && toX * toX + toY * toY >= minimumSquared;
+    }
+
+    private int hash(int cx, int cy)
+    {
+        return ((cx * 73_856_093) ^ (cy * 19_349_663)) & mask;
+    }
+
+    private void recordConflict(FleetStore fleet, int slotA, int slotB, double distance)
+    {
+        int planeA = fleet.getPlaneId(slotA);
+        int planeB = fleet.getPlaneId(slotB);
+        long key = ((long) Math.min(planeA, planeB) << 32) | Math.max(planeA, planeB);
+        if (!current.add(key) || previous.contains(key)) {
+            return; // Already counted this tick, or an ongoing conflict
+        }
+        if (newCount == newFirst.length) {
+            newFirst = Arrays.copyOf(newFirst, newCount * 2);
+            newSecond = Arrays.copyOf(newSecond, newCount * 2);
+            newDistance = Arrays.copyOf(newDistance, newCount * 2);
+        }
+        newFirst[newCount] = slotA;
+        newSecond[newCount] = slotB;
+        newDistance[newCount] = distance;
+        newCount++;
+    }
+
+    // Open-addressing set of non-negative longs, so tracking conflicts needs no boxing
+    private static class PairSet
+    {
+        private static final long EMPTY = -1L;
+        private long[] table = new long[16];
+        private int size;
+
+        private PairSet()
+        {
+            Arrays.fill(table, EMPTY);
+        }
+
+        private int size()
+        {
+            return size;
+        }
+
+        private boolean contains(long key)
+        {
+            int mask = table.length - 1;
+            for (int i = mix(key) & mask; table[i] != EMPTY; i = (i + 1) & mask) {
+                if (table[i] == key) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Returns false if the key was already present
+        private boolean add(long key)
+        {
+            if ((size + 1) * 2 > table.length) {
+                grow();
+            }
+            int mask = table.length - 1;
+            int i = mix(key) & mask;
+            while (table[i] != EMPTY) {
+                if (table[i] == key) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = key;
+            size++;
+            return true;
+        }
+
+        private void clear()
+        {
+            if (size > 0) {
+                Arrays.fill(table, EMPTY);
+                size = 0;
+            }
+        }
+
+        private void grow()
+        {
+            long[] old = table;
+            table = new long[old.length * 2];
+            Arrays.fill(table, EMPTY);
+            size = 0;
+            for (long key : old) {
+                if (key != EMPTY) {
+                    add(key);
+                }
+            }
+        }
+
+        private static int mix(long key)
+        {
+            long h = key * 0x9E37_79B9_7F4A_7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.Random;
+
+// How long servicing a plane takes, in milliseconds
+public interface ServiceTimeDistribution
+{
+    long sampleMillis(Random random);
+
+    // Evenly spread over [min, max), as the saed_plane_service program does with 1000..5000
+    static ServiceTimeDistribution uniform(long minMillis, long maxMillis)
+    {
+        if (maxMillis <= minMillis) {
+            return fixed(minMillis);
+        }
+        return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+    }
+
+    // Memoryless service times with the given mean, for queueing-style load tests
+    static ServiceTimeDistribution exponential(double meanMillis)
+    {
+        return random -> (long) (-meanMillis * Math.log(1.0 - random.nextDouble()));
+    }
+
+    static ServiceTimeDistribution fixed(long millis)
+    {
+        return random -> millis;
+    }
+
+    // Parses "uniform:MIN:MAX", "exponential:MEAN" or "fixed:MILLIS"
+    static ServiceTimeDistribution parse(String spec)
+    {
+        String[] parts = spec.split(":");
+        try {
+            switch (parts[0]) {
+                case "uniform":
+                    if (parts.length == 3) {
+                        return uniform(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                    }
+                    break;
+                case "exponential":
+                    if (parts.length == 2) {
+                        return exponential(Double.parseDouble(parts[1]));
+                    }
+                    break;
+                case "fixed":
+                    if (parts.length == 2) {
+                        return fixed(Long.parseLong(parts[1]));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid service time distribution '" + spec + "'", e);
+        }
+        throw new IllegalArgumentException("Invalid service time distribution '" + spec + "'");
+    }
+}
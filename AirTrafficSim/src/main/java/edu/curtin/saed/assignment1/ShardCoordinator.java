@@ -0,0 +1,461 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Moves the engine's flights in worker JVMs (ShardWorker) on this machine rather than in this one.
+// The grid is cut into one vertical strip per worker, and each worker steps the flights in its strip
+// with its own FleetStore. Everything else (dispatch, landing slots, gates, servicing) stays in this
+// JVM, and the engine's FleetStore becomes a mirror of where the workers say the flights are.
+//
+// Ticks go in lockstep: each tick, every worker is sent the flights it takes on (new launches, and
+// flights that crossed into its strip last tick) and the planes it should drop, steps its flights,
+// and replies with the ones that landed, the ones that left its strip, and (if asked) where the rest
+// are now. A flight is always stepped by exactly one worker, with the same arithmetic on the same
+// state as FleetStore.advance() here, so flights land on the same ticks as in a single JVM.
+//
+// Messages go over a Unix domain socket per worker. On connecting, a worker sends its index (int),
+// and is sent its index, the shard count, the grid size, the plane count (ints) and each airport's
+// x, y (doubles). After that, each message is an int length then big-endian binary:
+//   to a worker:   TICK (byte), flight count (int), FLIGHTs, drop count (int), plane IDs (ints),
+//                  positions wanted (byte); or SYNC (byte), for positions without a step; or STOP
+//                  (byte), after which the worker exits
+//   from a worker: arrival count (int), plane IDs (ints), hand-off count (int), FLIGHTs,
+//                  position count (int), POSITIONs
+// A FLIGHT is plane, destination (ints), speed, x, y (doubles), segment (int), segment left, route
+// left (doubles), point count (int) and the route's points (x, y doubles); a POSITION is plane (int),
+// x, y (doubles), segment (int), segment left and route left (doubles). A worker takes on FLIGHTs,
+// replacing any flight it still has for the same plane, before it drops planes.
+//
+// Only used from the engine thread.
+public class ShardCoordinator
+{
+    private static final Logger LOGGER = Logger.getLogger(ShardCoordinator.class.getName());
+    /* default */ static final byte TICK = 1;
+    /* default */ static final byte SYNC = 2;
+    /* default */ static final byte STOP = 3;
+    /* default */ static final int FLIGHT_BYTES = 4 * Integer.BYTES + 5 * Double.BYTES; // Before the points
+    /* default */ static final int POSITION_BYTES = 2 * Integer.BYTES + 4 * Double.BYTES;
+    private static final int TICK_HEADER_BYTES = Integer.BYTES + 1 + Integer.BYTES; // Length, TICK, flight count
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long CONNECT_TIMEOUT_NANOS = 30_000_000_000L; // Time for every worker JVM to start
+    private static final int NONE = -1;
+
+    private final int shardCount;
+    private final int gridSize;
+    private final List<Airport> airports;
+    private final int workerTickThreads;
+    private final int[] shardOf; // Per plane, the worker stepping its flight, or NONE
+    private final Shard[] shards;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(Integer.BYTES);
+    private final ByteBuffer sync = ByteBuffer.allocateDirect(Integer.BYTES + 1);
+    private Path socketDirectory; // Null unless started
+    private volatile long bytesExchanged;
+
+    // Splits a grid of 'gridSize' squares between 'shardCount' workers, which move large fleets with
+    // 'workerTickThreads' threads each
+    public ShardCoordinator(int shardCount, int gridSize, List<Airport> airports, int planeCount, int workerTickThreads)
+    {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        this.shardCount = shardCount;
+        this.gridSize = gridSize;
+        this.airports = List.copyOf(airports);
+        this.workerTickThreads = workerTickThreads;
+        this.shardOf = new int[planeCount];
+        this.shards = new Shard[shardCount];
+        Arrays.fill(shardOf, NONE);
+    }
+
+    // Bytes sent to and received from the workers so far
+    public long getBytesExchanged()
+    {
+        return bytesExchanged;
+    }
+
+    // The strip of the grid holding 'x', which the worker of the same index looks after
+    /* default */ static int shardOf(double x, int gridSize, int shardCount)
+    {
+        int shard = (int) (x * shardCount / gridSize);
+        return Math.max(0, Math.min(shardCount - 1, shard));
+    }
+
+    // Starts the worker JVMs, waits for them all to connect, and hands them the flights already in
+    // 'fleet' (restored from a snapshot). Call stop() if this fails.
+    public void start(FleetStore fleet) throws IOException
+    {
+        socketDirectory = Files.createTempDirectory("air-traffic-shards");
+        Path socket = socketDirectory.resolve("coordinator.sock");
+        List<Process> processes = new ArrayList<>();
+        boolean connected = false;
+        try {
+            connectWorkers(socket, processes);
+            for (int i = 0; i < shardCount; i++) {
+                sendSetUp(shards[i], i);
+            }
+            connected = true;
+        } finally {
+            if (!connected) {
+                // Workers that never made it into shards[] would outlive stop()
+                for (Process process : processes) {
+                    process.destroy();
+                }
+            }
+        }
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            launch(fleet, slot);
+        }
+    }
+
+    // Starts a worker JVM per shard, adding each to 'processes' as it starts, and waits for them all
+    // to connect to 'socket'
+    @SuppressWarnings("PMD.CloseResource") // Each channel is closed here if unusable, else by stop() as its shard's
+    private void connectWorkers(Path socket, List<Process> processes) throws IOException
+    {
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            server.configureBlocking(false);
+            String java = ProcessHandle.current().info().command().orElse("java");
+            for (int i = 0; i < shardCount; i++) {
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        ShardWorker.class.getName(), socket.toString(), Integer.toString(i),
+                        Integer.toString(workerTickThreads))
+                        .inheritIO().start());
+            }
+
+            // Workers connect in whatever order their JVMs start, and say which one they were told they are
+            long deadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+            for (int connected = 0; connected < shardCount; connected++) {
+                SocketChannel channel = accept(server, deadline, processes);
+                int index;
+                try {
+                    header.clear();
+                    readFully(channel, header);
+                    index = header.flip().getInt();
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                }
+                if (index < 0 || index >= shardCount || shards[index] != null) {
+                    channel.close();
+                    throw new IOException("Shard worker sent a bad index " + index);
+                }
+                shards[index] = new Shard(processes.get(index), channel);
+            }
+        }
+    }
+
+    private static SocketChannel accept(ServerSocketChannel server, long deadline, List<Process> processes)
+            throws IOException
+    {
+        while (true) {
+            SocketChannel channel = server.accept();
+            if (channel != null) {
+                channel.configureBlocking(true);
+                return channel;
+            }
+            for (Process process : processes) {
+                if (!process.isAlive()) {
+                    throw new IOException("A shard worker exited with status " + process.exitValue());
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IOException("Shard workers did not connect in time");
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for shard workers", e);
+            }
+        }
+    }
+
+    // The worker's index, its strip and the airports, so it can build flights like the engine's
+    private void sendSetUp(Shard shard, int index) throws IOException
+    {
+        int length = 4 * Integer.BYTES + airports.size() * 2 * Double.BYTES;
+        ByteBuffer setUp = ByteBuffer.allocate(Integer.BYTES + length);
+        setUp.putInt(length).putInt(index).putInt(shardCount).putInt(gridSize).putInt(shardOf.length);
+        for (Airport airport : airports) {
+            setUp.putDouble(airport.getX()).putDouble(airport.getY());
+        }
+        writeFully(shard.channel, setUp.flip());
+    }
+
+    // Sends the flight in 'slot', just added to 'fleet', to the worker for the strip it starts in
+    public void launch(FleetStore fleet, int slot)
+    {
+        int shard = shardOf(fleet.getX(slot), gridSize, shardCount);
+        int plane = fleet.getPlaneId(slot);
+        shardOf[plane] = shard;
+        shards[shard].cancelDrop(plane); // The worker replaces the stopped flight with this one instead
+        shards[shard].out = putFlight(shards[shard].out, fleet, slot);
+        shards[shard].flightCount++;
+    }
+
+    // Has the workers drop the flights from 'from' on in 'retired' that were stopped rather than landed
+    public void retire(List<PlaneMovement> retired, int from)
+    {
+        for (int i = from; i < retired.size(); i++) {
+            PlaneMovement movement = retired.get(i);
+            int plane = movement.getPlane().getId();
+            int shard = shardOf[plane];
+            if (!movement.hasArrived() && shard != NONE) {
+                shards[shard].drop(plane);
+                shardOf[plane] = NONE;
+            }
+        }
+    }
+
+    // Steps every flight one tick in the workers, then marks the ones that landed in 'fleet', for its
+    // removeFinished(), and moves the ones that changed strip to their new worker. With 'positions',
+    // the rest of 'fleet' is brought up to date as well.
+    public void advance(FleetStore fleet, boolean positions) throws IOException
+    {
+        for (Shard shard : shards) {
+            ByteBuffer out = shard.out;
+            int flightsEnd = out.position();
+            out = ensure(out, (shard.dropCount + 1) * Integer.BYTES + 1);
+            out.putInt(shard.dropCount);
+            for (int i = 0; i < shard.dropCount; i++) {
+                out.putInt(shard.drops[i]);
+            }
+            out.put(positions ? (byte) 1 : (byte) 0);
+            out.putInt(0, out.position() - Integer.BYTES).put(Integer.BYTES, TICK).putInt(Integer.BYTES + 1, shard.flightCount);
+            writeFully(shard.channel, out.flip());
+            bytesExchanged += out.limit();
+            shard.out = out.clear().position(TICK_HEADER_BYTES);
+            shard.flightCount = 0;
+            shard.dropCount = 0;
+            if (flightsEnd > BUFFER_BYTES && out.capacity() > 4 * flightsEnd) {
+                shard.out = ByteBuffer.allocateDirect(BUFFER_BYTES).position(TICK_HEADER_BYTES); // Shrink after a burst
+            }
+        }
+        // Every worker steps at once; the replies are read in worker order, so hand-offs are too
+        for (int i = 0; i < shardCount; i++) {
+            readReply(i, fleet);
+        }
+    }
+
+    // Brings every flight in 'fleet' up to date with its worker, without stepping, for a snapshot
+    public void sync(FleetStore fleet) throws IOException
+    {
+        for (Shard shard : shards) {
+            sync.clear().putInt(1).put(SYNC);
+            writeFully(shard.channel, sync.flip());
+        }
+        for (int i = 0; i < shardCount; i++) {
+            readReply(i, fleet);
+        }
+    }
+
+    private void readReply(int index, FleetStore fleet) throws IOException
+    {
+        Shard shard = shards[index];
+        header.clear();
+        readFully(shard.channel, header);
+        int length = header.flip().getInt();
+        if (shard.in.capacity() < length) {
+            shard.in = ByteBuffer.allocateDirect(Math.max(length, shard.in.capacity() * 2));
+        }
+        ByteBuffer in = shard.in.clear().limit(length);
+        readFully(shard.channel, in);
+        in.flip();
+        bytesExchanged += Integer.BYTES + length;
+
+        // Reports about planes the worker no longer has (dropped since it stepped them) are ignored
+        int arrivals = in.getInt();
+        for (int i = 0; i < arrivals; i++) {
+            int plane = in.getInt();
+            if (shardOf[plane] == index) {
+                fleet.land(fleet.getSlot(plane));
+                shardOf[plane] = NONE;
+            }
+        }
+        int handOffs = in.getInt();
+        for (int i = 0; i < handOffs; i++) {
+            int start = in.position();
+            int plane = in.getInt(start);
+            double x = in.getDouble(start + 2 * Integer.BYTES + Double.BYTES);
+            int end = start + FLIGHT_BYTES + in.getInt(start + FLIGHT_BYTES - Integer.BYTES) * 2 * Double.BYTES;
+            if (shardOf[plane] == index) {
+                placeFlight(in, fleet, start);
+                int to = shardOf(x, gridSize, shardCount);
+                shardOf[plane] = to;
+                Shard next = shards[to];
+                next.out = ensure(next.out, end - start);
+                next.out.put(in.slice(start, end - start));
+                next.flightCount++;
+            }
+            in.position(end);
+        }
+        int positions = in.getInt();
+        for (int i = 0; i < positions; i++) {
+            int plane = in.getInt();
+            double x = in.getDouble();
+            double y = in.getDouble();
+            int segment = in.getInt();
+            double segmentLeft = in.getDouble();
+            double routeLeft = in.getDouble();
+            if (shardOf[plane] == index) {
+                fleet.place(fleet.getSlot(plane), x, y, segment, segmentLeft, routeLeft);
+            }
+        }
+    }
+
+    private static void placeFlight(ByteBuffer in, FleetStore fleet, int start)
+    {
+        int at = start + 2 * Integer.BYTES + Double.BYTES; // Past plane, destination and speed
+        fleet.place(fleet.getSlot(in.getInt(start)), in.getDouble(at), in.getDouble(at + Double.BYTES),
+                in.getInt(at + 2 * Double.BYTES), in.getDouble(at + 2 * Double.BYTES + Integer.BYTES),
+                in.getDouble(at + 3 * Double.BYTES + Integer.BYTES));
+    }
+
+    // Tells the workers to exit and waits for them, and forgets every flight they had
+    public void stop()
+    {
+        for (int i = 0; i < shardCount; i++) {
+            Shard shard = shards[i];
+            if (shard == null) {
+                continue;
+            }
+            shards[i] = null;
+            try {
+                if (shard.channel.isOpen()) {
+                    sendStop(shard); // Closed already if stop() interrupted a tick
+                }
+                shard.channel.close();
+                if (!shard.process.waitFor(5, TimeUnit.SECONDS)) {
+                    shard.process.destroy();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error closing shard worker connection", e);
+                shard.process.destroy();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shard.process.destroy();
+            }
+        }
+        Arrays.fill(shardOf, NONE);
+        if (socketDirectory != null) {
+            try {
+                Files.deleteIfExists(socketDirectory.resolve("coordinator.sock"));
+                Files.deleteIfExists(socketDirectory);
+            } catch (IOException e) {
+                Path directory = socketDirectory;
+                LOGGER.log(Level.WARNING, e, () -> "Cannot remove " + directory);
+            }
+            socketDirectory = null;
+        }
+    }
+
+    private void sendStop(Shard shard)
+    {
+        try {
+            sync.clear().putInt(1).put(STOP);
+            writeFully(shard.channel, sync.flip());
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Shard worker already gone", e); // Closing the connection ends it anyway
+        }
+    }
+
+    // Appends the FLIGHT for 'slot' to 'out', returning it, or a larger copy if it was full
+    /* default */ static ByteBuffer putFlight(ByteBuffer out, FleetStore fleet, int slot)
+    {
+        PlaneMovement movement = fleet.getMovement(slot);
+        Route route = fleet.getRoute(slot);
+        int points = route.getPointCount();
+        ByteBuffer buffer = ensure(out, FLIGHT_BYTES + points * 2 * Double.BYTES);
+        buffer.putInt(fleet.getPlaneId(slot)).putInt(movement.getDestination().getId()).putDouble(movement.getSpeed())
+                .putDouble(fleet.getX(slot)).putDouble(fleet.getY(slot)).putInt(fleet.getSegment(slot))
+                .putDouble(fleet.getSegmentLeft(slot)).putDouble(fleet.getRouteLeft(slot)).putInt(points);
+        for (int point = 0; point < points; point++) {
+            buffer.putDouble(route.getX(point)).putDouble(route.getY(point));
+        }
+        return buffer;
+    }
+
+    // Appends the POSITION for 'slot' to 'out', which must have room for it
+    /* default */ static void putPosition(ByteBuffer out, FleetStore fleet, int slot)
+    {
+        out.putInt(fleet.getPlaneId(slot)).putDouble(fleet.getX(slot)).putDouble(fleet.getY(slot))
+                .putInt(fleet.getSegment(slot)).putDouble(fleet.getSegmentLeft(slot)).putDouble(fleet.getRouteLeft(slot));
+    }
+
+    // 'buffer', or a copy of what's been written to it with room for 'bytes' more
+    /* default */ static ByteBuffer ensure(ByteBuffer buffer, int bytes)
+    {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        return larger.put(buffer.flip());
+    }
+
+    /* default */ static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Shard connection closed");
+            }
+        }
+    }
+
+    /* default */ static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // A worker, and what it's sent on its next tick
+    private static final class Shard
+    {
+        private final Process process;
+        private final SocketChannel channel;
+        private ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_BYTES).position(TICK_HEADER_BYTES);
+        private ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private int flightCount;
+        private int[] drops = new int[16];
+        private int dropCount;
+
+        private Shard(Process process, SocketChannel channel)
+        {
+            this.process = process;
+            this.channel = channel;
+        }
+
+        private void drop(int plane)
+        {
+            if (dropCount == drops.length) {
+                drops = Arrays.copyOf(drops, dropCount * 2);
+            }
+            drops[dropCount++] = plane;
+        }
+
+        private void cancelDrop(int plane)
+        {
+            for (int i = 0; i < dropCount; i++) {
+                if (drops[i] == plane) {
+                    drops[i] = drops[--dropCount];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Worker process for ShardCoordinator. Steps the flights in one vertical strip of the grid with its
+// own FleetStore, one tick per TICK message, and hands the coordinator the flights that land or leave
+// the strip. Exits on a STOP message, or quietly once the coordinator has gone, which reports any
+// failure itself.
+//
+// Usage: ShardWorker SOCKET INDEX TICK_THREADS
+public final class ShardWorker
+{
+    private static final Logger LOGGER = Logger.getLogger(ShardWorker.class.getName());
+    private final int index;
+    private final int shardCount;
+    private final int gridSize;
+    private final List<Airport> airports = new ArrayList<>();
+    private final Plane[] planes; // By ID, made as flights for them arrive
+    private final FleetStore fleet;
+    private final ForkJoinPool pool; // Null to step on this thread alone
+    private final List<PlaneMovement> finished = new ArrayList<>();
+    private final ByteBuffer header = ByteBuffer.allocateDirect(Integer.BYTES);
+    private ByteBuffer in = ByteBuffer.allocateDirect(1 << 16);
+    private ByteBuffer out = ByteBuffer.allocateDirect(1 << 16);
+
+    private ShardWorker(ByteBuffer setUp, int tickThreads)
+    {
+        index = setUp.getInt();
+        shardCount = setUp.getInt();
+        gridSize = setUp.getInt();
+        int planeCount = setUp.getInt();
+        while (setUp.hasRemaining()) {
+            airports.add(new Airport(airports.size(), setUp.getDouble(), setUp.getDouble()));
+        }
+        planes = new Plane[planeCount];
+        fleet = new FleetStore(planeCount);
+        pool = tickThreads > 1 ? new ForkJoinPool(tickThreads) : null;
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Usage: ShardWorker SOCKET INDEX TICK_THREADS");
+        }
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(Path.of(args[0])));
+            ByteBuffer hello = ByteBuffer.allocate(Integer.BYTES).putInt(Integer.parseInt(args[1]));
+            ShardCoordinator.writeFully(channel, hello.flip());
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            ShardCoordinator.readFully(channel, length);
+            ByteBuffer setUp = ByteBuffer.allocate(length.flip().getInt());
+            ShardCoordinator.readFully(channel, setUp);
+            new ShardWorker(setUp.flip(), Integer.parseInt(args[2])).run(channel);
+        } catch (IOException e) {
+            // The coordinator has stopped or died, closing the connection mid-message or mid-reply
+            LOGGER.log(Level.FINE, "Lost the coordinator", e);
+        }
+    }
+
+    private void run(SocketChannel channel) throws IOException
+    {
+        try {
+            while (true) {
+                readMessage(channel);
+                out.clear().position(Integer.BYTES); // Past the length
+                byte type = in.get();
+                if (type == ShardCoordinator.STOP) {
+                    return;
+                }
+                boolean positions;
+                if (type == ShardCoordinator.TICK) {
+                    tick();
+                    putArrivalsAndHandOffs();
+                    positions = in.get() != 0;
+                } else {
+                    out.putInt(0).putInt(0); // A SYNC: no arrivals and no hand-offs
+                    positions = true;
+                }
+                reply(channel, positions);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private void readMessage(SocketChannel channel) throws IOException
+    {
+        header.clear();
+        ShardCoordinator.readFully(channel, header);
+        int length = header.flip().getInt();
+        if (in.capacity() < length) {
+            in = ByteBuffer.allocateDirect(Math.max(length, in.capacity() * 2));
+        }
+        in.clear().limit(length);
+        ShardCoordinator.readFully(channel, in);
+        in.flip();
+    }
+
+    // Takes on the message's flights, drops its planes and steps every flight, leaving the landed
+    // flights in 'finished' and 'in' at the positions flag
+    private void tick()
+    {
+        int flights = in.getInt();
+        for (int i = 0; i < flights; i++) {
+            takeOn();
+        }
+        int drops = in.getInt();
+        for (int i = 0; i < drops; i++) {
+            int slot = fleet.getSlot(in.getInt());
+            if (slot >= 0) {
+                fleet.getMovement(slot).stop();
+            }
+        }
+        fleet.advance(pool);
+        finished.clear();
+        fleet.removeFinished(finished); // Dropped as well as landed flights
+    }
+
+    private void takeOn()
+    {
+        int planeId = in.getInt();
+        Airport destination = airports.get(in.getInt());
+        double speed = in.getDouble();
+        double x = in.getDouble();
+        double y = in.getDouble();
+        int segment = in.getInt();
+        double segmentLeft = in.getDouble();
+        double routeLeft = in.getDouble();
+        int points = in.getInt();
+        double[] routeX = new double[points];
+        double[] routeY = new double[points];
+        for (int point = 0; point < points; point++) {
+            routeX[point] = in.getDouble();
+            routeY[point] = in.getDouble();
+        }
+
+        int slot = fleet.getSlot(planeId);
+        if (slot >= 0) {
+            // A flight the coordinator has stopped since, so it can't have landed
+            fleet.getMovement(slot).stop();
+            fleet.removeFinished(finished); // Cleared before it's next read
+        }
+        Plane plane = planes[planeId];
+        if (plane == null) {
+            plane = new Plane(planeId, destination);
+            planes[planeId] = plane;
+        }
+        plane.setPosition(routeX[0], routeY[0]); // So the store takes the route as it is
+        PlaneMovement movement = new PlaneMovement(plane, destination, speed, new Route(routeX, routeY));
+        fleet.resume(movement, x, y, segment, segmentLeft, routeLeft);
+    }
+
+    // Adds the landed flights to the reply, then the flights that have left this strip, and drops them
+    private void putArrivalsAndHandOffs()
+    {
+        int countAt = out.position();
+        out.putInt(0);
+        int arrivals = 0;
+        for (PlaneMovement movement : finished) {
+            if (movement.hasArrived()) {
+                out = ShardCoordinator.ensure(out, Integer.BYTES);
+                out.putInt(movement.getPlane().getId());
+                arrivals++;
+            }
+        }
+        out.putInt(countAt, arrivals);
+
+        out = ShardCoordinator.ensure(out, Integer.BYTES);
+        countAt = out.position();
+        out.putInt(0);
+        int handOffs = 0;
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            if (ShardCoordinator.shardOf(fleet.getX(slot), gridSize, shardCount) != index) {
+                out = ShardCoordinator.putFlight(out, fleet, slot);
+                fleet.getMovement(slot).stop();
+                handOffs++;
+            }
+        }
+        out.putInt(countAt, handOffs);
+        if (handOffs > 0) {
+            finished.clear();
+            fleet.removeFinished(finished);
+        }
+    }
+
+    // Finishes the reply with the positions of the flights still here, if they are wanted, and sends it
+    private void reply(SocketChannel channel, boolean positions) throws IOException
+    {
+        int count = positions ? fleet.size() : 0;
+        out = ShardCoordinator.ensure(out, Integer.BYTES + count * ShardCoordinator.POSITION_BYTES);
+        out.putInt(count);
+        for (int slot = 0; slot < count; slot++) {
+            ShardCoordinator.putPosition(out, fleet, slot);
+        }
+        out.putInt(0, out.position() - Integer.BYTES);
+        ShardCoordinator.writeFully(channel, out.flip());
+    }
+}
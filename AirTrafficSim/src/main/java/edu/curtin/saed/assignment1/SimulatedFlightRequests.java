@@ -0,0 +1,72 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.Random;
+
+// In-process equivalent of running saed_flight_requests for every airport: each airport asks for a
+// flight to a random other airport, then waits a random 1-5 seconds (by default) before the next.
+// The waits are timers on the simulation clock rather than a process and reader thread per airport,
+// so requests keep pace with the simulation whatever its time scale.
+public class SimulatedFlightRequests implements FlightRequestSource
+{
+    private final Simulation simulation;
+    private final long minWaitMillis;
+    private final long maxWaitMillis;
+    private final Random rand; // Locked, as start() and the engine thread's timers both draw from it
+    private volatile int generation; // Timers from before the last stop() see a different value and lapse
+    private boolean running;
+
+    public SimulatedFlightRequests(Simulation simulation)
+    {
+        this(simulation, 1000, 5000, new Random());
+    }
+
+    public SimulatedFlightRequests(Simulation simulation, long minWaitMillis, long maxWaitMillis, Random rand)
+    {
+        this.simulation = simulation;
+        this.minWaitMillis = minWaitMillis;
+        this.maxWaitMillis = Math.max(minWaitMillis + 1, maxWaitMillis);
+        this.rand = rand;
+    }
+
+    @Override
+    public void start()
+    {
+        if (running) {
+            return;
+        }
+        running = true;
+        int current = generation;
+        int nAirports = simulation.getAirports().size();
+        synchronized (rand) { // The engine may already be running timers from this start
+            for (int origin = 0; origin < nAirports; origin++) {
+                scheduleNext(current, origin, nAirports);
+            }
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        if (running) {
+            running = false;
+            generation++;
+        }
+    }
+
+    private void scheduleNext(int current, int origin, int nAirports)
+    {
+        long wait = minWaitMillis + (long) (rand.nextDouble() * (maxWaitMillis - minWaitMillis));
+        simulation.getClock().schedule(wait, () -> {
+            if (generation != current) {
+                return;
+            }
+            int destination;
+            synchronized (rand) {
+                // Any airport but the origin, which is what the real program's retry loop amounts to
+                destination = rand.nextInt(nAirports - 1);
+                scheduleNext(current, origin, nAirports);
+            }
+            simulation.submitFlightRequest(origin, destination >= origin ? destination + 1 : destination);
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// In-process equivalent of saed_plane_service: servicing takes a time drawn from a configurable
+// distribution and then reports success with the same message. Every plane being serviced is just a
+// pending timer on the simulation clock, so there is no JVM start-up or process per landing, and
+// service times are in simulated time, following the clock's time scale.
+public class SimulatedPlaneService implements PlaneServiceProvider
+{
+    private final SimulationClock clock;
+    private final ServiceTimeDistribution serviceTimes;
+    private final Random rand;
+    private final Map<Integer, Long> dueMillis = new ConcurrentHashMap<>(); // By plane ID, while servicing
+
+    // Matches the real program's 1-5 second servicing
+    public SimulatedPlaneService(SimulationClock clock)
+    {
+        this(clock, ServiceTimeDistribution.uniform(1000, 5000));
+    }
+
+    public SimulatedPlaneService(SimulationClock clock, ServiceTimeDistribution serviceTimes)
+    {
+        this(clock, serviceTimes, new Random());
+    }
+
+    // Draws service times from 'rand', e.g. one restored from a snapshot
+    public SimulatedPlaneService(SimulationClock clock, ServiceTimeDistribution serviceTimes, Random rand)
+    {
+        this.clock = clock;
+        this.serviceTimes = serviceTimes;
+        this.rand = rand;
+    }
+
+    // The stream service times are drawn from, whose state snapshots keep
+    public Random getRandom()
+    {
+        return rand;
+    }
+
+    @Override
+    public CompletableFuture<Void> service(Airport airport, Plane plane, Consumer<String> output)
+    {
+        long millis;
+        synchronized (rand) { // Random is thread-safe, but the distribution may call it more than once
+            millis = serviceTimes.sampleMillis(rand);
+        }
+        return schedule(airport, plane, millis, output);
+    }
+
+    @Override
+    public long getRemainingMillis(Plane plane)
+    {
+        Long due = dueMillis.get(plane.getId());
+        return due != null ? Math.max(0, due - clock.millis()) : -1;
+    }
+
+    @Override
+    public CompletableFuture<Void> resume(Airport airport, Plane plane, long remainingMillis, Consumer<String> output)
+    {
+        if (remainingMillis < 0) {
+            return service(airport, plane, output);
+        }
+        return schedule(airport, plane, remainingMillis, output);
+    }
+
+    private CompletableFuture<Void> schedule(Airport airport, Plane plane, long millis, Consumer<String> output)
+    {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        long due = clock.millis() + millis;
+        dueMillis.put(plane.getId(), due);
+        SimulationClock.Timer timer = clock.schedule(millis, plane.getId(), () -> {
+            output.accept(String.format("saed_plane_service: success: servicing complete at airport %d for plane %d, in %d ms",
+                    airport.getId(), plane.getId(), millis));
+            done.complete(null);
+        });
+
+        done.whenComplete((result, error) -> {
+            dueMillis.remove(plane.getId(), due);
+            timer.cancel(); // No-op unless servicing was cancelled
+        });
+        return done;
+    }
+}
@@ -0,0 +1,26 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.List;
+
+// The simulation core, independent of any front end. App drives it with JavaFX; HeadlessRunner
+// drives it from the command line.
+public interface Simulation
+{
+    void start();
+    void stop();
+    boolean isRunning();
+
+    // Requests a flight from the origin airport, preferring a plane parked there. If no plane is idle
+    // the request waits at the origin for one, subject to the configured pending-request limit and
+    // overflow policy; with the BLOCK policy, this call may wait for room in the queue.
+    void submitFlightRequest(int originAirport, int destinationAirport);
+
+    // Parses and submits one line of saed_flight_requests output, reporting malformed lines
+    void submitFlightRequest(int originAirport, String requestLine);
+
+    SimulationStats getStats();
+    SimulationClock getClock();
+    MetricsRegistry getMetrics();
+    List<Airport> getAirports();
+    List<Plane> getPlanes();
+}
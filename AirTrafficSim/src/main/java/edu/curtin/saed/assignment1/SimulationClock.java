@@ -0,0 +1,240 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Simulated time, which the SimulationEngine advances by SimulationEngine.TICK_MILLIS every tick. The
+// time scale says how fast simulated time runs compared with wall-clock time: 1 is real time, 1000
+// runs a day of traffic in under a minute and a half, and AS_FAST_AS_POSSIBLE runs ticks back-to-back.
+// Everything that waits inside the simulation (turnarounds, in-process servicing and flight requests)
+// waits in simulated time through schedule() or sleep(), so it speeds up and slows down with the
+// engine. The external comms programs keep to wall-clock time whatever the scale.
+//
+// Threads that act on the simulation's behalf keep in step with it through hold() and release(): the
+// engine doesn't start a tick while the clock is held, so a plane woken by one tick has launched its
+// next flight before the next tick, however fast ticks run.
+public class SimulationClock
+{
+    private static final Logger LOGGER = Logger.getLogger(SimulationClock.class.getName());
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+    public static final double MAX_TIME_SCALE = 1000.0; // Beyond this, use AS_FAST_AS_POSSIBLE
+
+    private volatile double timeScale;
+    private volatile long nowMillis; // Only written by the engine thread
+    private final Queue<Timer> timers = new PriorityQueue<>(); // Guarded by itself
+    private long nextSequence; // Guarded by timers
+    private final List<Timer> due = new ArrayList<>(); // Only used by the engine thread
+    private final AtomicInteger holds = new AtomicInteger();
+    private volatile Thread holdWaiter; // The engine thread, while it waits for holds to be released
+
+    public SimulationClock(double timeScale)
+    {
+        this.timeScale = checkTimeScale(timeScale);
+    }
+
+    // Parses a time scale such as "1", "100" or "max"
+    public static double parseTimeScale(String text)
+    {
+        if ("max".equals(text)) {
+            return AS_FAST_AS_POSSIBLE;
+        }
+        try {
+            return checkTimeScale(Double.parseDouble(text));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time scale '" + text + "'", e);
+        }
+    }
+
+    private static double checkTimeScale(double timeScale)
+    {
+        if (timeScale != AS_FAST_AS_POSSIBLE && !(timeScale > 0.0 && timeScale <= MAX_TIME_SCALE)) {
+            throw new IllegalArgumentException("Time scale must be above 0 and at most " + (int) MAX_TIME_SCALE
+                    + ", or as fast as possible");
+        }
+        return timeScale;
+    }
+
+    public double getTimeScale()
+    {
+        return timeScale;
+    }
+
+    // Takes effect from the engine's next tick, so it can be changed while the simulation runs
+    public void setTimeScale(double timeScale)
+    {
+        this.timeScale = checkTimeScale(timeScale);
+    }
+
+    public boolean isAsFastAsPossible()
+    {
+        return timeScale == AS_FAST_AS_POSSIBLE;
+    }
+
+    // Simulated milliseconds since the simulation was created, not counting time spent stopped
+    public long millis()
+    {
+        return nowMillis;
+    }
+
+    // Wall-clock nanoseconds the engine should take over each tick, or 0 to run ticks back-to-back
+    public long getTickNanos()
+    {
+        double scale = timeScale;
+        return scale == AS_FAST_AS_POSSIBLE ? 0 : Math.round(SimulationEngine.TICK_MILLIS * 1_000_000.0 / scale);
+    }
+
+    // Runs the task on the engine thread once 'delayMillis' of simulated time has passed, at the end
+    // of a tick. Tasks must not block. Safe to call from any thread.
+    public Timer schedule(long delayMillis, Runnable task)
+    {
+        return schedule(delayMillis, -1, task);
+    }
+
+    // As schedule(), but timers due at the same time run in order of 'order' (such as a plane ID)
+    // before the order they were scheduled in. Threads racing to schedule timers then can't change
+    // the order they run in, which keeps a run repeatable.
+    public Timer schedule(long delayMillis, int order, Runnable task)
+    {
+        synchronized (timers) {
+            Timer timer = new Timer(nowMillis + Math.max(0, delayMillis), order, nextSequence++, task);
+            timers.add(timer);
+            return timer;
+        }
+    }
+
+    // Blocks the calling thread until 'millis' of simulated time have passed, then returns holding the
+    // clock, which the caller releases once it has acted. Only returns early if interrupted, so the
+    // engine must be running for it to return at all.
+    public void sleep(long millis) throws InterruptedException
+    {
+        if (millis <= 0) {
+            hold();
+            return;
+        }
+        CountDownLatch woken = new CountDownLatch(1);
+        Timer timer = schedule(millis, () -> {
+            hold();
+            woken.countDown();
+        });
+        try {
+            woken.await();
+        } finally {
+            timer.cancel(); // No-op unless interrupted
+        }
+    }
+
+    // Stops simulated time moving on until a matching release(). Whoever wakes a thread that has to act
+    // at the current simulated time holds the clock first, and that thread releases it once it has.
+    public void hold()
+    {
+        holds.incrementAndGet();
+    }
+
+    public void release()
+    {
+        if (holds.decrementAndGet() <= 0) {
+            Thread waiter = holdWaiter;
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    // Called by the engine before each tick. Gives up after maxNanos of wall-clock time, so a thread
+    // that is slow to release only costs speed, not progress.
+    @SuppressWarnings("PMD.UnusedAssignment") // holdWaiter is read by release() on other threads
+    /* default */ void awaitReleased(long maxNanos)
+    {
+        if (holds.get() <= 0) {
+            return;
+        }
+        holdWaiter = Thread.currentThread();
+        long deadline = System.nanoTime() + maxNanos;
+        long remaining = maxNanos;
+        while (holds.get() > 0 && remaining > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        holdWaiter = null;
+    }
+
+    // Carries on from a snapshot's simulated time. Call before the engine starts and before anything
+    // is scheduled.
+    /* default */ void restore(long millis)
+    {
+        nowMillis = millis;
+    }
+
+    // Forgets holds left by threads that were stopped before they could release them
+    /* default */ void clearHolds()
+    {
+        holds.set(0);
+    }
+
+    // Called by the engine after each tick: moves simulated time on and runs the timers now due.
+    // Timers those tasks schedule with no delay run after the next tick.
+    @SuppressWarnings("PMD.AvoidCatchingGenericException") // A failed task mustn't stop the rest running
+    /* default */ void advance(long millis)
+    {
+        long now = nowMillis + millis;
+        nowMillis = now;
+        synchronized (timers) {
+            Timer next;
+            while ((next = timers.peek()) != null && next.dueMillis <= now) {
+                due.add(timers.poll());
+            }
+        }
+        for (Timer timer : due) {
+            if (!timer.cancelled) {
+                try {
+                    timer.task.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.SEVERE, "Simulation timer task failed", e);
+                }
+            }
+        }
+        due.clear();
+    }
+
+    // A task waiting for its simulated time. Timers due at the same time run by order, then in the
+    // order scheduled.
+    public static final class Timer implements Comparable<Timer>
+    {
+        private final long dueMillis;
+        private final int order;
+        private final long sequence;
+        private final Runnable task;
+        private volatile boolean cancelled;
+
+        private Timer(long dueMillis, int order, long sequence, Runnable task)
+        {
+            this.dueMillis = dueMillis;
+            this.order = order;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        // Stops the task running, if it hasn't already. It stays queued until due, but does nothing.
+        public void cancel()
+        {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Timer other)
+        {
+            int result = Long.compare(dueMillis, other.dueMillis);
+            if (result == 0) {
+                result = Integer.compare(order, other.order);
+            }
+            return result == 0 ? Long.compare(sequence, other.sequence) : result;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package edu.curtin.saed.assignment1;
+
+// Tunable parameters for a simulation run. The defaults reproduce the original interactive simulator.
+public class SimulationConfig
+{
+    private int gridSize = 10;
+    private int airports = 10;
+    private int planesPerAirport = 10;
+    private double speed = 10.0;
+    private double timeScale = 1.0;
+    private long turnaroundMillis = 500;
+    private int tickThreads = Runtime.getRuntime().availableProcessors();
+    private double minimumSeparation;
+    private boolean virtualPlaneThreads;
+    private int pendingRequestsPerAirport = 16;
+    private PendingRequestQueue.OverflowPolicy overflowPolicy = PendingRequestQueue.OverflowPolicy.REJECT;
+    private int routeCacheSize = 4096;
+    private int landingsPerWindow;
+    private long landingWindowMillis = 1000;
+    private int gatesPerAirport;
+    private int shards;
+    private boolean shardPositionsEveryTick = true;
+    private boolean replaying;
+
+    public int getGridSize() { return gridSize; }
+    public int getAirports() { return airports; }
+    public int getPlanesPerAirport() { return planesPerAirport; }
+    public double getSpeed() { return speed; }
+    public double getTimeScale() { return timeScale; }
+    public long getTurnaroundMillis() { return turnaroundMillis; }
+    public int getTickThreads() { return tickThreads; }
+    public double getMinimumSeparation() { return minimumSeparation; }
+    public boolean isVirtualPlaneThreads() { return virtualPlaneThreads; }
+    public int getPendingRequestsPerAirport() { return pendingRequestsPerAirport; }
+    public PendingRequestQueue.OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+    public int getRouteCacheSize() { return routeCacheSize; }
+    public int getLandingsPerWindow() { return landingsPerWindow; }
+    public long getLandingWindowMillis() { return landingWindowMillis; }
+    public int getGatesPerAirport() { return gatesPerAirport; }
+    public int getShards() { return shards; }
+    public boolean isShardPositionsEveryTick() { return shardPositionsEveryTick; }
+    public boolean isReplaying() { return replaying; }
+
+    public void setGridSize(int gridSize)
+    {
+        this.gridSize = gridSize;
+    }
+
+    public void setAirports(int airports)
+    {
+        this.airports = airports;
+    }
+
+    public void setPlanesPerAirport(int planesPerAirport)
+    {
+        this.planesPerAirport = planesPerAirport;
+    }
+
+    public void setSpeed(double speed)
+    {
+        this.speed = speed;
+    }
+
+    // How many times faster than real time the simulation runs, up to SimulationClock.MAX_TIME_SCALE,
+    // or SimulationClock.AS_FAST_AS_POSSIBLE to run ticks back-to-back
+    public void setTimeScale(double timeScale)
+    {
+        this.timeScale = timeScale;
+    }
+
+    // Pause, in simulated time, between a plane finishing one trip and accepting its next request
+    public void setTurnaroundMillis(long turnaroundMillis)
+    {
+        this.turnaroundMillis = turnaroundMillis;
+    }
+
+    // Threads that move planes during a tick. Only fleets of many thousands of flying planes are
+    // split up; the outcome of each tick doesn't depend on this setting.
+    public void setTickThreads(int tickThreads)
+    {
+        this.tickThreads = tickThreads;
+    }
+
+    // Planes in flight closer than this (in grid squares) are reported as a separation conflict.
+    // Zero or less turns separation monitoring off.
+    public void setMinimumSeparation(double minimumSeparation)
+    {
+        this.minimumSeparation = minimumSeparation;
+    }
+
+    // Runs each plane's request -> fly -> service loop on a virtual thread rather than a platform
+    // thread, so that a parked plane costs a small heap object instead of a thread stack
+    public void setVirtualPlaneThreads(boolean virtualPlaneThreads)
+    {
+        this.virtualPlaneThreads = virtualPlaneThreads;
+    }
+
+    // Requests each airport can hold while no plane is free; zero drops them straight away, as the
+    // original simulator did
+    public void setPendingRequestsPerAirport(int pendingRequestsPerAirport)
+    {
+        this.pendingRequestsPerAirport = pendingRequestsPerAirport;
+    }
+
+    // What happens to a request when its airport's pending queue is full
+    public void setOverflowPolicy(PendingRequestQueue.OverflowPolicy overflowPolicy)
+    {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    // Routes between airport pairs kept for reuse; past that, the least recently flown are searched
+    // for again when next needed
+    public void setRouteCacheSize(int routeCacheSize)
+    {
+        this.routeCacheSize = routeCacheSize;
+    }
+
+    // Landings each airport's runways can take in a landing window; planes arriving once they're
+    // used up hold until a later window. Zero lets any number land, as the original simulator did.
+    public void setLandingsPerWindow(int landingsPerWindow)
+    {
+        this.landingsPerWindow = landingsPerWindow;
+    }
+
+    // Length of a landing window, in simulated millis
+    public void setLandingWindowMillis(long landingWindowMillis)
+    {
+        this.landingWindowMillis = landingWindowMillis;
+    }
+
+    // Planes each airport can service at once; planes landing while every gate is taken wait for one.
+    // Zero services every plane as soon as it lands, as the original simulator did.
+    public void setGatesPerAirport(int gatesPerAirport)
+    {
+        this.gatesPerAirport = gatesPerAirport;
+    }
+
+    // Worker JVMs that step flights, each in its own strip of the grid (see ShardCoordinator), sharing
+    // the tick threads between them. Zero steps them in this JVM; flights land on the same ticks either way.
+    public void setShards(int shards)
+    {
+        this.shards = shards;
+    }
+
+    // Whether sharded runs fetch every flight's position every tick, as front ends that draw planes
+    // need; otherwise positions are only fetched for separation checks and snapshots
+    public void setShardPositionsEveryTick(boolean shardPositionsEveryTick)
+    {
+        this.shardPositionsEveryTick = shardPositionsEveryTick;
+    }
+
+    // Planes are dispatched, and requests turned away, only as a run log says (see RunReplay)
+    public void setReplaying(boolean replaying)
+    {
+        this.replaying = replaying;
+    }
+}
@@ -0,0 +1,433 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Fixed-timestep engine that advances every in-flight plane once per tick on a single scheduler
+// thread, instead of dedicating a sleeping thread to each flight. Flight state lives in a FleetStore,
+// so a tick allocates nothing however many planes are flying. Every tick is TICK_MILLIS of simulated
+// time; the SimulationClock's time scale decides how much wall-clock time the engine spends on each.
+//
+// With a ShardCoordinator, flights are stepped in worker JVMs instead, and the FleetStore here only
+// mirrors them; everything else about a tick is the same.
+public class SimulationEngine
+{
+    private static final Logger LOGGER = Logger.getLogger(SimulationEngine.class.getName());
+    public static final long TICK_MILLIS = 25; // Matches the old per-plane sleep, so SPEED keeps its meaning
+    private static final long MAX_LAG_NANOS = 100_000_000L; // Further behind than this and the clock slips
+    private static final long MAX_HOLD_NANOS = 1_000_000_000L; // Longest a tick waits for a held clock
+    private static final long IDLE_NANOS = 1_000_000L; // How often tasks between ticks run once at the tick limit
+    private static final Comparator<PlaneMovement> BY_PLANE = Comparator.comparingInt(movement -> movement.getPlane().getId());
+
+    // Receives the results of each tick on the engine thread; implementations must not block.
+    // planesMoved() gets the planes still in flight after the tick and must not keep the store.
+    public interface TickListener
+    {
+        void planesMoved(FleetStore fleet);
+        void planeArrived(Plane plane, Airport destination);
+        void separationConflict(Plane first, Plane second, double distance);
+        void tickCompleted();
+    }
+
+    // Receives each flight, for snapshots: where it is along its route, or a segment of -1 for a
+    // flight launched since the last tick, which is still at its origin
+    public interface FlightVisitor
+    {
+        void flight(PlaneMovement movement, double x, double y, int segment, double segmentLeft, double routeLeft);
+    }
+
+    private final TickListener listener;
+    private final SimulationClock clock;
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong separationConflicts = new AtomicLong();
+    private volatile int activeConflicts;
+    private final Queue<PlaneMovement> launched = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> betweenTicks = new ConcurrentLinkedQueue<>();
+    private final FleetStore fleet; // Only touched by the tick thread while running
+    private final int tickThreads;
+    private ForkJoinPool tickPool; // Null when ticks run on the engine thread alone
+    private SeparationMonitor separation; // Null when separation isn't monitored
+    private RunwayScheduler runways; // Null when landings aren't limited
+    private ShardCoordinator shards; // Null when flights are stepped in this JVM
+    private boolean shardPositions; // Whether every tick fetches every flight's position from the shards
+    private final List<PlaneMovement> retired = new ArrayList<>();
+    private ExecutorService scheduler;
+    private volatile Thread engineThread;
+    private volatile long tickLimit = Long.MAX_VALUE;
+    private volatile boolean atTickLimit;
+
+    // Runs in real time
+    public SimulationEngine(TickListener listener, int planeCount)
+    {
+        this(listener, new SimulationClock(1.0), planeCount, 1);
+    }
+
+    // Plane IDs must be below planeCount. With tickThreads above 1, large fleets are moved by that
+    // many threads.
+    public SimulationEngine(TickListener listener, SimulationClock clock, int planeCount, int tickThreads)
+    {
+        this.listener = listener;
+        this.clock = clock;
+        this.fleet = new FleetStore(planeCount);
+        this.tickThreads = tickThreads;
+    }
+
+    public SimulationClock getClock()
+    {
+        return clock;
+    }
+
+    // True on the thread that runs ticks, listener callbacks and clock timers, which must never block
+    @SuppressWarnings("PMD.CompareObjectsWithEquals") // Thread identity is exactly what's being asked
+    public boolean isEngineThread()
+    {
+        return Thread.currentThread() == engineThread;
+    }
+
+    public long getTicks()
+    {
+        return ticks.get();
+    }
+
+    // Stops ticking once the tick count reaches 'limit', though the engine keeps running tasks between
+    // ticks until stopped. Call before start().
+    public void setTickLimit(long limit)
+    {
+        tickLimit = limit;
+    }
+
+    // True once the tick limit has been reached and every thread woken by the last tick has acted
+    public boolean isAtTickLimit()
+    {
+        return atTickLimit;
+    }
+
+    public long getSeparationConflicts()
+    {
+        return separationConflicts.get();
+    }
+
+    public int getActiveConflicts()
+    {
+        return activeConflicts;
+    }
+
+    // Reports planes in flight that come closer than this to each other; zero or less turns it off.
+    // Call before start().
+    public void setMinimumSeparation(double minimum)
+    {
+        separation = minimum > 0.0 ? new SeparationMonitor(minimum) : null;
+    }
+
+    // Makes flights that reach their destination wait for a landing slot there, holding until they
+    // get one. Call before start().
+    public void setRunways(RunwayScheduler runways)
+    {
+        this.runways = runways;
+    }
+
+    // Steps flights in the coordinator's worker JVMs, started along with the engine. Unless
+    // 'positionsEveryTick', the fleet's positions are only brought up to date for separation checks and
+    // snapshots, which is enough when listeners only count flights. Call before start().
+    public void setShards(ShardCoordinator shards, boolean positionsEveryTick)
+    {
+        this.shards = shards;
+        this.shardPositions = positionsEveryTick;
+    }
+
+    public void start()
+    {
+        if (scheduler != null) {
+            return;
+        }
+        if (shards != null) {
+            try {
+                shards.start(fleet);
+            } catch (IOException e) {
+                // Flights step the same way here, just with less room to grow
+                LOGGER.log(Level.SEVERE, "Cannot start shard workers; stepping flights in this JVM", e);
+                shards.stop();
+                shards = null;
+            }
+        }
+        if (tickThreads > 1 && shards == null) {
+            tickPool = new ForkJoinPool(tickThreads);
+        }
+        clock.clearHolds();
+        scheduler = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "simulation-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::run);
+    }
+
+    // Ticks at the clock's rate until interrupted. A tick that overruns is made up by running the next
+    // ones back-to-back, so at high time scales several ticks go by per scheduling quantum. If the CPU
+    // can't keep up at all, simulated time falls behind the scale rather than racing to catch up.
+    private void run()
+    {
+        engineThread = Thread.currentThread();
+        long nextTick = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            if (ticks.get() >= tickLimit) {
+                clock.awaitReleased(MAX_HOLD_NANOS);
+                boolean settled = betweenTicks.isEmpty(); // Else tasks may wake threads that have yet to act
+                runQueuedTasks();
+                if (settled) {
+                    atTickLimit = true;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            long tickNanos = clock.getTickNanos(); // Read every tick, so the scale can change while running
+            if (tickNanos > 0) {
+                long wait = nextTick - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    continue; // Check for an interrupt, or a new time scale, before ticking
+                }
+                if (-wait > MAX_LAG_NANOS) {
+                    nextTick = System.nanoTime();
+                }
+                nextTick += tickNanos;
+            }
+            clock.awaitReleased(MAX_HOLD_NANOS);
+            runQueuedTasks();
+            clock.awaitReleased(MAX_HOLD_NANOS); // And for planes those tasks dispatched, so they launch this tick
+            safeTick();
+        }
+    }
+
+    public void stop()
+    {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOGGER.warning("Simulation engine did not stop within 5 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+        if (tickPool != null) {
+            tickPool.shutdownNow();
+            tickPool = null;
+        }
+        if (shards != null) {
+            shards.stop();
+        }
+
+        // Release any plane threads still waiting on flights that will never be stepped again
+        PlaneMovement movement;
+        while ((movement = launched.poll()) != null) {
+            movement.finish();
+        }
+        fleet.clear(retired);
+        if (runways != null) {
+            runways.clear(retired);
+        }
+        for (PlaneMovement inFlight : retired) {
+            inFlight.finish();
+        }
+        retired.clear();
+    }
+
+    // Runs the task on the engine thread before the next tick, once every thread woken by the last
+    // one has acted on it and released the clock. Nothing in the simulation moves while it runs, so
+    // it sees a consistent state, but it holds up the next tick, so it should be quick. Tasks queued
+    // while the engine is stopped run once it starts. Safe to call from any thread.
+    public void runBetweenTicks(Runnable task)
+    {
+        betweenTicks.add(task);
+    }
+
+    // Carries on from a snapshot's tick counts. Call before start().
+    /* default */ void restore(long tickCount, long conflictCount)
+    {
+        ticks.set(tickCount);
+        separationConflicts.set(conflictCount);
+    }
+
+    // Puts a flight back part-way along its route, as a snapshot caught it, to carry on from the
+    // first tick. Call before start().
+    /* default */ void resume(PlaneMovement movement, double x, double y, int segment, double segmentLeft,
+                              double routeLeft)
+    {
+        fleet.resume(movement, x, y, segment, segmentLeft, routeLeft);
+    }
+
+    // Calls the visitor for every flight, in the order they are stepped. Flights holding for a landing
+    // slot are left to the RunwayScheduler. Only from a runBetweenTicks() task.
+    /* default */ void forEachFlight(FlightVisitor visitor)
+    {
+        if (shards != null) {
+            try {
+                shards.sync(fleet);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            visitor.flight(fleet.getMovement(slot), fleet.getX(slot), fleet.getY(slot), fleet.getSegment(slot),
+                    fleet.getSegmentLeft(slot), fleet.getRouteLeft(slot));
+        }
+        for (PlaneMovement movement : launched) {
+            if (movement.isRunning()) {
+                Plane plane = movement.getPlane();
+                visitor.flight(movement, plane.getX(), plane.getY(), -1, 0.0, 0.0);
+            }
+        }
+    }
+
+    // Hands a flight to the engine; it starts moving on the next tick. Safe to call from any thread.
+    public PlaneMovement launch(Plane plane, Airport destination, double speed)
+    {
+        return launch(plane, destination, speed, null);
+    }
+
+    // As above, but flying along 'route' rather than straight to the destination
+    public PlaneMovement launch(Plane plane, Airport destination, double speed, Route route)
+    {
+        PlaneMovement movement = new PlaneMovement(plane, destination, speed, route);
+        launched.add(movement);
+        return movement;
+    }
+
+    @SuppressWarnings("PMD.AvoidCatchingGenericException") // As in safeTick(), one failure mustn't stop the engine
+    private void runQueuedTasks()
+    {
+        Runnable task;
+        while ((task = betweenTicks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Task between ticks failed", e);
+            }
+        }
+    }
+
+    // Sends each flight from 'from' on in 'retired' that has reached its destination into the hold
+    // there if it can't land yet, leaving the rest. Flights are taken in plane order, as the order
+    // planes were launched in, and so their order in the fleet, depends on their threads.
+    private void holdArrivals(int from)
+    {
+        long now = clock.millis();
+        retired.subList(from, retired.size()).sort(BY_PLANE);
+        int kept = from;
+        for (int i = from; i < retired.size(); i++) {
+            PlaneMovement done = retired.get(i);
+            if (!done.hasArrived() || runways.land(done, now)) {
+                retired.set(kept++, done);
+            }
+        }
+        retired.subList(kept, retired.size()).clear();
+    }
+
+    private void checkSeparation()
+    {
+        separation.check(fleet);
+        int newConflicts = separation.getNewConflictCount();
+        for (int i = 0; i < newConflicts; i++) {
+            listener.separationConflict(fleet.getPlane(separation.getNewConflictFirst(i)),
+                    fleet.getPlane(separation.getNewConflictSecond(i)), separation.getNewConflictDistance(i));
+        }
+        separationConflicts.addAndGet(newConflicts);
+        activeConflicts = separation.getActiveConflicts();
+    }
+
+    @SuppressWarnings("PMD.AvoidCatchingGenericException") // Whatever a tick throws, the next must still run
+    private void safeTick()
+    {
+        // An exception escaping a scheduled task silently cancels all later ticks, so log and carry on,
+        // unless the shard workers have gone, taking their flights with them
+        try {
+            tick();
+        } catch (UncheckedIOException e) {
+            if (!(e.getCause() instanceof ClosedByInterruptException)) { // Else stop() interrupted the tick
+                LOGGER.log(Level.SEVERE, "Lost the shard workers; stopping the simulation", e);
+            }
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Simulation tick failed", e);
+        }
+    }
+
+    private void tick()
+    {
+        PlaneMovement movement;
+        while ((movement = launched.poll()) != null) {
+            if (movement.isRunning() && fleet.add(movement)) {
+                if (shards != null) {
+                    shards.launch(fleet, fleet.size() - 1);
+                }
+            } else {
+                retired.add(movement); // Stopped before take-off, or its plane is somehow already flying
+            }
+        }
+
+        if (shards != null) {
+            try {
+                shards.advance(fleet, shardPositions || separation != null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            fleet.advance(tickPool);
+        }
+        int firstRemoved = retired.size();
+        if (runways != null) {
+            runways.landHolding(clock.millis(), retired); // Before this tick's arrivals, which mustn't jump the queue
+        }
+        int firstFinished = retired.size();
+        fleet.removeFinished(retired);
+        if (shards != null) {
+            shards.retire(retired, firstFinished);
+        }
+        if (runways != null) {
+            holdArrivals(firstFinished);
+        }
+        for (int i = firstRemoved; i < retired.size(); i++) {
+            PlaneMovement done = retired.get(i);
+            if (done.hasArrived()) {
+                Airport destination = done.getDestination();
+                done.getPlane().setPosition(destination.getX(), destination.getY());
+                listener.planeArrived(done.getPlane(), destination);
+            }
+        }
+        if (separation != null) {
+            checkSeparation();
+        }
+        listener.planesMoved(fleet);
+
+        ticks.incrementAndGet();
+        listener.tickCompleted();
+        clock.advance(TICK_MILLIS);
+
+        // Only wake the waiting plane threads once this tick's updates have been published and the
+        // clock has moved on, so they all see the same time. Each one holds the clock until it has
+        // acted on its flight ending.
+        for (PlaneMovement done : retired) {
+            clock.hold();
+            done.finish();
+        }
+        retired.clear();
+    }
+}
@@ -0,0 +1,138 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.Locale;
+
+// One entry in the simulation's event log. Events hold IDs rather than finished text, so raising one
+// costs a small allocation and no string building; the text is only formatted if something actually
+// shows or writes the event.
+public final class SimulationEvent
+{
+    public static final int NONE = -1; // For IDs that don't apply to an event type
+
+    // Each type's text is a format string over (plane ID, airport ID, other airport ID, detail,
+    // other plane ID)
+    public enum Type
+    {
+        INFO("%4$s"),
+        ERROR("Error: %4$s"),
+        INVALID_REQUEST("Error: Invalid flight request '%4$s' from Airport %2$d."),
+        INVALID_DESTINATION("Error: Invalid destination airport %3$d from Airport %2$d."),
+        UNKNOWN_ORIGIN("Error: Flight request from unknown airport %2$d."),
+        NO_PLANE_AVAILABLE("No available planes to handle request from Airport %2$d to Airport %3$d."),
+        REQUEST_QUEUED("No available planes: request from Airport %2$d to Airport %3$d is waiting for one."),
+        REQUEST_DROPPED("Request from Airport %2$d to Airport %3$d dropped from a full queue."),
+        FLIGHT_DISPATCHED("Flight request: Plane %1$d to Airport %3$d."),
+        ARRIVED("Plane %1$d arrived at Airport %2$d."),
+        SERVICE_OUTPUT("%4$s"),
+        SERVICE_COMPLETED("Plane %1$d has completed servicing at Airport %2$d."),
+        SERVICE_FAILED("Servicing failed for Plane %1$d."),
+        REQUESTS_STOPPED("Flight requests from Airport %2$d have stopped."),
+        SEPARATION_CONFLICT("Separation conflict: Plane %1$d and Plane %5$d are too close.");
+
+        private final String format;
+
+        Type(String format)
+        {
+            this.format = format;
+        }
+    }
+
+    private final Type type;
+    private final long timeMillis;
+    private final int planeId;
+    private final int airportId;
+    private final int otherAirportId;
+    private final String detail;
+    private final int otherPlaneId;
+    private long sequence = -1; // Assigned by the EventLog the event is appended to
+    private String text;
+
+    public SimulationEvent(Type type, int planeId, int airportId, int otherAirportId, String detail)
+    {
+        this(type, planeId, airportId, otherAirportId, detail, NONE);
+    }
+
+    public SimulationEvent(Type type, int planeId, int airportId, int otherAirportId, String detail, int otherPlaneId)
+    {
+        this.type = type;
+        this.timeMillis = System.currentTimeMillis();
+        this.planeId = planeId;
+        this.airportId = airportId;
+        this.otherAirportId = otherAirportId;
+        this.detail = detail;
+        this.otherPlaneId = otherPlaneId;
+    }
+
+    public static SimulationEvent info(String text)
+    {
+        return new SimulationEvent(Type.INFO, NONE, NONE, NONE, text);
+    }
+
+    public static SimulationEvent error(String text)
+    {
+        return new SimulationEvent(Type.ERROR, NONE, NONE, NONE, text);
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public long getTimeMillis()
+    {
+        return timeMillis;
+    }
+
+    public int getPlaneId()
+    {
+        return planeId;
+    }
+
+    public int getAirportId()
+    {
+        return airportId;
+    }
+
+    public int getOtherAirportId()
+    {
+        return otherAirportId;
+    }
+
+    public String getDetail()
+    {
+        return detail;
+    }
+
+    public int getOtherPlaneId()
+    {
+        return otherPlaneId;
+    }
+
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    /* default */ void setSequence(long sequence)
+    {
+        this.sequence = sequence;
+    }
+
+    // The human-readable message, formatted on first use. Racing threads may both format it, but
+    // they produce the same string, so the unsynchronised cache is harmless.
+    public String getText()
+    {
+        String result = text;
+        if (result == null) {
+            result = String.format(Locale.ROOT, type.format, planeId, airportId, otherAirportId, detail, otherPlaneId);
+            text = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getText(); // What ListView cells display
+    }
+}
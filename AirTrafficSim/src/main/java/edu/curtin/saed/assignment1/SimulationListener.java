@@ -0,0 +1,10 @@
+package edu.curtin.saed.assignment1;
+
+// Receives everything a front end needs to show the simulation. The tick callbacks inherited from
+// SimulationEngine.TickListener arrive on the engine thread; event() and statsChanged() may arrive
+// on any simulation thread. Implementations are responsible for any hand-off to a UI thread.
+public interface SimulationListener extends SimulationEngine.TickListener
+{
+    void event(SimulationEvent event);
+    void statsChanged(SimulationStats stats);
+}
@@ -0,0 +1,611 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+// The full state of a running simulation at a tick boundary, from which a new one can carry on as if
+// it had run up to that tick itself: simulated time and tick counts, counters, the state of the
+// random number streams, each plane's airport, every flight's position along its route, the planes
+// holding for a landing slot and the slots used so far, planes on the ground with their turnaround and
+// servicing time left, the planes waiting for a gate, the idle pools in the order they hand planes
+// out, and the requests waiting for a plane.
+//
+// AirTrafficSimulation.snapshot() copies the state into primitive arrays between two ticks, which
+// holds up the engine for about as long as copying the arrays takes; encoding and writing the file
+// happen afterwards, on whichever thread calls write(). load() memory-maps the file, so restoring
+// costs about the same as reading it, with no scenario to parse or place and no warm-up to re-run.
+//
+// Layout, all big-endian: MAGIC, VERSION (short), seed (long), grid size (int), speed (double),
+// request rate (double), turnaround millis (long), pending requests per airport (int), overflow
+// policy ordinal (byte), landings per window (int), landing window millis (long), gates per airport
+// (int), airport count (int), then x, y and plane count (ints) per airport, restricted
+// area count (int), then x, y, width and height (ints) per area; simulated millis, ticks and
+// separation conflicts (longs), planes serviced and completed trips (ints), dispatcher and request
+// queue scan starts (ints); counter count (int), then name and value (long) per counter; random
+// stream count (int), then name, length (int) and serialised java.util.Random per stream; plane
+// count (int), then each plane's airport (int); flight count (int), then plane, destination and
+// segment (ints), x, y, distance left on the segment and on the route (doubles) per flight; holding
+// count (int), then plane and destination (ints) and holding since (long) per flight; last landing
+// window let land in (long), count of airports with landings in the window under way (int), then
+// airport and landings (ints) per airport; grounded
+// count (int), then plane (int), turnaround left, servicing start and servicing left (longs) per
+// plane; gate waiting count (int), then plane (int) and waiting since (long) per plane, in the order
+// they get gates; idle count (int), then plane IDs; waiting request count (int), then origin and
+// destination (ints) per request. Names are a length (short) and UTF-8 bytes.
+public class SimulationSnapshot
+{
+    /* default */ static final int MAGIC = 0x41545353; // "ATSS"
+    /* default */ static final short VERSION = 2;
+    /* default */ static final long NOT_SERVICING = -1; // Servicing start of a plane whose servicing is over
+
+    private final Scenario scenario;
+    private final double speed;
+    private final long turnaroundMillis;
+    private final int pendingRequestsPerAirport;
+    private final PendingRequestQueue.OverflowPolicy overflowPolicy;
+    private final int landingsPerWindow;
+    private final long landingWindowMillis;
+    private final int gatesPerAirport;
+    private long clockMillis;
+    private long ticks;
+    private long separationConflicts;
+    private int planesServiced;
+    private int completedTrips;
+    private int dispatcherScanStart;
+    private int requestScanStart;
+    private final Map<String, Long> counters = new TreeMap<>();
+    private final Map<String, byte[]> randomStates = new LinkedHashMap<>();
+    private final int[] planeAirports;
+
+    // Flights, in the order the engine steps them; a segment of -1 is a flight yet to take off
+    private int flightCount;
+    private int[] flightPlanes;
+    private int[] flightDestinations;
+    private int[] flightSegments;
+    private double[] flightX;
+    private double[] flightY;
+    private double[] flightSegmentLeft;
+    private double[] flightRouteLeft;
+
+    // Flights holding for a landing slot, and the landings so far in the window under way
+    private int holdingCount;
+    private int[] holdingPlanes;
+    private int[] holdingDestinations;
+    private long[] holdingSince;
+    private long lastLandingWindow = -1;
+    private int landingAirportCount;
+    private int[] landingAirports = new int[16];
+    private int[] landingCounts = new int[16];
+
+    // Planes on the ground that aren't free yet
+    private int groundedCount;
+    private int[] groundedPlanes;
+    private long[] turnaroundLeft; // Zero or less once the turnaround is over
+    private long[] servicingStart; // Simulated millis, or NOT_SERVICING
+    private long[] servicingLeft;   // As from PlaneServiceProvider.getRemainingMillis()
+
+    // Grounded planes waiting for a gate, in the order they get one
+    private int gateWaitingCount;
+    private int[] gateWaitingPlanes;
+    private long[] gateWaitingSince;
+
+    private int idleCount;
+    private int[] idlePlanes;
+    private int waitingCount;
+    private int[] waitingRequests = new int[16]; // Origin, destination pairs
+
+    // An empty snapshot for AirTrafficSimulation to fill in
+    /* default */ SimulationSnapshot(Scenario scenario, SimulationConfig config)
+    {
+        this(scenario, config.getSpeed(), config.getTurnaroundMillis(), config.getPendingRequestsPerAirport(),
+                config.getOverflowPolicy(), config.getLandingsPerWindow(), config.getLandingWindowMillis(),
+                config.getGatesPerAirport());
+        int planeCount = scenario.getPlaneCount();
+        flightPlanes = new int[planeCount];
+        flightDestinations = new int[planeCount];
+        flightSegments = new int[planeCount];
+        flightX = new double[planeCount];
+        flightY = new double[planeCount];
+        flightSegmentLeft = new double[planeCount];
+        flightRouteLeft = new double[planeCount];
+        holdingPlanes = new int[planeCount];
+        holdingDestinations = new int[planeCount];
+        holdingSince = new long[planeCount];
+        groundedPlanes = new int[planeCount];
+        turnaroundLeft = new long[planeCount];
+        servicingStart = new long[planeCount];
+        servicingLeft = new long[planeCount];
+        gateWaitingPlanes = new int[planeCount];
+        gateWaitingSince = new long[planeCount];
+        idlePlanes = new int[planeCount];
+    }
+
+    private SimulationSnapshot(Scenario scenario, double speed, long turnaroundMillis, int pendingRequestsPerAirport,
+                               PendingRequestQueue.OverflowPolicy overflowPolicy, int landingsPerWindow,
+                               long landingWindowMillis, int gatesPerAirport)
+    {
+        this.scenario = scenario;
+        this.speed = speed;
+        this.turnaroundMillis = turnaroundMillis;
+        this.pendingRequestsPerAirport = pendingRequestsPerAirport;
+        this.overflowPolicy = overflowPolicy;
+        this.landingsPerWindow = landingsPerWindow;
+        this.landingWindowMillis = landingWindowMillis;
+        this.gatesPerAirport = gatesPerAirport;
+        this.planeAirports = new int[scenario.getPlaneCount()];
+    }
+
+    public Scenario getScenario()
+    {
+        return scenario;
+    }
+
+    // Sets up the config as it was for the snapshotted run, apart from the time scale and thread counts
+    public void applyTo(SimulationConfig config)
+    {
+        scenario.applyTo(config);
+        config.setSpeed(speed);
+        config.setTurnaroundMillis(turnaroundMillis);
+        config.setPendingRequestsPerAirport(pendingRequestsPerAirport);
+        config.setOverflowPolicy(overflowPolicy);
+        config.setLandingsPerWindow(landingsPerWindow);
+        config.setLandingWindowMillis(landingWindowMillis);
+        config.setGatesPerAirport(gatesPerAirport);
+    }
+
+    public long getClockMillis() { return clockMillis; }
+    public long getTicks() { return ticks; }
+    public int getFlightCount() { return flightCount; }
+    public int getWaitingCount() { return waitingCount; }
+
+    // A copy of the named random number stream as it was, or null if the snapshot doesn't have it
+    public Random getRandom(String name)
+    {
+        byte[] state = randomStates.get(name);
+        if (state == null) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(state))) {
+            in.setObjectInputFilter(ObjectInputFilter.Config.createFilter("java.util.Random;!*"));
+            return (Random) in.readObject();
+        } catch (InvalidClassException | ClassNotFoundException e) {
+            throw new IllegalArgumentException("Random stream '" + name + "' in the snapshot is not a java.util.Random", e);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Random stream '" + name + "' in the snapshot is corrupt", e);
+        }
+    }
+
+    /* default */ void setTime(long millis, long tickCount, long conflictCount)
+    {
+        clockMillis = millis;
+        ticks = tickCount;
+        separationConflicts = conflictCount;
+    }
+
+    /* default */ void setCounts(int serviced, int trips, int dispatcherScan, int requestScan)
+    {
+        planesServiced = serviced;
+        completedTrips = trips;
+        dispatcherScanStart = dispatcherScan;
+        requestScanStart = requestScan;
+    }
+
+    /* default */ Map<String, Long> getCounters() { return counters; }
+    /* default */ long getSeparationConflicts() { return separationConflicts; }
+    /* default */ int getPlanesServiced() { return planesServiced; }
+    /* default */ int getCompletedTrips() { return completedTrips; }
+    /* default */ int getDispatcherScanStart() { return dispatcherScanStart; }
+    /* default */ int getRequestScanStart() { return requestScanStart; }
+
+    /* default */ void addRandom(String name, Random random)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            synchronized (random) { // As its users draw from it, so a distribution's draws aren't split
+                out.writeObject(random);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // In memory, so not expected
+        }
+        randomStates.put(name, bytes.toByteArray());
+    }
+
+    /* default */ void setPlaneAirport(int plane, int airport) { planeAirports[plane] = airport; }
+    /* default */ int getPlaneAirport(int plane) { return planeAirports[plane]; }
+
+    /* default */ void addFlight(int plane, int destination, double x, double y, int segment, double segmentLeft,
+                                 double routeLeft)
+    {
+        int i = flightCount++;
+        flightPlanes[i] = plane;
+        flightDestinations[i] = destination;
+        flightSegments[i] = segment;
+        flightX[i] = x;
+        flightY[i] = y;
+        flightSegmentLeft[i] = segmentLeft;
+        flightRouteLeft[i] = routeLeft;
+    }
+
+    /* default */ int getFlightPlane(int flight) { return flightPlanes[flight]; }
+    /* default */ int getFlightDestination(int flight) { return flightDestinations[flight]; }
+    /* default */ int getFlightSegment(int flight) { return flightSegments[flight]; }
+    /* default */ double getFlightX(int flight) { return flightX[flight]; }
+    /* default */ double getFlightY(int flight) { return flightY[flight]; }
+    /* default */ double getFlightSegmentLeft(int flight) { return flightSegmentLeft[flight]; }
+    /* default */ double getFlightRouteLeft(int flight) { return flightRouteLeft[flight]; }
+
+    /* default */ void addHolding(int plane, int destination, long sinceMillis)
+    {
+        int i = holdingCount++;
+        holdingPlanes[i] = plane;
+        holdingDestinations[i] = destination;
+        holdingSince[i] = sinceMillis;
+    }
+
+    /* default */ int getHoldingCount() { return holdingCount; }
+    /* default */ int getHoldingPlane(int holding) { return holdingPlanes[holding]; }
+    /* default */ int getHoldingDestination(int holding) { return holdingDestinations[holding]; }
+    /* default */ long getHoldingSince(int holding) { return holdingSince[holding]; }
+
+    /* default */ void addLandings(int airport, int landings)
+    {
+        if (landingAirportCount == landingAirports.length) {
+            landingAirports = Arrays.copyOf(landingAirports, landingAirportCount * 2);
+            landingCounts = Arrays.copyOf(landingCounts, landingAirportCount * 2);
+        }
+        landingAirports[landingAirportCount] = airport;
+        landingCounts[landingAirportCount] = landings;
+        landingAirportCount++;
+    }
+
+    /* default */ int getLandingAirportCount() { return landingAirportCount; }
+    /* default */ int getLandingAirport(int i) { return landingAirports[i]; }
+    /* default */ int getLandings(int i) { return landingCounts[i]; }
+    /* default */ long getLastLandingWindow() { return lastLandingWindow; }
+    /* default */ void setLastLandingWindow(long window) { lastLandingWindow = window; }
+
+    /* default */ void addGrounded(int plane, long turnaround, long serviceStart, long serviceLeft)
+    {
+        int i = groundedCount++;
+        groundedPlanes[i] = plane;
+        turnaroundLeft[i] = turnaround;
+        servicingStart[i] = serviceStart;
+        servicingLeft[i] = serviceLeft;
+    }
+
+    /* default */ int getGroundedCount() { return groundedCount; }
+    /* default */ int getGroundedPlane(int grounded) { return groundedPlanes[grounded]; }
+    /* default */ long getTurnaroundLeft(int grounded) { return turnaroundLeft[grounded]; }
+    /* default */ long getServicingStart(int grounded) { return servicingStart[grounded]; }
+    /* default */ long getServicingLeft(int grounded) { return servicingLeft[grounded]; }
+
+    /* default */ void addGateWaiting(int plane, long sinceMillis)
+    {
+        int i = gateWaitingCount++;
+        gateWaitingPlanes[i] = plane;
+        gateWaitingSince[i] = sinceMillis;
+    }
+
+    /* default */ int getGateWaitingCount() { return gateWaitingCount; }
+    /* default */ int getGateWaitingPlane(int waiting) { return gateWaitingPlanes[waiting]; }
+    /* default */ long getGateWaitingSince(int waiting) { return gateWaitingSince[waiting]; }
+
+    /* default */ void addIdle(int plane)
+    {
+        idlePlanes[idleCount++] = plane;
+    }
+
+    /* default */ int getIdleCount() { return idleCount; }
+    /* default */ int getIdlePlane(int idle) { return idlePlanes[idle]; }
+
+    /* default */ void addWaiting(int origin, int destination)
+    {
+        if (waitingCount * 2 == waitingRequests.length) {
+            waitingRequests = Arrays.copyOf(waitingRequests, waitingRequests.length * 2);
+        }
+        waitingRequests[waitingCount * 2] = origin;
+        waitingRequests[waitingCount * 2 + 1] = destination;
+        waitingCount++;
+    }
+
+    /* default */ int getWaitingOrigin(int request) { return waitingRequests[request * 2]; }
+    /* default */ int getWaitingDestination(int request) { return waitingRequests[request * 2 + 1]; }
+
+    // Writes the snapshot to a temporary file beside 'path', then moves it into place, so a crash
+    // while writing never leaves a half-written snapshot where a good one was. Returns its size.
+    public long write(Path path) throws IOException
+    {
+        ByteBuffer buffer = encode();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return buffer.limit();
+    }
+
+    // Maps and decodes a snapshot. Throws IllegalArgumentException if the file isn't a readable one.
+    public static SimulationSnapshot load(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to restore (over 2 GB)");
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(in, path);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException(path + " is truncated", e);
+        }
+    }
+
+    private ByteBuffer encode()
+    {
+        int airports = scenario.getAirportCount();
+        int areas = scenario.getRestrictedAreaCount();
+        long size = 80L + airports * 12L + areas * 16L + 64L + planeAirports.length * 4L
+                + flightCount * 44L + holdingCount * 16L + landingAirportCount * 8L + groundedCount * 28L + gateWaitingCount * 12L + idleCount * 4L + waitingCount * 8L;
+        for (String name : counters.keySet()) {
+            size += 2 + name.length() * 3L + 8;
+        }
+        for (Map.Entry<String, byte[]> entry : randomStates.entrySet()) {
+            size += 2 + entry.getKey().length() * 3L + 4 + entry.getValue().length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Simulation is too large to snapshot (over 2 GB)");
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.putInt(MAGIC).putShort(VERSION).putLong(scenario.getSeed()).putInt(scenario.getGridSize())
+                .putDouble(speed).putDouble(scenario.getRequestRate()).putLong(turnaroundMillis)
+                .putInt(pendingRequestsPerAirport).put((byte) overflowPolicy.ordinal()).putInt(landingsPerWindow)
+                .putLong(landingWindowMillis).putInt(gatesPerAirport).putInt(airports);
+        for (int i = 0; i < airports; i++) {
+            out.putInt(scenario.getAirportX(i)).putInt(scenario.getAirportY(i)).putInt(scenario.getPlanes(i));
+        }
+        out.putInt(areas);
+        for (int a = 0; a < areas; a++) {
+            out.putInt(scenario.getRestrictedX(a)).putInt(scenario.getRestrictedY(a))
+                    .putInt(scenario.getRestrictedWidth(a)).putInt(scenario.getRestrictedHeight(a));
+        }
+        out.putLong(clockMillis).putLong(ticks).putLong(separationConflicts).putInt(planesServiced)
+                .putInt(completedTrips).putInt(dispatcherScanStart).putInt(requestScanStart);
+
+        out.putInt(counters.size());
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            putName(out, entry.getKey());
+            out.putLong(entry.getValue());
+        }
+        out.putInt(randomStates.size());
+        for (Map.Entry<String, byte[]> entry : randomStates.entrySet()) {
+            putName(out, entry.getKey());
+            out.putInt(entry.getValue().length).put(entry.getValue());
+        }
+
+        out.putInt(planeAirports.length);
+        for (int airport : planeAirports) {
+            out.putInt(airport);
+        }
+        out.putInt(flightCount);
+        for (int i = 0; i < flightCount; i++) {
+            out.putInt(flightPlanes[i]).putInt(flightDestinations[i]).putInt(flightSegments[i]).putDouble(flightX[i])
+                    .putDouble(flightY[i]).putDouble(flightSegmentLeft[i]).putDouble(flightRouteLeft[i]);
+        }
+        out.putInt(holdingCount);
+        for (int i = 0; i < holdingCount; i++) {
+            out.putInt(holdingPlanes[i]).putInt(holdingDestinations[i]).putLong(holdingSince[i]);
+        }
+        out.putLong(lastLandingWindow).putInt(landingAirportCount);
+        for (int i = 0; i < landingAirportCount; i++) {
+            out.putInt(landingAirports[i]).putInt(landingCounts[i]);
+        }
+        out.putInt(groundedCount);
+        for (int i = 0; i < groundedCount; i++) {
+            out.putInt(groundedPlanes[i]).putLong(turnaroundLeft[i]).putLong(servicingStart[i]).putLong(servicingLeft[i]);
+        }
+        out.putInt(gateWaitingCount);
+        for (int i = 0; i < gateWaitingCount; i++) {
+            out.putInt(gateWaitingPlanes[i]).putLong(gateWaitingSince[i]);
+        }
+        out.putInt(idleCount);
+        for (int i = 0; i < idleCount; i++) {
+            out.putInt(idlePlanes[i]);
+        }
+        out.putInt(waitingCount);
+        for (int i = 0; i < waitingCount * 2; i++) {
+            out.putInt(waitingRequests[i]);
+        }
+        return out.flip();
+    }
+
+    private static SimulationSnapshot decode(ByteBuffer in, Path path)
+    {
+        if (in.getInt() != MAGIC) {
+            throw new IllegalArgumentException(path + " is not a simulation snapshot");
+        }
+        short version = in.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(path + " is a version " + version + " snapshot; expected version "
+                    + VERSION);
+        }
+        long seed = in.getLong();
+        int gridSize = in.getInt();
+        double speed = in.getDouble();
+        double requestRate = in.getDouble();
+        long turnaround = in.getLong();
+        int pending = in.getInt();
+        int policy = in.get();
+        PendingRequestQueue.OverflowPolicy[] policies = PendingRequestQueue.OverflowPolicy.values();
+        if (policy < 0 || policy >= policies.length) {
+            throw new IllegalArgumentException(path + ": unknown overflow policy " + policy);
+        }
+        int landings = in.getInt();
+        long landingWindow = in.getLong();
+        int gates = in.getInt();
+        int airports = count(in, 3 * Integer.BYTES, path, "airport");
+        int[] x = new int[airports];
+        int[] y = new int[airports];
+        int[] planes = new int[airports];
+        for (int i = 0; i < airports; i++) {
+            x[i] = in.getInt();
+            y[i] = in.getInt();
+            planes[i] = in.getInt();
+        }
+        int[] restricted = new int[count(in, 4 * Integer.BYTES, path, "restricted area") * 4];
+        for (int i = 0; i < restricted.length; i++) {
+            restricted[i] = in.getInt();
+        }
+        Scenario scenario = new Scenario(gridSize, seed, speed, requestRate, airports, x, y, planes, restricted);
+        SimulationSnapshot snapshot = new SimulationSnapshot(scenario, speed, turnaround, pending, policies[policy],
+                landings, landingWindow, gates);
+        snapshot.clockMillis = in.getLong();
+        snapshot.ticks = in.getLong();
+        snapshot.separationConflicts = in.getLong();
+        snapshot.planesServiced = in.getInt();
+        snapshot.completedTrips = in.getInt();
+        snapshot.dispatcherScanStart = in.getInt();
+        snapshot.requestScanStart = in.getInt();
+
+        int counterCount = count(in, 2 + Long.BYTES, path, "counter");
+        for (int i = 0; i < counterCount; i++) {
+            snapshot.counters.put(getName(in), in.getLong());
+        }
+        int randomCount = count(in, 2 + Integer.BYTES, path, "random stream");
+        for (int i = 0; i < randomCount; i++) {
+            String name = getName(in);
+            byte[] state = new byte[count(in, 1, path, "random state byte")];
+            in.get(state);
+            snapshot.randomStates.put(name, state);
+        }
+
+        int planeCount = count(in, Integer.BYTES, path, "plane");
+        if (planeCount != scenario.getPlaneCount()) {
+            throw new IllegalArgumentException(path + " has " + planeCount + " planes; its scenario has "
+                    + scenario.getPlaneCount());
+        }
+        for (int i = 0; i < planeCount; i++) {
+            snapshot.planeAirports[i] = checkId(in.getInt(), airports, path, "airport");
+        }
+
+        int flights = count(in, 3 * Integer.BYTES + 4 * Double.BYTES, path, "flight");
+        snapshot.flightPlanes = new int[flights];
+        snapshot.flightDestinations = new int[flights];
+        snapshot.flightSegments = new int[flights];
+        snapshot.flightX = new double[flights];
+        snapshot.flightY = new double[flights];
+        snapshot.flightSegmentLeft = new double[flights];
+        snapshot.flightRouteLeft = new double[flights];
+        for (int i = 0; i < flights; i++) {
+            int plane = checkId(in.getInt(), planeCount, path, "plane");
+            int destination = checkId(in.getInt(), airports, path, "airport");
+            int segment = in.getInt();
+            double atX = in.getDouble();
+            double atY = in.getDouble();
+            snapshot.addFlight(plane, destination, atX, atY, segment, in.getDouble(), in.getDouble());
+        }
+
+        int holding = count(in, 2 * Integer.BYTES + Long.BYTES, path, "holding flight");
+        snapshot.holdingPlanes = new int[holding];
+        snapshot.holdingDestinations = new int[holding];
+        snapshot.holdingSince = new long[holding];
+        for (int i = 0; i < holding; i++) {
+            int plane = checkId(in.getInt(), planeCount, path, "plane");
+            int destination = checkId(in.getInt(), airports, path, "airport");
+            snapshot.addHolding(plane, destination, in.getLong());
+        }
+        snapshot.lastLandingWindow = in.getLong();
+        int landingAirports = count(in, 2 * Integer.BYTES, path, "landing airport");
+        for (int i = 0; i < landingAirports; i++) {
+            int airport = checkId(in.getInt(), airports, path, "airport");
+            snapshot.addLandings(airport, in.getInt());
+        }
+
+        int grounded = count(in, Integer.BYTES + 3 * Long.BYTES, path, "grounded plane");
+        snapshot.groundedPlanes = new int[grounded];
+        snapshot.turnaroundLeft = new long[grounded];
+        snapshot.servicingStart = new long[grounded];
+        snapshot.servicingLeft = new long[grounded];
+        for (int i = 0; i < grounded; i++) {
+            int plane = checkId(in.getInt(), planeCount, path, "plane");
+            long turnaroundLeft = in.getLong();
+            long servicingStart = in.getLong();
+            snapshot.addGrounded(plane, turnaroundLeft, servicingStart, in.getLong());
+        }
+
+        int gateWaiting = count(in, Integer.BYTES + Long.BYTES, path, "gate waiting plane");
+        snapshot.gateWaitingPlanes = new int[gateWaiting];
+        snapshot.gateWaitingSince = new long[gateWaiting];
+        for (int i = 0; i < gateWaiting; i++) {
+            int plane = checkId(in.getInt(), planeCount, path, "plane");
+            snapshot.addGateWaiting(plane, in.getLong());
+        }
+
+        int idle = count(in, Integer.BYTES, path, "idle plane");
+        snapshot.idlePlanes = new int[idle];
+        for (int i = 0; i < idle; i++) {
+            snapshot.addIdle(checkId(in.getInt(), planeCount, path, "plane"));
+        }
+
+        int waiting = count(in, 2 * Integer.BYTES, path, "waiting request");
+        snapshot.waitingRequests = new int[Math.max(2, waiting * 2)];
+        for (int i = 0; i < waiting; i++) {
+            int origin = checkId(in.getInt(), airports, path, "airport");
+            snapshot.addWaiting(origin, checkId(in.getInt(), airports, path, "airport"));
+        }
+        return snapshot;
+    }
+
+    // Reads a count of items that each take at least 'minBytes', checking the rest of the file can hold them
+    private static int count(ByteBuffer in, int minBytes, Path path, String what)
+    {
+        int count = in.getInt();
+        if (count < 0 || (long) count * minBytes > in.remaining()) {
+            throw new IllegalArgumentException(path + ": bad " + what + " count " + count);
+        }
+        return count;
+    }
+
+    private static int checkId(int id, int limit, Path path, String what)
+    {
+        if (id < 0 || id >= limit) {
+            throw new IllegalArgumentException(path + ": no such " + what + " " + id);
+        }
+        return id;
+    }
+
+    private static void putName(ByteBuffer out, String name)
+    {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getName(ByteBuffer in)
+    {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
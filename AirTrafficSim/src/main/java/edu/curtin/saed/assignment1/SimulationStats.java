@@ -0,0 +1,47 @@
+package edu.curtin.saed.assignment1;
+
+// Immutable snapshot of the simulation's counters at one point in time
+public class SimulationStats
+{
+    private final int planesServicing;
+    private final int planesServiced;
+    private final int totalCompletedTrips;
+    private final int planesInFlight;
+    private final long flightRequests;
+    private final long rejectedRequests;
+    private final long ticks;
+    private final long separationConflicts;
+    private final int activeConflicts;
+    private final int queuedRequests;
+
+    public SimulationStats(int planesServicing, int planesServiced, int totalCompletedTrips, int planesInFlight,
+                           long flightRequests, long rejectedRequests, long ticks, long separationConflicts,
+                           int activeConflicts, int queuedRequests)
+    {
+        this.planesServicing = planesServicing;
+        this.planesServiced = planesServiced;
+        this.totalCompletedTrips = totalCompletedTrips;
+        this.planesInFlight = planesInFlight;
+        this.flightRequests = flightRequests;
+        this.rejectedRequests = rejectedRequests;
+        this.ticks = ticks;
+        this.separationConflicts = separationConflicts;
+        this.activeConflicts = activeConflicts;
+        this.queuedRequests = queuedRequests;
+    }
+
+    public int getPlanesServicing() { return planesServicing; }
+    public int getPlanesServiced() { return planesServiced; }
+    public int getTotalCompletedTrips() { return totalCompletedTrips; }
+    public int getPlanesInFlight() { return planesInFlight; }
+    public long getFlightRequests() { return flightRequests; }
+    public long getRejectedRequests() { return rejectedRequests; }
+    public long getTicks() { return ticks; }
+
+    // Conflicts that have started so far, and pairs of planes in conflict as of the last tick
+    public long getSeparationConflicts() { return separationConflicts; }
+    public int getActiveConflicts() { return activeConflicts; }
+
+    // Requests waiting for a plane to free up, across all airports
+    public int getQueuedRequests() { return queuedRequests; }
+}
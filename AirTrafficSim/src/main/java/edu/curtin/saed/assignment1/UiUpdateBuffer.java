@@ -0,0 +1,153 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+// Lock-free hand-off between simulation threads and a UI that redraws once per frame. Producers only
+// ever overwrite the latest plane positions and append to a fixed-size event log; the UI pulls
+// whatever is pending when it next renders, so update cost no longer grows with the number of events.
+public class UiUpdateBuffer implements SimulationListener
+{
+    // Each plane's x and y are packed as two floats into one long so the pair is always read
+    // consistently without locking. Float precision is ample for on-screen grid coordinates.
+    private final AtomicLongArray positions;
+    private final AtomicLongArray moved; // One bit per plane whose position changed since the UI last looked
+    private final AtomicBoolean positionsDirty = new AtomicBoolean();
+    private final AtomicBoolean statsDirty = new AtomicBoolean(true);
+    private final EventLog eventLog;
+    private final LatencyHistogram frameLag;
+    private volatile long positionsDirtySince; // When positionsDirty last became true, by System.nanoTime()
+
+    // 'frameLag' receives the time from the first position update after a frame to the frame that
+    // picks it up, i.e. how long updates queue for the UI thread
+    public UiUpdateBuffer(int planeCount, EventLog eventLog, LatencyHistogram frameLag)
+    {
+        positions = new AtomicLongArray(planeCount);
+        moved = new AtomicLongArray((planeCount + 63) / 64);
+        this.eventLog = eventLog;
+        this.frameLag = frameLag;
+    }
+
+    // Positions are only copied once the UI has taken the last lot, so at high time scales the fleet
+    // is sampled at the display's frame rate rather than copied on every tick
+    @Override
+    public void planesMoved(FleetStore fleet)
+    {
+        if (positionsDirty.get()) {
+            return;
+        }
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            // Published by the dirty flag at the end of the tick
+            store(fleet.getPlaneId(slot), pack(fleet.getX(slot), fleet.getY(slot)));
+        }
+    }
+
+    @Override
+    public void planeArrived(Plane plane, Airport destination)
+    {
+        store(plane.getId(), pack(destination.getX(), destination.getY()));
+        eventLog.append(new SimulationEvent(SimulationEvent.Type.ARRIVED, plane.getId(), destination.getId(),
+                SimulationEvent.NONE, null));
+    }
+
+    @Override
+    public void separationConflict(Plane first, Plane second, double distance)
+    {
+        eventLog.append(new SimulationEvent(SimulationEvent.Type.SEPARATION_CONFLICT, first.getId(), SimulationEvent.NONE,
+                SimulationEvent.NONE, null, second.getId()));
+        statsDirty.set(true);
+    }
+
+    @Override
+    public void tickCompleted()
+    {
+        markPositionsDirty();
+    }
+
+    @Override
+    public void event(SimulationEvent event)
+    {
+        eventLog.append(event);
+    }
+
+    @Override
+    public void statsChanged(SimulationStats stats)
+    {
+        statsDirty.set(true);
+    }
+
+    // Used to seed positions before the first tick, and to place planes the UI moved itself
+    public void setPosition(int planeId, double x, double y)
+    {
+        store(planeId, pack(x, y));
+        markPositionsDirty();
+    }
+
+    // Planes sitting at an airport or holding still keep their bit clear, so the UI skips them
+    private void store(int planeId, long position)
+    {
+        if (positions.get(planeId) != position) {
+            positions.lazySet(planeId, position);
+            int word = planeId >>> 6;
+            long bit = 1L << planeId;
+            if ((moved.get(word) & bit) == 0) {
+                moved.getAndAccumulate(word, bit, (bits, add) -> bits | add);
+            }
+        }
+    }
+
+    private void markPositionsDirty()
+    {
+        if (!positionsDirty.get()) {
+            positionsDirtySince = System.nanoTime(); // Published by setting the flag
+            positionsDirty.set(true);
+        }
+    }
+
+    // True (once) if any plane has moved since the last call
+    public boolean takePositionsDirty()
+    {
+        if (positionsDirty.getAndSet(false)) {
+            frameLag.recordSince(positionsDirtySince);
+            return true;
+        }
+        return false;
+    }
+
+    // Passes each plane that has moved since the last call, once. Call after takePositionsDirty().
+    public void forEachMovedPlane(IntConsumer action)
+    {
+        for (int word = 0; word < moved.length(); word++) {
+            if (moved.get(word) == 0) {
+                continue;
+            }
+            long bits = moved.getAndSet(word, 0);
+            while (bits != 0) {
+                action.accept(word * 64 + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    // True (once) if any counter has changed since the last call
+    public boolean takeStatsDirty()
+    {
+        return statsDirty.getAndSet(false);
+    }
+
+    public double getX(int planeId)
+    {
+        return Float.intBitsToFloat((int) (positions.get(planeId) >>> 32));
+    }
+
+    public double getY(int planeId)
+    {
+        return Float.intBitsToFloat((int) positions.get(planeId));
+    }
+
+    private static long pack(double x, double y)
+    {
+        return ((long) Float.floatToRawIntBits((float) x) << 32) | (Float.floatToRawIntBits((float) y) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,82 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Compares FleetDispatcher's grid search for each airport's nearest neighbours against a brute-force
+// scan of every pair, on square, elongated and very thin maps and with very few airports. Lists are
+// compared by distance, since airports the same distance away may come in either order.
+//
+// Run by "gradlew check", or on its own with "gradlew fleetDispatcherCheck".
+public class FleetDispatcherCheck
+{
+    private static final int NEAREST_AIRPORTS = 8;
+
+    public static void main(String[] args)
+    {
+        int lists = 0;
+        lists += check(1000, 10, 2000, 1);
+        lists += check(10, 1000, 2000, 2);
+        lists += check(1000, 1000, 5000, 3);
+        lists += check(100_000, 3, 3000, 4);
+        lists += check(100, 100, 1, 5);
+        lists += check(100, 100, 2, 6);
+        lists += check(100, 100, 9, 7);
+        System.out.println("FleetDispatcherCheck: all " + lists + " nearest-airport lists matched brute force");
+    }
+
+    // Places 'count' airports at random on a width x height map and checks every airport's list,
+    // returning how many were checked
+    private static int check(double width, double height, int count, long seed)
+    {
+        Random random = new Random(seed);
+        List<Airport> airports = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            airports.add(new Airport(i, random.nextDouble() * width, random.nextDouble() * height));
+        }
+
+        int[][] nearest = FleetDispatcher.findNearestAirports(airports);
+        for (int i = 0; i < count; i++) {
+            double[] expected = bruteForce(airports, i);
+            double[] actual = new double[nearest[i].length];
+            for (int k = 0; k < actual.length; k++) {
+                if (nearest[i][k] == i) {
+                    throw new AssertionError(describe(width, height, count) + ": airport " + i + " lists itself");
+                }
+                actual[k] = distance(airports.get(i), airports.get(nearest[i][k]));
+            }
+            if (!Arrays.equals(expected, actual)) {
+                throw new AssertionError(describe(width, height, count) + ": airport " + i + " expected "
+                        + Arrays.toString(expected) + " but got " + Arrays.toString(actual));
+            }
+        }
+        return count;
+    }
+
+    // The distances to the nearest NEAREST_AIRPORTS other airports, in order
+    private static double[] bruteForce(List<Airport> airports, int from)
+    {
+        double[] distances = new double[airports.size() - 1];
+        int n = 0;
+        for (Airport other : airports) {
+            if (other.getId() != from) {
+                distances[n] = distance(airports.get(from), other);
+                n++;
+            }
+        }
+        Arrays.sort(distances);
+        return Arrays.copyOf(distances, Math.min(NEAREST_AIRPORTS, distances.length));
+    }
+
+    private static double distance(Airport a, Airport b)
+    {
+        return Math.hypot(b.getX() - a.getX(), b.getY() - a.getY());
+    }
+
+    private static String describe(double width, double height, int count)
+    {
+        return count + " airports on " + width + " x " + height;
+    }
+}
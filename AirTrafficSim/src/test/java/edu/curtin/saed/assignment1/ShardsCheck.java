@@ -0,0 +1,129 @@
+package edu.curtin.saed.assignment1;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Flies the same 50k flights in this JVM and in 1, 2 and 5 shard worker JVMs, and checks that every
+// tick leaves every plane at the same position, and lands the same planes, as the unsharded run. Slot
+// order isn't compared, as only the unsharded FleetStore sorts its slots by cell. Half the flights are
+// in the air when the workers start and the rest take off over the first ticks; a third of them
+// dog-leg, so flights cross strips mid-segment and mid-route.
+//
+// Run by "gradlew check", or on its own with "gradlew shardsCheck".
+public class ShardsCheck
+{
+    private static final int PLANES = 50_000;
+    private static final int TICKS = 400;
+    private static final int LAUNCH_TICKS = 100; // Over which the second half of the flights take off
+    private static final int[] SHARDS = {0, 1, 2, 5};
+    private static final int GRID = 1000;
+
+    public static void main(String[] args) throws IOException
+    {
+        Run expected = run(SHARDS[0]);
+        for (int s = 1; s < SHARDS.length; s++) {
+            Run actual = run(SHARDS[s]);
+            for (int tick = 0; tick < TICKS; tick++) {
+                if (expected.checksums[tick] != actual.checksums[tick]) {
+                    throw new AssertionError("Positions differ after tick " + tick + " on " + SHARDS[s] + " shards");
+                }
+                if (expected.arrivalChecksums[tick] != actual.arrivalChecksums[tick]) {
+                    throw new AssertionError("Different planes landed on tick " + tick + " on " + SHARDS[s] + " shards");
+                }
+            }
+        }
+        System.out.println("ShardsCheck: " + PLANES + " flights over " + TICKS + " ticks matched on "
+                + Arrays.toString(SHARDS) + " shards, with " + expected.arrivals + " arrivals");
+    }
+
+    private static Run run(int shardCount) throws IOException
+    {
+        Random rand = new Random(42);
+        AirportRegistry airports = new AirportRegistry();
+        PlaneRegistry planes = new PlaneRegistry();
+        List<PlaneMovement> flights = new ArrayList<>();
+        for (int i = 0; i < PLANES; i++) {
+            Airport origin = airports.add(GRID * rand.nextDouble(), GRID * rand.nextDouble());
+            Airport destination = airports.add(GRID * rand.nextDouble(), GRID * rand.nextDouble());
+            double speed = 10.0 + 90.0 * rand.nextDouble();
+            Plane plane = planes.add(origin);
+            if (i % 3 == 0) {
+                Route route = new Route(
+                        new double[] {origin.getX(), GRID * rand.nextDouble(), destination.getX()},
+                        new double[] {origin.getY(), GRID * rand.nextDouble(), destination.getY()});
+                flights.add(new PlaneMovement(plane, destination, speed, route));
+            } else {
+                flights.add(new PlaneMovement(plane, destination, speed));
+            }
+        }
+
+        FleetStore fleet = new FleetStore(PLANES);
+        for (PlaneMovement movement : flights.subList(0, PLANES / 2)) {
+            fleet.add(movement);
+        }
+        ShardCoordinator shards = null;
+        if (shardCount > 0) {
+            shards = new ShardCoordinator(shardCount, GRID, airports.asList(), PLANES, 1);
+        }
+        Run result = new Run();
+        List<PlaneMovement> finished = new ArrayList<>();
+        try {
+            if (shards != null) {
+                shards.start(fleet); // Hands over the flights already in the air
+            }
+            int next = PLANES / 2;
+            int perTick = (PLANES - next) / LAUNCH_TICKS;
+            for (int tick = 0; tick < TICKS; tick++) {
+                for (int i = 0; i < perTick && next < PLANES; i++) {
+                    fleet.add(flights.get(next++));
+                    if (shards != null) {
+                        shards.launch(fleet, fleet.size() - 1);
+                    }
+                }
+                if (shards != null) {
+                    shards.advance(fleet, true);
+                } else {
+                    fleet.advance(null);
+                }
+                fleet.removeFinished(finished);
+                int[] landed = new int[finished.size()];
+                for (int i = 0; i < landed.length; i++) {
+                    landed[i] = finished.get(i).getPlane().getId();
+                }
+                finished.clear();
+                Arrays.sort(landed);
+                result.arrivalChecksums[tick] = Arrays.hashCode(landed);
+                result.arrivals += landed.length;
+                result.checksums[tick] = checksum(fleet);
+            }
+        } finally {
+            if (shards != null) {
+                shards.stop();
+            }
+        }
+        return result;
+    }
+
+    // Folds every plane's exact position into one value, whatever slot the plane is in
+    private static long checksum(FleetStore fleet)
+    {
+        long sum = fleet.size();
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            long plane = fleet.getPlaneId(slot);
+            plane = plane * 31 + Double.doubleToLongBits(fleet.getX(slot));
+            plane = plane * 31 + Double.doubleToLongBits(fleet.getY(slot));
+            sum += plane * 0x9E3779B97F4A7C15L; // Adding makes the order not matter; the multiply mixes the bits
+        }
+        return sum;
+    }
+
+    private static class Run
+    {
+        private final long[] checksums = new long[TICKS];
+        private final long[] arrivalChecksums = new long[TICKS];
+        private int arrivals;
+    }
+}
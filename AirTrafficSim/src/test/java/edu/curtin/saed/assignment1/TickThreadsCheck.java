@@ -0,0 +1,98 @@
+package edu.curtin.saed.assignment1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Advances the same 200k flights for a number of ticks on 1, 3 and 8 tick threads and checks that
+// every tick leaves every plane in the same slot at the same position, and lands the same planes in
+// the same order, as the single-threaded run.
+//
+// Run by "gradlew check", or on its own with "gradlew tickThreadsCheck".
+public class TickThreadsCheck
+{
+    private static final int PLANES = 200_000;
+    private static final int TICKS = 400;
+    private static final int[] THREADS = {1, 3, 8};
+    private static final double GRID = 1000.0;
+
+    public static void main(String[] args)
+    {
+        Run expected = run(THREADS[0]);
+        for (int t = 1; t < THREADS.length; t++) {
+            Run actual = run(THREADS[t]);
+            for (int tick = 0; tick < TICKS; tick++) {
+                if (expected.checksums[tick] != actual.checksums[tick]) {
+                    throw new AssertionError("Positions differ after tick " + tick + " on " + THREADS[t]
+                            + " threads");
+                }
+            }
+            if (!expected.arrivals.equals(actual.arrivals)) {
+                throw new AssertionError("Arrivals differ on " + THREADS[t] + " threads");
+            }
+            if (!Arrays.equals(expected.finalX, actual.finalX) || !Arrays.equals(expected.finalY, actual.finalY)) {
+                throw new AssertionError("Final positions differ on " + THREADS[t] + " threads");
+            }
+        }
+        System.out.println("TickThreadsCheck: " + PLANES + " flights over " + TICKS + " ticks matched on "
+                + Arrays.toString(THREADS) + " threads, with " + expected.arrivals.size() + " arrivals");
+    }
+
+    private static Run run(int threads)
+    {
+        Random rand = new Random(42);
+        AirportRegistry airports = new AirportRegistry();
+        PlaneRegistry planes = new PlaneRegistry();
+        FleetStore fleet = new FleetStore(PLANES);
+        for (int i = 0; i < PLANES; i++) {
+            Airport origin = airports.add(GRID * rand.nextDouble(), GRID * rand.nextDouble());
+            Airport destination = airports.add(GRID * rand.nextDouble(), GRID * rand.nextDouble());
+            fleet.add(new PlaneMovement(planes.add(origin), destination, 1.0 + 9.0 * rand.nextDouble()));
+        }
+
+        Run result = new Run();
+        List<PlaneMovement> finished = new ArrayList<>();
+        try (ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null) {
+            for (int tick = 0; tick < TICKS; tick++) {
+                fleet.advance(pool);
+                fleet.removeFinished(finished);
+                for (PlaneMovement movement : finished) {
+                    result.arrivals.add(movement.getPlane().getId());
+                }
+                finished.clear();
+                result.checksums[tick] = checksum(fleet);
+            }
+        }
+
+        // Planes still flying, by plane ID; landed planes stay at zero
+        result.finalX = new double[PLANES];
+        result.finalY = new double[PLANES];
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            result.finalX[fleet.getPlaneId(slot)] = fleet.getX(slot);
+            result.finalY[fleet.getPlaneId(slot)] = fleet.getY(slot);
+        }
+        return result;
+    }
+
+    // Folds every slot's plane and exact position into one value, so slot order matters too
+    private static long checksum(FleetStore fleet)
+    {
+        long sum = fleet.size();
+        for (int slot = 0; slot < fleet.size(); slot++) {
+            sum = sum * 31 + fleet.getPlaneId(slot);
+            sum = sum * 31 + Double.doubleToLongBits(fleet.getX(slot));
+            sum = sum * 31 + Double.doubleToLongBits(fleet.getY(slot));
+        }
+        return sum;
+    }
+
+    private static class Run
+    {
+        private final long[] checksums = new long[TICKS];
+        private final List<Integer> arrivals = new ArrayList<>();
+        private double[] finalX;
+        private double[] finalY;
+    }
+}